@@ -9,61 +9,117 @@
  */
 package com.github.karsaig.approvalcrest;
 
-import static java.util.Arrays.asList;
-
-import java.lang.reflect.Field;
-import java.util.Collection;
-import java.util.LinkedList;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Array;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
 /**
  * Returns the object corresponding to the path specified
+ * <p>
+ * A segment of the path is either the name of a field, looked up in the class of the object and its super classes, or
+ * an index into a {@link List} or an array, like {@code "items.3.price"}. The split paths and the accessor of every
+ * segment are cached by the class they are used on, so repeated lookups only read the values. Fields and their getters
+ * come from {@link TypeMetadata}.
  */
 public class BeanFinder {
 
-    private final static String PATH_REGEX = Pattern.quote(".");
+    private static final Pattern PATH_SEPARATOR = Pattern.compile(Pattern.quote("."));
+    private static final Pattern INDEX = Pattern.compile("\\d+");
+    private static final int MAX_SPLIT_PATHS = 1024;
+
+    private static final LoadingCache<String, String[]> SPLIT_PATHS = CacheBuilder.newBuilder()
+            .maximumSize(MAX_SPLIT_PATHS)
+            .build(CacheLoader.from(PATH_SEPARATOR::split));
+
+    private static final ClassValue<Map<String, Accessor>> ACCESSORS = new ClassValue<Map<String, Accessor>>() {
+        @Override
+        protected Map<String, Accessor> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>();
+        }
+    };
+
+    /**
+     * Accessor of a segment that doesn't exist in the class.
+     */
+    private static final Accessor MISSING = object -> {
+        throw new IllegalArgumentException();
+    };
 
     public static Object findBeanAt(String fieldPath, Object object) {
         try {
-            return findBeanAt(asList(fieldPath.split(PATH_REGEX)), object);
+            return findBeanAt(SPLIT_PATHS.getUnchecked(fieldPath), object);
         } catch (IllegalArgumentException e) {
             throw new IllegalArgumentException(fieldPath + " does not exist");
         }
     }
 
-    private static Object findBeanAt(List<String> fields, Object object) {
-        if (object == null) {
-            throw new PathNullPointerException(fields.get(0));
-        }
-        for (Field field : getEveryField(object.getClass())) {
-            field.setAccessible(true);
-            if (headOf(fields).equals(field.getName())) {
-                try {
-                    if (fields.size() == 1) {
-                        return field.get(object);
-                    } else {
-                        return findBeanAt(fields.subList(1, fields.size()), field.get(object));
-                    }
-                } catch (IllegalAccessException e) {
-                }
+    private static Object findBeanAt(String[] segments, Object object) {
+        Object current = object;
+        for (String segment : segments) {
+            if (current == null) {
+                throw new PathNullPointerException(segment);
             }
+            current = accessor(current.getClass(), segment).get(current);
         }
-
-        throw new IllegalArgumentException();
+        return current;
     }
 
-    private static String headOf(Collection<String> paths) {
-        return paths.iterator().next();
+    private static Accessor accessor(Class<?> type, String segment) {
+        Map<String, Accessor> accessors = ACCESSORS.get(type);
+        Accessor accessor = accessors.get(segment);
+        if (accessor == null) {
+            accessor = accessors.computeIfAbsent(segment, s -> compile(type, s));
+        }
+        return accessor;
     }
 
-    private static List<Field> getEveryField(Class<?> type) {
-        List<Field> result = new LinkedList<>();
-        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
-            for (Field currentField : clazz.getDeclaredFields()) {
-                result.add(currentField);
+    private static Accessor compile(Class<?> type, String segment) {
+        if (INDEX.matcher(segment).matches()) {
+            if (type.isArray()) {
+                int index = Integer.parseInt(segment);
+                return array -> {
+                    if (index >= Array.getLength(array)) {
+                        throw new IllegalArgumentException();
+                    }
+                    return Array.get(array, index);
+                };
+            }
+            if (List.class.isAssignableFrom(type)) {
+                int index = Integer.parseInt(segment);
+                return list -> {
+                    if (index >= ((List<?>) list).size()) {
+                        throw new IllegalArgumentException();
+                    }
+                    return ((List<?>) list).get(index);
+                };
             }
         }
-        return result;
+        MethodHandle getter = TypeMetadata.of(type).getGetter(segment);
+        if (getter == null) {
+            return MISSING;
+        }
+        return object -> {
+            try {
+                return (Object) getter.invokeExact(object);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    /**
+     * Reads the value of a segment from an object of the class the accessor was compiled for.
+     */
+    private interface Accessor {
+        Object get(Object object);
     }
 }
@@ -0,0 +1,19 @@
+package com.github.karsaig.approvalcrest;
+
+/**
+ * How byte arrays are written to Json.
+ */
+public enum ByteArrayEncoding {
+    /**
+     * An array of numbers, one for every byte, the way {@link com.google.gson.Gson} writes them by default.
+     */
+    NUMBERS,
+    /**
+     * A single string of the bytes in Base64.
+     */
+    BASE64,
+    /**
+     * A single string of the bytes in lower case hexadecimal, two digits for every byte.
+     */
+    HEX
+}
@@ -9,15 +9,18 @@
  */
 package com.github.karsaig.approvalcrest;
 
-import static java.lang.reflect.Modifier.isStatic;
-import static java.util.Collections.newSetFromMap;
-import static org.apache.commons.lang3.ClassUtils.isPrimitiveOrWrapper;
+import static java.lang.reflect.Modifier.isFinal;
+import static java.util.Arrays.stream;
+import static java.util.Collections.emptyList;
 
 import java.io.Closeable;
 import java.lang.reflect.Field;
-import java.util.Collection;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -25,14 +28,42 @@ import java.util.function.Function;
 
 import org.hamcrest.Matcher;
 
+import com.google.common.collect.Iterators;
+
 
 /**
  * Detects classes with fields that have circular reference and returns a set of those classes.
  */
 public class CyclicReferenceDetector {
+    private static final ClassValue<ClassMetadata> CLASS_METADATA = new ClassValue<ClassMetadata>() {
+        @Override
+        protected ClassMetadata computeValue(Class<?> type) {
+            return new ClassMetadata(type);
+        }
+    };
+
+    /**
+     * The classes the acyclic check of the thread is in progress for, reaching one of them again means a cycle of types.
+     */
+    private static final ThreadLocal<Set<Class<?>>> TYPES_IN_PROGRESS = ThreadLocal.withInitial(HashSet::new);
+
+    /**
+     * Identity sets left by earlier detections of the thread, cleared and reused to spare growing new ones.
+     */
+    private static final ThreadLocal<Deque<IdentitySet>> REUSABLE_SETS = ThreadLocal.withInitial(ArrayDeque::new);
+
+    private final MatcherConfiguration matcherConfiguration;
+    private final IdentitySet nodesInPaths;
+    private final IdentitySet objectsWithCircularReferences;
+    private Map<Class<?>, List<Field[]>> checkedFields = new IdentityHashMap<>();
+    private Map<Class<?>, Boolean> ignoredTypes = new IdentityHashMap<>();
+    private Deque<Frame> framesInPath = new ArrayDeque<>();
 
-    private Set<Object> nodesInPaths = newSetFromMap(new IdentityHashMap<>());
-    private Set<Object> objectsWithCircularReferences = newSetFromMap(new IdentityHashMap<>());
+    private CyclicReferenceDetector(MatcherConfiguration matcherConfiguration, IdentitySet nodesInPaths, IdentitySet objectsWithCircularReferences) {
+        this.matcherConfiguration = matcherConfiguration;
+        this.nodesInPaths = nodesInPaths;
+        this.objectsWithCircularReferences = objectsWithCircularReferences;
+    }
 
     /**
      * Returns a set of classes that have circular reference.
@@ -41,13 +72,27 @@ public class CyclicReferenceDetector {
      * @return a {@link Set} of {@link Class}es.
      */
     public static Set<Class<?>> getClassesWithCircularReferences(Object object, MatcherConfiguration matcherConfiguration) {
-        CyclicReferenceDetector cyclicReferenceDetector = new CyclicReferenceDetector();
+        if (object == null) {
+            return new HashSet<>();
+        }
 
-        if (object != null) {
-            cyclicReferenceDetector.detectCircularReferenceOnObject(object, matcherConfiguration);
+        Deque<IdentitySet> reusableSets = REUSABLE_SETS.get();
+        IdentitySet nodesInPaths = takeSet(reusableSets);
+        IdentitySet objectsWithCircularReferences = takeSet(reusableSets);
+        try {
+            new CyclicReferenceDetector(matcherConfiguration, nodesInPaths, objectsWithCircularReferences).detectCircularReferences(object);
+            return getClasses(objectsWithCircularReferences);
+        } finally {
+            nodesInPaths.clear();
+            objectsWithCircularReferences.clear();
+            reusableSets.push(nodesInPaths);
+            reusableSets.push(objectsWithCircularReferences);
         }
+    }
 
-        return getClasses(cyclicReferenceDetector.objectsWithCircularReferences);
+    private static IdentitySet takeSet(Deque<IdentitySet> reusableSets) {
+        IdentitySet set = reusableSets.poll();
+        return set == null ? new IdentitySet() : set;
     }
 
     /**
@@ -56,68 +101,46 @@ public class CyclicReferenceDetector {
      * @param objects a set of objects get classes to return from
      * @return a set of classes inside a given set.
      */
-    private static Set<Class<?>> getClasses(Set<Object> objects) {
+    private static Set<Class<?>> getClasses(IdentitySet objects) {
         Set<Class<?>> circularReferenceTypes = new HashSet<>();
-        for (Object objectInPath : objects) {
-            circularReferenceTypes.add(objectInPath.getClass());
-        }
+        objects.forEach(objectInPath -> circularReferenceTypes.add(objectInPath.getClass()));
         return circularReferenceTypes;
     }
 
     /**
-     * Detects classes that have circular reference.
+     * Walks the object graph with an explicit stack of the objects in the current path, so the depth of the graph is not
+     * limited by the call stack.
      *
      * @param object the object to check if it has circular reference fields
-     * @param clazz  the class being used (necessary if we also checking super class as getDeclaredFields only returns
-     *               fields of a given class, but not its super class)
      */
-    private void detectCircularReferenceOnFields(Object object, Class<?> clazz, MatcherConfiguration matcherConfiguration) {
-        if (objectsWithCircularReferences.contains(object)) {
-            return;
-        }
-
-        for (Field field : clazz.getDeclaredFields()) {
-            field.setAccessible(true);
-
-            if (!isStatic(field.getModifiers())) {
-                try {
-                    if (!isFieldnameIgnored(field, matcherConfiguration.getPatternsToIgnore())) {
-                        Object fieldValue = field.get(object);
-                        if (fieldValue != null) {
-                            detectCircularReferenceOnObject(fieldValue, matcherConfiguration);
-                        }
-                    }
-                } catch (IllegalAccessException e) {
-                    throw new RuntimeException(e);
-                }
-            }
-        }
-        detectCircularReferencesFromTheSuperClass(object, clazz, matcherConfiguration);
-    }
-
-    private boolean isFieldnameIgnored(Field field, List<Matcher<String>> patternsToIgnore) {
-        for (Matcher<String> matcher : patternsToIgnore) {
-            if (matcher.matches(field.getName())) {
-                return true;
+    private void detectCircularReferences(Object object) {
+        enter(object);
+        while (!framesInPath.isEmpty()) {
+            Frame frame = framesInPath.peek();
+            Object child = frame.next();
+            if (child == null) {
+                framesInPath.pop();
+                frame.exit();
+            } else {
+                enter(child);
             }
         }
-        return false;
     }
 
     /**
-     * Detects circular reference on a given field.
-     * If a field is a {@link Iterable} or a {@link Map}, loops through the values and
-     * detects cycles.
+     * Detects circular reference on a given object. Objects with fields, {@link Iterable}s and {@link Map}s are added
+     * to the path, and their frame is pushed, so their fields, elements or values and keys are visited next.
      *
      * @param object the object to detect circular reference on
      */
     @SuppressWarnings({"unchecked", "rawtypes"})
-    private void detectCircularReferenceOnObject(Object object, MatcherConfiguration matcherConfiguration) {
-        if (isIgnoredType(object, matcherConfiguration)) {
+    private void enter(Object object) {
+        ClassMetadata metadata = CLASS_METADATA.get(object.getClass());
+        if (metadata.acyclic || isIgnoredType(object)) {
             return;
         }
 
-        boolean isValid = validateAnObject(object);
+        boolean isValid = metadata.validObject;
         boolean isInPath = nodesInPaths.contains(object);
 
         if (!isValid && isInPath) {
@@ -129,27 +152,54 @@ public class CyclicReferenceDetector {
             return;
         }
 
-        if (object instanceof Iterable && !treatAsNotIterable(object)) {
+        if (framesInPath.size() >= matcherConfiguration.getMaxCircularReferenceCheckDepth()) {
+            return;
+        }
+
+        if (metadata.iterable) {
             nodesInPaths.add(object);
-            detectCircularReferenceFromObjectsContainedInAnIterable((Iterable) object, matcherConfiguration);
-        } else if (object instanceof Map) {
+            framesInPath.push(new ElementsFrame(((Iterable<Object>) object).iterator()));
+        } else if (metadata.map) {
             nodesInPaths.add(object);
-            detectCircularReferencesFromObjectsInAMap((Map) object, matcherConfiguration);
+            Map<Object, Object> map = (Map) object;
+            framesInPath.push(new ElementsFrame(Iterators.concat(map.values().iterator(), map.keySet().iterator())));
+        } else if (isValid) {
+            nodesInPaths.add(object);
+            framesInPath.push(new FieldsFrame(object, getCheckedFields(object.getClass())));
         }
+    }
 
-        if (isValid) {
-            nodesInPaths.add(object);
-            detectCircularReferenceOnFields(object, object.getClass(), matcherConfiguration);
-            nodesInPaths.remove(object);
+    /**
+     * Returns the fields of the class and its super classes not ignored by the configuration, one array for every class
+     * of the hierarchy, starting from the given class.
+     */
+    private List<Field[]> getCheckedFields(Class<?> clazz) {
+        List<Field[]> fields = checkedFields.get(clazz);
+        if (fields == null) {
+            fields = new ArrayList<>();
+            for (Field[] declaredFields : CLASS_METADATA.get(clazz).fieldsByClass()) {
+                fields.add(stream(declaredFields)
+                        .filter(field -> !isFieldnameIgnored(field, matcherConfiguration.getPatternsToIgnore()))
+                        .toArray(Field[]::new));
+            }
+            checkedFields.put(clazz, fields);
         }
+        return fields;
     }
 
-    private boolean isIgnoredType(Object object, MatcherConfiguration matcherConfiguration) {
-        for (Class<?> clazz : matcherConfiguration.getTypesToIgnore()) {
-            if (clazz.isInstance(object)) {
+    private boolean isFieldnameIgnored(Field field, List<Matcher<String>> patternsToIgnore) {
+        for (Matcher<String> matcher : patternsToIgnore) {
+            if (matcher.matches(field.getName())) {
                 return true;
             }
         }
+        return false;
+    }
+
+    private boolean isIgnoredType(Object object) {
+        if (ignoredTypes.computeIfAbsent(object.getClass(), this::isIgnoredType)) {
+            return true;
+        }
 
         for (Function<Object, Boolean> actual : matcherConfiguration.getSkipCircularReferenceCheck()) {
             if (actual.apply(object)) {
@@ -160,61 +210,217 @@ public class CyclicReferenceDetector {
         return false;
     }
 
-    private boolean treatAsNotIterable(Object object) {
-        return Closeable.class.isInstance(object);
+    private boolean isIgnoredType(Class<?> type) {
+        for (Class<?> clazz : matcherConfiguration.getTypesToIgnore()) {
+            if (clazz.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
-     * For objects with super classes, check for objects subject to circular reference in super class.
+     * Checks to see if the given class is primitive or wrapper class, {@link String}, {@link Class}, an {@link Iterable},
+     * a {@link Map} or an {@link Enum}.
      *
-     * @param object the object to check if it has circular reference
-     * @param clazz  Used to prevent stackOverFlow exception
+     * @param type The class to validate
+     * @return true if the class is not primitive/wrapper class and not {@link String}, {@link Iterable}, {@link Map} or
+     * {@link Enum})
      */
-    private void detectCircularReferencesFromTheSuperClass(Object object, Class<?> clazz, MatcherConfiguration matcherConfiguration) {
-        Class<?> superclass = clazz.getSuperclass();
+    private static boolean validateAClass(Class<?> type) {
+        TypeMetadata metadata = TypeMetadata.of(type);
+        return !metadata.isValue() && !metadata.isIterable() && !metadata.isMap();
+    }
 
-        if (superclass != null && validateAnObject(object)) {
-            detectCircularReferenceOnFields(object, superclass, matcherConfiguration);
-        }
+    private static boolean isWalkedAsIterable(Class<?> type) {
+        return TypeMetadata.of(type).isIterable() && !Closeable.class.isAssignableFrom(type);
     }
 
     /**
-     * Detects circular references on {@link Map}s, i.e HashMap, TreeMap, etc.
+     * Checks whether no instance of the class can be part of a cycle. It holds when every object reachable from an
+     * instance has a type known from the declared types of the fields, and those types don't reach each other.
+     * <p>
+     * The verdicts of the field types are taken from their {@link ClassMetadata}, so every class is checked once. A
+     * class reaching a class in progress is in a cycle of types, so its verdict doesn't depend on the path it was
+     * reached on either.
      *
-     * @param map the {@link Map} with objects to checks for cyclic references on
+     * @param type the exact class of an instance
+     * @return true if the class is provably acyclic
      */
-    private void detectCircularReferencesFromObjectsInAMap(Map<Object, Object> map, MatcherConfiguration matcherConfiguration) {
-        detectCircularReferenceFromObjectsContainedInAnIterable(map.values(), matcherConfiguration);
-        detectCircularReferenceFromObjectsContainedInAnIterable(map.keySet(), matcherConfiguration);
+    private static boolean isAcyclic(Class<?> type) {
+        if (!validateAClass(type)) {
+            return !isWalkedAsIterable(type) && !Map.class.isAssignableFrom(type);
+        }
+        Set<Class<?>> typesInProgress = TYPES_IN_PROGRESS.get();
+        if (!typesInProgress.add(type)) {
+            return false;
+        }
+        try {
+            for (Field[] fields : TypeMetadata.of(type).getFieldsByClass()) {
+                for (Field field : fields) {
+                    if (!hasAcyclicValues(field.getType())) {
+                        return false;
+                    }
+                }
+            }
+            return true;
+        } finally {
+            typesInProgress.remove(type);
+        }
     }
 
     /**
-     * Detects circular references on {@link Iterable}s, i.e {@link Collection}s.
-     *
-     * @param iterable the object to iterate through.
+     * Checks whether every value a field of the given declared type can hold is provably acyclic. Arrays are not
+     * walked by the detector, and every subclass of an enum is an enum, any other class has to be final.
+     */
+    private static boolean hasAcyclicValues(Class<?> declaredType) {
+        if (declaredType.isPrimitive() || declaredType.isArray() || Enum.class.isAssignableFrom(declaredType)) {
+            return true;
+        }
+        return isFinal(declaredType.getModifiers()) && !TYPES_IN_PROGRESS.get().contains(declaredType)
+                && CLASS_METADATA.get(declaredType).acyclic;
+    }
+
+    /**
+     * An object in the current path, returning the objects it references one by one.
      */
-    private void detectCircularReferenceFromObjectsContainedInAnIterable(Iterable<Object> iterable, MatcherConfiguration matcherConfiguration) {
-        for (Object elementInCollection : iterable) {
-            if (elementInCollection != null) {
-                detectCircularReferenceOnObject(elementInCollection, matcherConfiguration);
+    private interface Frame {
+
+        /**
+         * @return the next non-null object referenced, or null if there are no more
+         */
+        Object next();
+
+        /**
+         * Called when every referenced object has been visited.
+         */
+        void exit();
+    }
+
+    /**
+     * The elements of an {@link Iterable}, or the values and then the keys of a {@link Map}. Those stay in the path
+     * after they have been visited.
+     */
+    private static final class ElementsFrame implements Frame {
+        private final Iterator<Object> elements;
+
+        ElementsFrame(Iterator<Object> elements) {
+            this.elements = elements;
+        }
+
+        @Override
+        public Object next() {
+            while (elements.hasNext()) {
+                Object element = elements.next();
+                if (element != null) {
+                    return element;
+                }
             }
+            return null;
+        }
+
+        @Override
+        public void exit() {
         }
     }
 
     /**
-     * Checks to see if the given object is primitive or wrapper class, {@link String}, {@link Class}, instance of {@link Iterable},
-     * instance of {@link Map} or instance of {@link Enum}.
-     *
-     * @param object The object to validate
-     * @return true if the object is not primitive/wrapper class and not an instance of
-     * {@link String}, {@link Iterable}, {@link Map} or {@link Enum})
+     * The field values of an object, class by class up the hierarchy. The fields of the next class are only visited if
+     * the object hasn't been found to be part of a cycle in the meantime.
      */
-    private boolean validateAnObject(Object object) {
-        return !isPrimitiveOrWrapper(object.getClass())
-                && object.getClass() != String.class
-                && object.getClass() != Class.class
-                && !(object instanceof Iterable)
-                && !(object instanceof Map)
-                && !(object instanceof Enum);
-    }
-}
\ No newline at end of file
+    private final class FieldsFrame implements Frame {
+        private final Object object;
+        private final List<Field[]> fieldsByClass;
+        private int classIndex = -1;
+        private Field[] fields = new Field[0];
+        private int fieldIndex;
+
+        FieldsFrame(Object object, List<Field[]> fieldsByClass) {
+            this.object = object;
+            this.fieldsByClass = fieldsByClass;
+        }
+
+        @Override
+        public Object next() {
+            while (true) {
+                while (fieldIndex < fields.length) {
+                    Object fieldValue = get(fields[fieldIndex++]);
+                    if (fieldValue != null) {
+                        return fieldValue;
+                    }
+                }
+                if (++classIndex == fieldsByClass.size() || objectsWithCircularReferences.contains(object)) {
+                    return null;
+                }
+                fields = fieldsByClass.get(classIndex);
+                fieldIndex = 0;
+            }
+        }
+
+        private Object get(Field field) {
+            try {
+                return field.get(object);
+            } catch (IllegalAccessException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public void exit() {
+            nodesInPaths.remove(object);
+        }
+    }
+
+    /**
+     * What the detector needs to know about a class, computed once per class.
+     */
+    private static final class ClassMetadata {
+        private final boolean validObject;
+        private final boolean iterable;
+        private final boolean map;
+        private final boolean acyclic;
+        private final Class<?> type;
+        private volatile List<Field[]> fieldsByClass;
+
+        ClassMetadata(Class<?> type) {
+            this.type = type;
+            validObject = validateAClass(type);
+            iterable = isWalkedAsIterable(type);
+            map = Map.class.isAssignableFrom(type);
+            acyclic = isAcyclic(type);
+        }
+
+        /**
+         * The fields are only looked up for the classes walked, not for the field types checked by
+         * {@link #isAcyclic(Class)}.
+         */
+        List<Field[]> fieldsByClass() {
+            List<Field[]> fields = fieldsByClass;
+            if (fields == null) {
+                fields = validObject && !acyclic ? declaredFields(type) : emptyList();
+                fieldsByClass = fields;
+            }
+            return fields;
+        }
+
+        /**
+         * The accessible non-static fields of the class and its super classes from {@link TypeMetadata}, one array for
+         * every class. Fields that
+         * can only hold provably acyclic values are left out, as those values are not walked.
+         */
+        private static List<Field[]> declaredFields(Class<?> type) {
+            List<Field[]> fields = new ArrayList<>();
+            for (Field[] classFields : TypeMetadata.of(type).getFieldsByClass()) {
+                List<Field> declaredFields = new ArrayList<>();
+                for (Field field : classFields) {
+                    if (!hasAcyclicValues(field.getType())) {
+                        field.setAccessible(true);
+                        declaredFields.add(field);
+                    }
+                }
+                fields.add(declaredFields.toArray(new Field[0]));
+            }
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2013 Shazam Entertainment Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.karsaig.approvalcrest;
+
+import static java.util.Collections.unmodifiableMap;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+import com.google.common.collect.ImmutableSet;
+
+/**
+ * Field paths like {@code "parent.child.field"} compiled into a trie of their segments, so every path can be handled in
+ * a single walk of a tree.
+ */
+public final class FieldPathTrie {
+    private static final Pattern SEGMENT_SEPARATOR = Pattern.compile(Pattern.quote("."));
+    private static final int MAX_COMPILED_PATH_SETS = 256;
+
+    private static final LoadingCache<Set<String>, FieldPathTrie> COMPILED_PATHS = CacheBuilder.newBuilder()
+            .maximumSize(MAX_COMPILED_PATH_SETS)
+            .build(CacheLoader.from(FieldPathTrie::compile));
+
+    private final Node root = new Node();
+
+    private FieldPathTrie() {
+    }
+
+    /**
+     * Compiles the given field paths into a trie.
+     *
+     * @param fieldPaths the dot separated field paths
+     * @return the trie of the paths
+     */
+    public static FieldPathTrie compile(Collection<String> fieldPaths) {
+        FieldPathTrie trie = new FieldPathTrie();
+        for (String fieldPath : fieldPaths) {
+            Node node = trie.root;
+            for (String segment : SEGMENT_SEPARATOR.split(fieldPath)) {
+                node = node.children.computeIfAbsent(segment, s -> new Node());
+            }
+            node.path = fieldPath;
+        }
+        return trie;
+    }
+
+    /**
+     * Returns the trie of the given field paths, reusing the trie compiled earlier for the same paths.
+     *
+     * @param fieldPaths the dot separated field paths
+     * @return the trie of the paths
+     */
+    public static FieldPathTrie of(Set<String> fieldPaths) {
+        return COMPILED_PATHS.getUnchecked(ImmutableSet.copyOf(fieldPaths));
+    }
+
+    public Node getRoot() {
+        return root;
+    }
+
+    public boolean isEmpty() {
+        return root.children.isEmpty();
+    }
+
+    /**
+     * A segment of one or more field paths.
+     */
+    public static final class Node {
+        private final Map<String, Node> children = new LinkedHashMap<>();
+        private String path;
+
+        private Node() {
+        }
+
+        /**
+         * @return the child nodes by their segment
+         */
+        public Map<String, Node> getChildren() {
+            return unmodifiableMap(children);
+        }
+
+        public Node getChild(String segment) {
+            return children.get(segment);
+        }
+
+        /**
+         * @return true if one of the field paths ends in this node, so the whole field is ignored
+         */
+        public boolean isIgnored() {
+            return path != null;
+        }
+
+        /**
+         * @return the field path ending in this node, or null if no path ends here
+         */
+        public String getPath() {
+            return path;
+        }
+    }
+}
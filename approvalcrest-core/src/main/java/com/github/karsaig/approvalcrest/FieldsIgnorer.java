@@ -9,36 +9,42 @@
  */
 package com.github.karsaig.approvalcrest;
 
-import static com.google.common.collect.Lists.newArrayList;
-import static com.google.common.collect.Sets.newTreeSet;
-import static java.lang.Math.max;
-import static java.util.Arrays.asList;
-
-import java.util.Collection;
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Set;
-import java.util.TreeSet;
-import java.util.regex.Pattern;
+
+import com.github.karsaig.approvalcrest.FieldPathTrie.Node;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 
 /**
  * Responsible for traversing the Json tree and ignore the specified set of field paths.
+ * <p>
+ * The paths are compiled into a {@link FieldPathTrie} and removed in a single walk of the tree.
  */
 public class FieldsIgnorer {
+    /**
+     * Prefix of the names of {@link Set} and {@link Map} typed fields in the Json the elements of sets and maps are
+     * ordered by. It is never part of the serialised Json.
+     */
     public static final String MARKER = "!_TO_BE_SORTED_!";
 
     public static JsonElement findPaths(Gson gson, Object object, Set<String> pathsToFind) {
         JsonParser jsonParser = new JsonParser();
         JsonElement jsonElement = jsonParser.parse(gson.toJson(object));
 
+        return findPaths(object, jsonElement, pathsToFind);
+    }
+
+    /**
+     * Ignores the paths in the Json tree serialised from the given object. The top level array is ordered again when
+     * the object is a {@link Set} or a {@link Map}, as the ignored fields may have changed the order of its elements.
+     */
+    public static JsonElement findPaths(Object object, JsonElement jsonElement, Set<String> pathsToFind) {
         JsonElement filteredJson = findPaths(jsonElement, pathsToFind);
         if (object != null && (Set.class.isAssignableFrom(object.getClass()) || Map.class.isAssignableFrom(object.getClass()))) {
             return sortArray(filteredJson);
@@ -51,92 +57,96 @@ public class FieldsIgnorer {
             return jsonElement;
         }
 
-        String pathToFind = headOf(pathsToFind);
-        List<String> pathSegments = asList(pathToFind.split(Pattern.quote(".")));
-        try {
-            findPath(jsonElement, pathToFind, pathSegments);
-        } catch (IllegalArgumentException e) {
-            throw new IllegalArgumentException(pathToFind + " does not exist");
-        }
-        return findPaths(jsonElement, removePathFromSet(pathsToFind, pathToFind));
+        removePaths(jsonElement, FieldPathTrie.of(pathsToFind).getRoot());
+        return jsonElement;
     }
 
-    private static Set<String> removePathFromSet(Set<String> setToRemoveFrom, String stringToRemove) {
-        Set<String> set = new HashSet<String>(setToRemoveFrom);
-        set.remove(stringToRemove);
-        return set;
-    }
+    /**
+     * Returns the Json tree without the specified field paths, leaving the given tree intact. Subtrees not affected by
+     * any of the paths are shared with the given tree.
+     */
+    public static JsonElement filteredView(JsonElement jsonElement, Set<String> pathsToFind) {
+        if (jsonElement == null || pathsToFind.isEmpty()) {
+            return jsonElement;
+        }
 
-    private static void findPath(JsonElement jsonElement, String pathToFind, List<String> pathSegments) {
-        String field = headOf(pathSegments);
+        return filteredView(jsonElement, FieldPathTrie.of(pathsToFind).getRoot());
+    }
 
+    private static void removePaths(JsonElement jsonElement, Node node) {
         if (jsonElement.isJsonArray()) {
-            Iterator<JsonElement> iterator = jsonElement.getAsJsonArray().iterator();
-            while (iterator.hasNext()) {
-                JsonElement arrayElement = (JsonElement) iterator.next();
-                if (arrayElement.isJsonNull()) {
-                    continue;
+            for (JsonElement arrayElement : jsonElement.getAsJsonArray()) {
+                if (!arrayElement.isJsonNull()) {
+                    removePaths(arrayElement, node);
                 }
-                findPath(arrayElement, pathToFind, pathSegments);
             }
-        } else {
-            if (pathSegments.size() == 1) {
-                ignorePath(jsonElement, pathToFind);
-            } else {
-                JsonElement child = jsonElement.getAsJsonObject().get(field);
-                if (child == null) {
-                    child = jsonElement.getAsJsonObject().get(MARKER + field);
-                    if (child == null) {
-                        return;
-                    }
-                    List<String> tail = pathSegments.subList(1, pathSegments.size());
-                    findPath(child, pathToFind, tail);
-
-                    child = sortArray(child);
-                    jsonElement.getAsJsonObject().add(MARKER + field, child);
-                } else {
-                    List<String> tail = pathSegments.subList(1, pathSegments.size());
-                    findPath(child, pathToFind, tail);
-                }
+            return;
+        }
+
+        for (Entry<String, Node> child : node.getChildren().entrySet()) {
+            if (child.getValue().isIgnored()) {
+                ignorePath(jsonElement, child.getKey(), child.getValue().getPath());
+            }
+        }
+        for (Entry<String, Node> child : node.getChildren().entrySet()) {
+            if (!child.getValue().isIgnored()) {
+                removePathsBelow(jsonElement.getAsJsonObject(), child.getKey(), child.getValue());
             }
         }
     }
 
-    private static JsonElement sortArray(JsonElement jsonElement) {
-        TreeSet<JsonElement> orderedSet = newTreeSet(new Comparator<JsonElement>() {
-            @Override
-            public int compare(JsonElement o1, JsonElement o2) {
-                return o1.toString().compareTo(o2.toString());
-            }
-        });
-        orderedSet.addAll(newArrayList(jsonElement.getAsJsonArray().iterator()));
-        JsonArray jsonArray = new JsonArray();
-        for (JsonElement element : orderedSet) {
-            jsonArray.add(element);
+    private static void removePathsBelow(JsonObject jsonObject, String field, Node node) {
+        JsonElement child = jsonObject.get(field);
+        if (child != null) {
+            removePaths(child, node);
         }
-        return jsonArray;
     }
 
-    private static void ignorePath(JsonElement jsonElement, String pathToIgnore) {
-        if (!jsonElement.isJsonNull()) {
-            if (!jsonElement.isJsonObject()) {
-                throw new IllegalArgumentException();
+    private static JsonElement filteredView(JsonElement jsonElement, Node node) {
+        if (jsonElement.isJsonArray()) {
+            JsonArray result = new JsonArray(jsonElement.getAsJsonArray().size());
+            for (JsonElement arrayElement : jsonElement.getAsJsonArray()) {
+                result.add(arrayElement.isJsonNull() ? arrayElement : filteredView(arrayElement, node));
             }
-            jsonElement.getAsJsonObject().remove(getLastSegmentOf(pathToIgnore));
-            jsonElement.getAsJsonObject().remove(MARKER + getLastSegmentOf(pathToIgnore));
+            return result;
+        }
+
+        for (Node child : node.getChildren().values()) {
+            if (child.isIgnored()) {
+                checkIgnorable(jsonElement, child.getPath());
+            }
+        }
+        if (jsonElement.isJsonNull() && node.getChildren().values().stream().allMatch(Node::isIgnored)) {
+            return jsonElement;
         }
-    }
 
-    private static String getLastSegmentOf(String fieldPath) {
-        String[] paths = fieldPath.split(Pattern.quote("."));
-        if (paths.length == 0) {
-            return fieldPath;
+        JsonObject source = jsonElement.getAsJsonObject();
+        JsonObject result = new JsonObject();
+        for (Entry<String, JsonElement> member : source.entrySet()) {
+            Node child = node.getChild(member.getKey());
+            if (child == null) {
+                result.add(member.getKey(), member.getValue());
+            } else if (!child.isIgnored()) {
+                result.add(member.getKey(), filteredView(member.getValue(), child));
+            }
         }
+        return result;
+    }
+
+    private static JsonElement sortArray(JsonElement jsonElement) {
+        return JsonElementOrdering.sortedArray(jsonElement.getAsJsonArray(), JsonElement::toString);
+    }
 
-        return paths[max(0, paths.length - 1)];
+    private static void ignorePath(JsonElement jsonElement, String field, String pathToIgnore) {
+        checkIgnorable(jsonElement, pathToIgnore);
+        if (!jsonElement.isJsonNull()) {
+            jsonElement.getAsJsonObject().remove(field);
+        }
     }
 
-    private static String headOf(Collection<String> paths) {
-        return paths.iterator().next();
+    private static void checkIgnorable(JsonElement jsonElement, String pathToIgnore) {
+        if (!jsonElement.isJsonNull() && !jsonElement.isJsonObject()) {
+            throw new IllegalArgumentException(pathToIgnore + " does not exist");
+        }
     }
 }
@@ -0,0 +1,131 @@
+package com.github.karsaig.approvalcrest;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash table comparing its keys by identity, the common part of {@link IdentitySet} and
+ * {@link IdentityMap}.
+ * <p>
+ * Keys are placed by {@link System#identityHashCode(Object)} and collisions are resolved by linear probing. Every entry
+ * takes {@code stride} consecutive slots of a single array, the key followed by its value if there is one. Removal
+ * shifts the following entries back, so no tombstones are needed. The table can be cleared and reused, it keeps its
+ * capacity unless that has grown unusually large.
+ */
+abstract class IdentityHashTable {
+    private static final int MINIMUM_CAPACITY = 16;
+    private static final int MAXIMUM_RETAINED_CAPACITY = 1 << 16;
+
+    private final int stride;
+    Object[] table;
+    private int mask;
+    private int size;
+
+    IdentityHashTable(int stride) {
+        this.stride = stride;
+        allocate(MINIMUM_CAPACITY);
+    }
+
+    /**
+     * @return the number of keys in the table
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes every key, keeping the capacity for reuse if it is not too large.
+     */
+    public void clear() {
+        if (mask + 1 > MAXIMUM_RETAINED_CAPACITY) {
+            allocate(MINIMUM_CAPACITY);
+        } else if (size > 0) {
+            Arrays.fill(table, null);
+        }
+        size = 0;
+    }
+
+    /**
+     * Finds the entry of the key.
+     *
+     * @param key the key to look for
+     * @return the index of the key's entry, or the bitwise complement of the free entry it would be added to
+     */
+    final int find(Object key) {
+        for (int i = home(key); ; i = (i + 1) & mask) {
+            Object current = table[i * stride];
+            if (current == key) {
+                return i;
+            }
+            if (current == null) {
+                return ~i;
+            }
+        }
+    }
+
+    /**
+     * Adds an entry at the free index returned by {@link #find(Object)}, growing the table if it is half full.
+     */
+    final void insert(int index, Object key, Object value) {
+        set(index, key, value);
+        if (++size > (mask + 1) / 2) {
+            resize((mask + 1) * 2);
+        }
+    }
+
+    /**
+     * Removes the entry at the index, moving back the entries of the same probe sequence following it.
+     */
+    final void removeAt(int index) {
+        size--;
+        int free = index;
+        for (int i = (index + 1) & mask; table[i * stride] != null; i = (i + 1) & mask) {
+            int home = home(table[i * stride]);
+            boolean reachable = free <= i ? home <= free || home > i : home <= free && home > i;
+            if (reachable) {
+                set(free, table[i * stride], stride == 1 ? null : table[i * stride + 1]);
+                free = i;
+            }
+        }
+        set(free, null, null);
+    }
+
+    final Object keyAt(int index) {
+        return table[index * stride];
+    }
+
+    final int capacity() {
+        return mask + 1;
+    }
+
+    private void set(int index, Object key, Object value) {
+        table[index * stride] = key;
+        if (stride > 1) {
+            table[index * stride + 1] = value;
+        }
+    }
+
+    private void resize(int capacity) {
+        Object[] oldTable = table;
+        allocate(capacity);
+        for (int i = 0; i < oldTable.length; i += stride) {
+            Object key = oldTable[i];
+            if (key != null) {
+                set(~find(key), key, stride == 1 ? null : oldTable[i + 1]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        table = new Object[capacity * stride];
+        mask = capacity - 1;
+    }
+
+    private int home(Object key) {
+        int hash = System.identityHashCode(key) * 0x9E3779B9;
+        return (hash ^ (hash >>> 16)) & mask;
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.karsaig.approvalcrest;
+
+/**
+ * Map with keys compared by identity, a replacement of {@link java.util.IdentityHashMap} for the lookups of object
+ * graph walks. Null keys are not permitted.
+ *
+ * @param <V> the type of the values
+ */
+public final class IdentityMap<V> extends IdentityHashTable {
+
+    public IdentityMap() {
+        super(2);
+    }
+
+    /**
+     * @param key the key to look up
+     * @return the value of the key, or null if the map has no such key
+     */
+    @SuppressWarnings("unchecked")
+    public V get(Object key) {
+        int index = find(key);
+        return index < 0 ? null : (V) table[index * 2 + 1];
+    }
+
+    public boolean containsKey(Object key) {
+        return find(key) >= 0;
+    }
+
+    /**
+     * @param key   the key of the value
+     * @param value the value to associate with the key
+     * @return the previous value of the key, or null if the map had no such key
+     */
+    @SuppressWarnings("unchecked")
+    public V put(Object key, V value) {
+        int index = find(key);
+        if (index < 0) {
+            insert(~index, key, value);
+            return null;
+        }
+        V previous = (V) table[index * 2 + 1];
+        table[index * 2 + 1] = value;
+        return previous;
+    }
+
+    /**
+     * @param key the key to remove
+     * @return the value of the removed key, or null if the map had no such key
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(Object key) {
+        int index = find(key);
+        if (index < 0) {
+            return null;
+        }
+        V previous = (V) table[index * 2 + 1];
+        removeAt(index);
+        return previous;
+    }
+}
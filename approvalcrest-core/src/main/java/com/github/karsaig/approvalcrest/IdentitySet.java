@@ -0,0 +1,58 @@
+package com.github.karsaig.approvalcrest;
+
+import java.util.function.Consumer;
+
+/**
+ * Set of objects compared by identity, an allocation free replacement of
+ * {@code Collections.newSetFromMap(new IdentityHashMap<>())}. Null is not permitted.
+ */
+public final class IdentitySet extends IdentityHashTable {
+
+    public IdentitySet() {
+        super(1);
+    }
+
+    /**
+     * @param object the object to add
+     * @return true if the object was not in the set yet
+     */
+    public boolean add(Object object) {
+        int index = find(object);
+        if (index >= 0) {
+            return false;
+        }
+        insert(~index, object, null);
+        return true;
+    }
+
+    public boolean contains(Object object) {
+        return find(object) >= 0;
+    }
+
+    /**
+     * @param object the object to remove
+     * @return true if the object was in the set
+     */
+    public boolean remove(Object object) {
+        int index = find(object);
+        if (index < 0) {
+            return false;
+        }
+        removeAt(index);
+        return true;
+    }
+
+    /**
+     * Passes every object of the set to the action, in no particular order.
+     *
+     * @param action the action to perform on the objects
+     */
+    public void forEach(Consumer<Object> action) {
+        for (int i = 0, capacity = capacity(); i < capacity; i++) {
+            Object object = keyAt(i);
+            if (object != null) {
+                action.accept(object);
+            }
+        }
+    }
+}
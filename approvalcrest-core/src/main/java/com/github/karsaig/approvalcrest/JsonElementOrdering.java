@@ -0,0 +1,79 @@
+/*
+ * Copyright 2013 Shazam Entertainment Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.karsaig.approvalcrest;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+
+/**
+ * Orders Json elements by a textual sort key, computing the key of each element only once.
+ * <p>
+ * The sort is stable, elements with equal keys are all kept in their original relative order.
+ */
+public final class JsonElementOrdering {
+
+    private JsonElementOrdering() {
+    }
+
+    /**
+     * Returns a new array with the given elements ordered by their keys.
+     *
+     * @param elements  the elements to order
+     * @param sortKey   computes the sort key of an element
+     * @return a new {@link JsonArray} containing every element
+     */
+    public static JsonArray sortedArray(Iterable<JsonElement> elements, Function<JsonElement, String> sortKey) {
+        List<KeyedElement> keyedElements = new ArrayList<>();
+        for (JsonElement element : elements) {
+            keyedElements.add(new KeyedElement(sortKey.apply(element), element));
+        }
+        return sortedArray(keyedElements);
+    }
+
+    /**
+     * Returns a new array with the given elements ordered by the keys at the same index.
+     *
+     * @param elements  the elements to order
+     * @param sortKeys  the sort keys of the elements
+     * @return a new {@link JsonArray} containing every element
+     */
+    public static JsonArray sortedArray(List<JsonElement> elements, List<String> sortKeys) {
+        List<KeyedElement> keyedElements = new ArrayList<>(elements.size());
+        for (int i = 0; i < elements.size(); i++) {
+            keyedElements.add(new KeyedElement(sortKeys.get(i), elements.get(i)));
+        }
+        return sortedArray(keyedElements);
+    }
+
+    private static JsonArray sortedArray(List<KeyedElement> keyedElements) {
+        keyedElements.sort(Comparator.comparing(keyedElement -> keyedElement.key));
+
+        JsonArray result = new JsonArray(keyedElements.size());
+        for (KeyedElement keyedElement : keyedElements) {
+            result.add(keyedElement.element);
+        }
+        return result;
+    }
+
+    private static final class KeyedElement {
+        private final String key;
+        private final JsonElement element;
+
+        KeyedElement(String key, JsonElement element) {
+            this.key = key;
+            this.element = element;
+        }
+    }
+}
@@ -19,6 +19,18 @@ public class MatcherConfiguration {
     private final List<Class<?>> typesToIgnore = new ArrayList<>();
     private final List<Matcher<String>> patternsToIgnore = new ArrayList<>();
     private final List<Function<Object, Boolean>> skipCircularReferenceCheck = new ArrayList<>();
+    private final Set<String> unorderedArrayPaths = new HashSet<>();
+    private final Map<String, String> arrayAlignmentKeys = new HashMap<>();
+    private final Map<String, NumericTolerance> numericTolerances = new HashMap<>();
+    private int maxCircularReferenceCheckDepth = Integer.MAX_VALUE;
+    private int maxDiagnosedDifferences;
+    private int diagnosticContextLines;
+    private boolean detectingCircularReferencesWhileSerialising;
+    private boolean serialisingBeansWithAccessors;
+    private boolean comparingBySubtreeHashes;
+    private boolean aligningArrays;
+    private NumericTolerance numericTolerance;
+    private ByteArrayEncoding byteArrayEncoding = ByteArrayEncoding.NUMBERS;
 
     public Map<String, Matcher<?>> getCustomMatchers() {
         return customMatchers;
@@ -36,10 +48,72 @@ public class MatcherConfiguration {
         return skipCircularReferenceCheck;
     }
 
+    public Set<String> getUnorderedArrayPaths() {
+        return unorderedArrayPaths;
+    }
+
+    public Map<String, String> getArrayAlignmentKeys() {
+        return arrayAlignmentKeys;
+    }
+
+    public Map<String, NumericTolerance> getNumericTolerances() {
+        return numericTolerances;
+    }
+
+    public NumericTolerance getNumericTolerance() {
+        return numericTolerance;
+    }
+
+    /**
+     * @param fieldPath the path of the numbers, without array indices
+     * @return the tolerance of the numbers at the path, the global tolerance if the path has none, or null if the
+     * numbers are compared exactly
+     */
+    public NumericTolerance getNumericTolerance(String fieldPath) {
+        NumericTolerance tolerance = numericTolerances.get(fieldPath);
+        return tolerance == null ? numericTolerance : tolerance;
+    }
+
     public List<Class<?>> getTypesToIgnore() {
         return typesToIgnore;
     }
 
+    public int getMaxCircularReferenceCheckDepth() {
+        return maxCircularReferenceCheckDepth;
+    }
+
+    public boolean isDetectingCircularReferencesWhileSerialising() {
+        return detectingCircularReferencesWhileSerialising;
+    }
+
+    public boolean isSerialisingBeansWithAccessors() {
+        return serialisingBeansWithAccessors;
+    }
+
+    public boolean isComparingBySubtreeHashes() {
+        return comparingBySubtreeHashes;
+    }
+
+    public boolean isAligningArrays() {
+        return aligningArrays;
+    }
+
+    public boolean isLimitingDiagnostics() {
+        return maxDiagnosedDifferences != 0;
+    }
+
+    public int getMaxDiagnosedDifferences() {
+        return maxDiagnosedDifferences;
+    }
+
+    public int getDiagnosticContextLines() {
+        return diagnosticContextLines;
+    }
+
+    public ByteArrayEncoding getByteArrayEncoding() {
+        return byteArrayEncoding;
+    }
+
     public MatcherConfiguration addPathToIgnore(String path) {
         pathsToIgnore.add(path);
         return this;
@@ -100,4 +174,157 @@ public class MatcherConfiguration {
         }
         return this;
     }
+
+    /**
+     * Compares the elements of the arrays at the given paths regardless of their order. The paths are the paths of the
+     * fields holding the arrays, without array indices, e.g. {@code orders.lines} for the lines of every order.
+     *
+     * @param fieldPaths the paths of the arrays
+     * @return this configuration
+     */
+    public MatcherConfiguration addUnorderedArrayPath(String... fieldPaths) {
+        for (String fieldPath : fieldPaths) {
+            unorderedArrayPaths.add(fieldPath);
+        }
+        return this;
+    }
+
+    /**
+     * Reports the differences of the arrays at the given path on elements aligned by the value of their key field,
+     * instead of by position: removed, inserted and changed elements. Arrays with elements without a unique key are
+     * aligned by their longest common subsequence.
+     *
+     * @param fieldPath the path of the arrays, without array indices
+     * @param keyField  the name of the field identifying the elements
+     * @return this configuration
+     */
+    public MatcherConfiguration alignArraysBy(String fieldPath, String keyField) {
+        arrayAlignmentKeys.put(fieldPath, keyField);
+        return this;
+    }
+
+    /**
+     * Reports the differences of arrays on elements aligned by their longest common subsequence, instead of by position,
+     * so an inserted or removed element is reported alone.
+     *
+     * @return this configuration
+     */
+    public MatcherConfiguration alignArrays() {
+        aligningArrays = true;
+        return this;
+    }
+
+    /**
+     * Compares every number within the tolerance, unless a tolerance is given for its path.
+     *
+     * @param tolerance the tolerance of the numbers
+     * @return this configuration
+     */
+    public MatcherConfiguration withNumericTolerance(NumericTolerance tolerance) {
+        if (tolerance == null) {
+            throw new IllegalArgumentException("The numeric tolerance must not be null");
+        }
+        numericTolerance = tolerance;
+        return this;
+    }
+
+    /**
+     * Compares the numbers at the given path within the tolerance. The path is the path of the field holding the
+     * numbers, without array indices, e.g. {@code orders.lines.price} for the prices of every line, or
+     * {@code measurements} for the elements of an array of numbers.
+     *
+     * @param fieldPath the path of the numbers
+     * @param tolerance the tolerance of the numbers
+     * @return this configuration
+     */
+    public MatcherConfiguration withNumericTolerance(String fieldPath, NumericTolerance tolerance) {
+        if (tolerance == null) {
+            throw new IllegalArgumentException("The numeric tolerance must not be null");
+        }
+        numericTolerances.put(fieldPath, tolerance);
+        return this;
+    }
+
+    /**
+     * Limits the mismatch description to the first differences: only the lines of the expected and the actual Json
+     * around them are described. Unlimited by default.
+     *
+     * @param maxDifferences the number of differences described
+     * @param contextLines   the number of lines described before and after each difference
+     * @return this configuration
+     */
+    public MatcherConfiguration limitDiagnostics(int maxDifferences, int contextLines) {
+        if (maxDifferences < 1) {
+            throw new IllegalArgumentException("The number of differences described must be positive, but was " + maxDifferences);
+        }
+        if (contextLines < 0) {
+            throw new IllegalArgumentException("The number of context lines must not be negative, but was " + contextLines);
+        }
+        maxDiagnosedDifferences = maxDifferences;
+        diagnosticContextLines = contextLines;
+        return this;
+    }
+
+    /**
+     * Limits how deep the object graph is walked looking for circular references. Objects deeper than the limit are not
+     * checked, the same way as the ones skipped by a circular reference checker. Unlimited by default.
+     *
+     * @param depth the maximum number of nested objects, collections and maps walked
+     * @return this configuration
+     */
+    public MatcherConfiguration setMaxCircularReferenceCheckDepth(int depth) {
+        if (depth < 1) {
+            throw new IllegalArgumentException("The circular reference check depth must be positive, but was " + depth);
+        }
+        maxCircularReferenceCheckDepth = depth;
+        return this;
+    }
+
+    /**
+     * Detects circular references while the objects are serialised, instead of walking their graph up front. The graph
+     * is walked only when serialisation finds a circular reference, then the objects are serialised again with the
+     * circular reference types found.
+     *
+     * @return this configuration
+     */
+    public MatcherConfiguration detectCircularReferencesWhileSerialising() {
+        detectingCircularReferencesWhileSerialising = true;
+        return this;
+    }
+
+    /**
+     * Serialises beans through field getters compiled once per class, instead of reading every field reflectively. The
+     * Json written is the same.
+     *
+     * @return this configuration
+     */
+    public MatcherConfiguration serialiseBeansWithAccessors() {
+        serialisingBeansWithAccessors = true;
+        return this;
+    }
+
+    /**
+     * Compares the Json trees by the hashes of their subtrees, computed in parallel, and descends only into the
+     * subtrees with different hashes. The differences reported are the same.
+     *
+     * @return this configuration
+     */
+    public MatcherConfiguration compareBySubtreeHashes() {
+        comparingBySubtreeHashes = true;
+        return this;
+    }
+
+    /**
+     * Sets how byte arrays are written, an array of numbers by default.
+     *
+     * @param encoding the encoding of byte arrays
+     * @return this configuration
+     */
+    public MatcherConfiguration encodeByteArraysAs(ByteArrayEncoding encoding) {
+        if (encoding == null) {
+            throw new IllegalArgumentException("The byte array encoding must not be null");
+        }
+        byteArrayEncoding = encoding;
+        return this;
+    }
 }
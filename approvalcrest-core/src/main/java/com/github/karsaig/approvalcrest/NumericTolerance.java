@@ -0,0 +1,142 @@
+package com.github.karsaig.approvalcrest;
+
+import java.util.Objects;
+
+/**
+ * How far an actual number may be from the expected one to be taken as equal. A tolerance is immutable, so it can be
+ * declared once, e.g. in a constant of the test class, and given to any number of matchers.
+ * Example:
+ * <pre>private static final NumericTolerance PRICES = NumericTolerance.relative(1e-12).orUlps(4);</pre>
+ * Numbers are equal if they are within any of the limits of the tolerance.
+ */
+public final class NumericTolerance {
+    private final double absolute;
+    private final double relative;
+    private final long ulps;
+
+    private NumericTolerance(double absolute, double relative, long ulps) {
+        this.absolute = absolute;
+        this.relative = relative;
+        this.ulps = ulps;
+    }
+
+    /**
+     * @param limit the largest difference of the numbers
+     * @return a tolerance of an absolute difference
+     */
+    public static NumericTolerance absolute(double limit) {
+        return new NumericTolerance(checkLimit(limit), 0, 0);
+    }
+
+    /**
+     * @param limit the largest difference of the numbers, relative to the larger magnitude of the two
+     * @return a tolerance of a relative difference
+     */
+    public static NumericTolerance relative(double limit) {
+        return new NumericTolerance(0, checkLimit(limit), 0);
+    }
+
+    /**
+     * @param limit the largest number of representable doubles between the numbers
+     * @return a tolerance of units in the last place
+     */
+    public static NumericTolerance ulps(long limit) {
+        return new NumericTolerance(0, 0, checkLimit(limit));
+    }
+
+    /**
+     * @param limit the largest difference of the numbers
+     * @return a tolerance accepting numbers within this tolerance or within the absolute difference
+     */
+    public NumericTolerance orAbsolute(double limit) {
+        return new NumericTolerance(Math.max(absolute, checkLimit(limit)), relative, ulps);
+    }
+
+    /**
+     * @param limit the largest difference of the numbers, relative to the larger magnitude of the two
+     * @return a tolerance accepting numbers within this tolerance or within the relative difference
+     */
+    public NumericTolerance orRelative(double limit) {
+        return new NumericTolerance(absolute, Math.max(relative, checkLimit(limit)), ulps);
+    }
+
+    /**
+     * @param limit the largest number of representable doubles between the numbers
+     * @return a tolerance accepting numbers within this tolerance or within the units in the last place
+     */
+    public NumericTolerance orUlps(long limit) {
+        return new NumericTolerance(absolute, relative, Math.max(ulps, checkLimit(limit)));
+    }
+
+    /**
+     * @param expected the expected number
+     * @param actual   the actual number
+     * @return true if the actual number is within the tolerance of the expected one, infinities and NaN only if they
+     * are equal
+     */
+    public boolean isWithin(double expected, double actual) {
+        if (expected == actual) {
+            return true;
+        }
+        if (!Double.isFinite(expected) || !Double.isFinite(actual)) {
+            return false;
+        }
+        double difference = Math.abs(expected - actual);
+        if (difference <= absolute || difference <= relative * Math.max(Math.abs(expected), Math.abs(actual))) {
+            return true;
+        }
+        return ulps != 0 && ulpDistance(expected, actual) <= ulps;
+    }
+
+    /**
+     * The number of doubles between the two, counted on the doubles ordered as longs. Numbers of different sign are
+     * counted through zero, an overflow is the largest distance.
+     */
+    private static long ulpDistance(double expected, double actual) {
+        long expectedOrder = order(expected);
+        long actualOrder = order(actual);
+        long distance = expectedOrder > actualOrder ? expectedOrder - actualOrder : actualOrder - expectedOrder;
+        return distance < 0 ? Long.MAX_VALUE : distance;
+    }
+
+    private static long order(double value) {
+        long bits = Double.doubleToLongBits(value);
+        return bits < 0 ? Long.MIN_VALUE - bits : bits;
+    }
+
+    private static double checkLimit(double limit) {
+        if (!(limit >= 0) || Double.isInfinite(limit)) {
+            throw new IllegalArgumentException("The tolerance must be a finite, non-negative number, but was " + limit);
+        }
+        return limit;
+    }
+
+    private static long checkLimit(long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("The tolerance must not be negative, but was " + limit);
+        }
+        return limit;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        NumericTolerance that = (NumericTolerance) o;
+        return Double.compare(that.absolute, absolute) == 0 && Double.compare(that.relative, relative) == 0 && ulps == that.ulps;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(absolute, relative, ulps);
+    }
+
+    @Override
+    public String toString() {
+        return "NumericTolerance{absolute=" + absolute + ", relative=" + relative + ", ulps=" + ulps + "}";
+    }
+}
@@ -0,0 +1,213 @@
+package com.github.karsaig.approvalcrest;
+
+import static java.lang.reflect.Modifier.isStatic;
+import static java.util.Collections.unmodifiableList;
+import static org.apache.commons.lang3.ClassUtils.isPrimitiveOrWrapper;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process wide registry of what reflection tells about a class: its fields class by class up the hierarchy, getters of
+ * the fields, and what kind of value its instances are. Computed once per class and shared by the circular reference
+ * detector, the bean finder and the serialisation of ignored paths.
+ */
+public final class TypeMetadata {
+    /**
+     * Rough sizes used to estimate the memory retained by the registry: an object header, a reference, and the
+     * {@link Field} copies returned by {@link Class#getDeclaredFields()}.
+     */
+    private static final int OBJECT_BYTES = 16;
+    private static final int REFERENCE_BYTES = 8;
+    private static final int FIELD_BYTES = 80;
+    private static final MethodType GETTER_TYPE = MethodType.methodType(Object.class, Object.class);
+
+    private static final AtomicLong REGISTERED_CLASSES = new AtomicLong();
+    private static final AtomicLong RETAINED_BYTES = new AtomicLong();
+    private static final AtomicLong COMPUTE_NANOS = new AtomicLong();
+
+    private static final ClassValue<TypeMetadata> REGISTRY = new ClassValue<TypeMetadata>() {
+        @Override
+        protected TypeMetadata computeValue(Class<?> type) {
+            long start = System.nanoTime();
+            TypeMetadata metadata = new TypeMetadata(type);
+            COMPUTE_NANOS.addAndGet(System.nanoTime() - start);
+            REGISTERED_CLASSES.incrementAndGet();
+            RETAINED_BYTES.addAndGet(metadata.estimatedBytes());
+            return metadata;
+        }
+    };
+
+    private final Class<?> type;
+    private final boolean value;
+    private final boolean iterable;
+    private final boolean map;
+    private final List<Field[]> fieldsByClass;
+    private final Map<String, Field> fieldsByName;
+    private final Map<String, MethodHandle> getters = new ConcurrentHashMap<>();
+
+    private TypeMetadata(Class<?> type) {
+        this.type = type;
+        this.value = isPrimitiveOrWrapper(type) || type == String.class || type == Class.class || Enum.class.isAssignableFrom(type);
+        this.iterable = Iterable.class.isAssignableFrom(type);
+        this.map = Map.class.isAssignableFrom(type);
+        List<Field[]> fields = new ArrayList<>();
+        Map<String, Field> byName = new HashMap<>();
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+            List<Field> declaredFields = new ArrayList<>();
+            for (Field field : clazz.getDeclaredFields()) {
+                byName.putIfAbsent(field.getName(), field);
+                if (!isStatic(field.getModifiers())) {
+                    declaredFields.add(field);
+                }
+            }
+            fields.add(declaredFields.toArray(new Field[0]));
+        }
+        this.fieldsByClass = unmodifiableList(fields);
+        this.fieldsByName = byName;
+    }
+
+    /**
+     * Returns the metadata of the class, computing it on first use.
+     *
+     * @param type the class to describe
+     * @return the metadata of the class
+     */
+    public static TypeMetadata of(Class<?> type) {
+        return REGISTRY.get(type);
+    }
+
+    /**
+     * @return the counters of the registry
+     */
+    public static Stats stats() {
+        return new Stats(REGISTERED_CLASSES.get(), RETAINED_BYTES.get(), COMPUTE_NANOS.get());
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * @return true for primitives, their wrappers, {@link String}, {@link Class} and enums, which are serialised as a
+     * single value
+     */
+    public boolean isValue() {
+        return value;
+    }
+
+    public boolean isIterable() {
+        return iterable;
+    }
+
+    public boolean isMap() {
+        return map;
+    }
+
+    /**
+     * The non-static fields of the class and its super classes, one array for every class of the hierarchy, starting
+     * from the class itself. The arrays must not be modified.
+     *
+     * @return the fields class by class
+     */
+    public List<Field[]> getFieldsByClass() {
+        return fieldsByClass;
+    }
+
+    /**
+     * Looks a field up by name, the same way as Java resolves it: a field of the class hides the fields of the same name
+     * in its super classes.
+     *
+     * @param name the name of the field
+     * @return the field, or null if neither the class nor its super classes declare one
+     */
+    public Field getField(String name) {
+        return fieldsByName.get(name);
+    }
+
+    /**
+     * Returns a getter of the field, taking the object as an {@link Object} and returning the field value as an
+     * {@link Object}.
+     *
+     * @param name the name of the field
+     * @return the getter, or null if there is no such field or it can't be made accessible
+     */
+    public MethodHandle getGetter(String name) {
+        MethodHandle getter = getters.get(name);
+        if (getter == null && fieldsByName.containsKey(name)) {
+            getter = getters.computeIfAbsent(name, n -> unreflectGetter(fieldsByName.get(n)));
+        }
+        return getter;
+    }
+
+    private static MethodHandle unreflectGetter(Field field) {
+        try {
+            field.setAccessible(true);
+            MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+            if (isStatic(field.getModifiers())) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            }
+            return getter.asType(GETTER_TYPE);
+        } catch (IllegalAccessException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private long estimatedBytes() {
+        long bytes = OBJECT_BYTES + fieldsByName.size() * (OBJECT_BYTES + 2L * REFERENCE_BYTES);
+        for (Field[] fields : fieldsByClass) {
+            bytes += OBJECT_BYTES + fields.length * (long) REFERENCE_BYTES;
+        }
+        return bytes + fieldsByName.size() * (long) FIELD_BYTES;
+    }
+
+    /**
+     * Snapshot of the counters of the registry.
+     */
+    public static final class Stats {
+        private final long registeredClasses;
+        private final long retainedBytes;
+        private final long computeNanos;
+
+        private Stats(long registeredClasses, long retainedBytes, long computeNanos) {
+            this.registeredClasses = registeredClasses;
+            this.retainedBytes = retainedBytes;
+            this.computeNanos = computeNanos;
+        }
+
+        /**
+         * @return the number of classes described so far
+         */
+        public long getRegisteredClasses() {
+            return registeredClasses;
+        }
+
+        /**
+         * @return an estimate of the memory retained by the metadata, not counting getters created on demand
+         */
+        public long getRetainedBytes() {
+            return retainedBytes;
+        }
+
+        /**
+         * @return the time spent computing metadata, in nanoseconds
+         */
+        public long getComputeNanos() {
+            return computeNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "TypeMetadata.Stats{registeredClasses=" + registeredClasses + ", retainedBytes=" + retainedBytes
+                    + ", computeNanos=" + computeNanos + "}";
+        }
+    }
+}
@@ -1,10 +1,15 @@
 package com.github.karsaig.approvalcrest.matcher;
 
+import java.util.List;
+
 import org.hamcrest.Description;
 import org.hamcrest.DiagnosingMatcher;
 
 import com.github.karsaig.approvalcrest.ComparisonDescription;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
 public abstract class AbstractDiagnosingMatcher<T> extends DiagnosingMatcher<T> {
 
     protected boolean appendMismatchDescription(Description mismatchDescription, String expectedJson, String actualJson, String message) {
@@ -18,4 +23,23 @@ public abstract class AbstractDiagnosingMatcher<T> extends DiagnosingMatcher<T>
         mismatchDescription.appendText(message);
         return false;
     }
+
+    /**
+     * Describes the mismatch with only the lines of the expected and the actual Json around the values at the paths of
+     * the differences, without printing the whole Json.
+     *
+     * @param mismatchDescription the description of the mismatch
+     * @param gson                the {@link Gson} instance printing the Json
+     * @param expectedJson        the expected Json
+     * @param actualJson          the actual Json
+     * @param differencePaths     the paths of the differences to describe
+     * @param contextLines        the number of lines described before and after each difference
+     * @param message             the description of the differences
+     * @return false
+     */
+    protected boolean appendMismatchDescription(Description mismatchDescription, Gson gson, JsonElement expectedJson, JsonElement actualJson,
+                                                List<String> differencePaths, int contextLines, String message) {
+        return appendMismatchDescription(mismatchDescription, WindowedJsonPrinter.toJson(gson, expectedJson, differencePaths, contextLines),
+                WindowedJsonPrinter.toJson(gson, actualJson, differencePaths, contextLines), message);
+    }
 }
@@ -0,0 +1,344 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.github.karsaig.approvalcrest.processor.ApprovalSerializable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.internal.$Gson$Types;
+import com.google.gson.internal.Excluder;
+import com.google.gson.internal.bind.TypeAdapters;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes beans through {@link MethodHandle} getters compiled once per class, instead of the reflective adapter of
+ * {@link Gson} reading every field with {@link Field#get(Object)}. The fields, their names, order and adapters are
+ * resolved the same way as by the reflective adapter, so the Json written is the same. Fields of primitive types with
+ * the built-in adapters are read and written without boxing.
+ * <p>
+ * Only replaces the adapters {@link Gson} would create reflectively, and leaves the beans to {@link Gson} if a field
+ * has its own {@link JsonAdapter}, a Json name is declared twice, or a super type has an adapter registered. Reading is
+ * always delegated to the reflective adapter.
+ * <p>
+ * The fields of beans annotated with {@link ApprovalSerializable} are read by the readers generated at compile time,
+ * and their private fields with a private lookup, without making the fields accessible. Only private fields on Java 8
+ * are still made accessible. {@link #forGeneratedBeans()} only replaces the adapters of such beans.
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+class AccessorTypeAdapterFactory implements TypeAdapterFactory {
+    private final boolean onlyGeneratedBeans;
+
+    AccessorTypeAdapterFactory() {
+        this(false);
+    }
+
+    private AccessorTypeAdapterFactory(boolean onlyGeneratedBeans) {
+        this.onlyGeneratedBeans = onlyGeneratedBeans;
+    }
+
+    /**
+     * @return a factory writing only the beans having generated field readers, or a super class having them
+     */
+    static AccessorTypeAdapterFactory forGeneratedBeans() {
+        return new AccessorTypeAdapterFactory(true);
+    }
+
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        if (onlyGeneratedBeans && !GeneratedFieldReaders.covers(type.getRawType())) {
+            return null;
+        }
+        TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+        if (!ReflectiveAdapters.isReflective(delegate) || ReflectiveAdapters.hasCustomisedSupertype(gson, this, type.getRawType())) {
+            return null;
+        }
+        BoundField[] fields = getBoundFields(gson, type);
+        return fields == null ? null : new Adapter<>(delegate, fields);
+    }
+
+    /**
+     * Collects the serialised fields of the type in the order of the reflective adapter, or returns null if the type
+     * is to be left to it.
+     */
+    private static BoundField[] getBoundFields(Gson gson, TypeToken<?> type) {
+        List<BoundField> result = new ArrayList<>();
+        Class<?> raw = type.getRawType();
+        if (raw.isInterface()) {
+            return new BoundField[0];
+        }
+        Excluder excluder = gson.excluder();
+        Set<String> names = new HashSet<>();
+        while (raw != Object.class) {
+            // static fields too, the excluder decides about them like for the reflective adapter
+            for (Field field : raw.getDeclaredFields()) {
+                boolean serialize = !excluder.excludeClass(field.getType(), true) && !excluder.excludeField(field, true);
+                boolean deserialize = !excluder.excludeClass(field.getType(), false) && !excluder.excludeField(field, false);
+                if (!serialize && !deserialize) {
+                    continue;
+                }
+                if (field.isAnnotationPresent(JsonAdapter.class)) {
+                    return null;
+                }
+                List<String> fieldNames = getFieldNames(gson, field);
+                for (String name : fieldNames) {
+                    if (!names.add(name)) {
+                        return null;
+                    }
+                }
+                if (serialize) {
+                    Type fieldType = $Gson$Types.resolve(type.getType(), raw, field.getGenericType());
+                    result.add(createBoundField(gson, field, fieldNames.get(0), fieldType));
+                }
+            }
+            type = TypeToken.get($Gson$Types.resolve(type.getType(), raw, raw.getGenericSuperclass()));
+            raw = type.getRawType();
+        }
+        return result.toArray(new BoundField[0]);
+    }
+
+    private static List<String> getFieldNames(Gson gson, Field field) {
+        List<String> names = new ArrayList<>();
+        SerializedName serializedName = field.getAnnotation(SerializedName.class);
+        if (serializedName == null) {
+            names.add(gson.fieldNamingStrategy().translateName(field));
+        } else {
+            names.add(serializedName.value());
+            for (String alternate : serializedName.alternate()) {
+                names.add(alternate);
+            }
+        }
+        return names;
+    }
+
+    private static BoundField createBoundField(Gson gson, Field field, String name, Type fieldType) {
+        Class<?> type = field.getType();
+        if (type == int.class && hasBuiltInAdapter(gson, int.class, Integer.class, TypeAdapters.INTEGER)) {
+            return new IntField(name, getter(field, int.class));
+        }
+        if (type == long.class && hasBuiltInAdapter(gson, long.class, Long.class, TypeAdapters.LONG)) {
+            return new LongField(name, getter(field, long.class));
+        }
+        if (type == short.class && hasBuiltInAdapter(gson, short.class, Short.class, TypeAdapters.SHORT)) {
+            return new IntField(name, getter(field, int.class));
+        }
+        if (type == byte.class && hasBuiltInAdapter(gson, byte.class, Byte.class, TypeAdapters.BYTE)) {
+            return new IntField(name, getter(field, int.class));
+        }
+        if (type == boolean.class && hasBuiltInAdapter(gson, boolean.class, Boolean.class, TypeAdapters.BOOLEAN)) {
+            return new BooleanField(name, getter(field, boolean.class));
+        }
+        if (type == char.class && hasBuiltInAdapter(gson, char.class, Character.class, TypeAdapters.CHARACTER)) {
+            return new CharField(name, getter(field, char.class));
+        }
+        return new ObjectField(name, getter(field, Object.class), gson, fieldType);
+    }
+
+    /**
+     * The reflective adapter writes a primitive field with the adapter of its wrapper type, so both have to be the
+     * built-in one to write the value directly.
+     */
+    private static boolean hasBuiltInAdapter(Gson gson, Class<?> primitive, Class<?> wrapper, TypeAdapter<?> builtIn) {
+        return gson.getAdapter(primitive) == builtIn && gson.getAdapter(wrapper) == builtIn;
+    }
+
+    private static MethodHandle getter(Field field, Class<?> valueType) {
+        MethodHandle generated = GeneratedFieldReaders.getter(field, valueType);
+        if (generated != null) {
+            return generated;
+        }
+        try {
+            field.setAccessible(true);
+            MethodHandle getter = MethodHandles.lookup().unreflectGetter(field);
+            if (Modifier.isStatic(field.getModifiers())) {
+                getter = MethodHandles.dropArguments(getter, 0, Object.class);
+            }
+            return getter.asType(methodType(valueType, Object.class));
+        } catch (IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Writes beans field by field.
+     */
+    static final class Adapter<T> extends TypeAdapter<T> {
+        private final TypeAdapter<T> delegate;
+        private final BoundField[] fields;
+
+        Adapter(TypeAdapter<T> delegate, BoundField[] fields) {
+            this.delegate = delegate;
+            this.fields = fields;
+        }
+
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            try {
+                for (BoundField field : fields) {
+                    field.write(out, value);
+                }
+            } catch (IOException | RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new JsonIOException(e);
+            }
+            out.endObject();
+        }
+
+        @Override
+        public T read(JsonReader in) throws IOException {
+            return delegate.read(in);
+        }
+    }
+
+    private abstract static class BoundField {
+        final String name;
+
+        BoundField(String name) {
+            this.name = name;
+        }
+
+        abstract void write(JsonWriter out, Object bean) throws Throwable;
+    }
+
+    private static final class IntField extends BoundField {
+        private final MethodHandle getter;
+
+        IntField(String name, MethodHandle getter) {
+            super(name);
+            this.getter = getter;
+        }
+
+        @Override
+        void write(JsonWriter out, Object bean) throws Throwable {
+            out.name(name).value((int) getter.invokeExact(bean));
+        }
+    }
+
+    private static final class LongField extends BoundField {
+        private final MethodHandle getter;
+
+        LongField(String name, MethodHandle getter) {
+            super(name);
+            this.getter = getter;
+        }
+
+        @Override
+        void write(JsonWriter out, Object bean) throws Throwable {
+            out.name(name).value((long) getter.invokeExact(bean));
+        }
+    }
+
+    private static final class BooleanField extends BoundField {
+        private final MethodHandle getter;
+
+        BooleanField(String name, MethodHandle getter) {
+            super(name);
+            this.getter = getter;
+        }
+
+        @Override
+        void write(JsonWriter out, Object bean) throws Throwable {
+            out.name(name).value((boolean) getter.invokeExact(bean));
+        }
+    }
+
+    private static final class CharField extends BoundField {
+        private final MethodHandle getter;
+
+        CharField(String name, MethodHandle getter) {
+            super(name);
+            this.getter = getter;
+        }
+
+        @Override
+        void write(JsonWriter out, Object bean) throws Throwable {
+            out.name(name).value(String.valueOf((char) getter.invokeExact(bean)));
+        }
+    }
+
+    /**
+     * A field written by the adapter the reflective adapter would choose: the one of the runtime type of the value,
+     * unless that is reflective and the declared type has an adapter registered.
+     */
+    private static final class ObjectField extends BoundField {
+        private final MethodHandle getter;
+        private final Gson gson;
+        private final Type declaredType;
+        private final TypeAdapter declaredAdapter;
+        private final boolean runtimeTypeMayDiffer;
+        private volatile RuntimeAdapter lastRuntimeAdapter;
+
+        ObjectField(String name, MethodHandle getter, Gson gson, Type declaredType) {
+            super(name);
+            this.getter = getter;
+            this.gson = gson;
+            this.declaredType = declaredType;
+            this.declaredAdapter = gson.getAdapter(TypeToken.get(declaredType));
+            this.runtimeTypeMayDiffer = declaredType == Object.class || declaredType instanceof TypeVariable || declaredType instanceof Class;
+        }
+
+        @Override
+        void write(JsonWriter out, Object bean) throws Throwable {
+            Object value = (Object) getter.invokeExact(bean);
+            if (value == bean) {
+                return;
+            }
+            out.name(name);
+            adapterOf(value).write(out, value);
+        }
+
+        private TypeAdapter adapterOf(Object value) {
+            if (value == null || !runtimeTypeMayDiffer || value.getClass() == declaredType) {
+                return declaredAdapter;
+            }
+            Class<?> runtimeType = value.getClass();
+            RuntimeAdapter runtimeAdapter = lastRuntimeAdapter;
+            if (runtimeAdapter == null || runtimeAdapter.type != runtimeType) {
+                runtimeAdapter = new RuntimeAdapter(runtimeType, chooseAdapter(gson.getAdapter(runtimeType)));
+                lastRuntimeAdapter = runtimeAdapter;
+            }
+            return runtimeAdapter.adapter;
+        }
+
+        private TypeAdapter chooseAdapter(TypeAdapter runtimeAdapter) {
+            if (ReflectiveAdapters.isReflective(runtimeAdapter) && !ReflectiveAdapters.isReflective(declaredAdapter)) {
+                return declaredAdapter;
+            }
+            return runtimeAdapter;
+        }
+    }
+
+    private static final class RuntimeAdapter {
+        private final Class<?> type;
+        private final TypeAdapter adapter;
+
+        RuntimeAdapter(Class<?> type, TypeAdapter adapter) {
+            this.type = type;
+            this.adapter = adapter;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import java.util.Arrays;
+
+/**
+ * Aligns the elements of two arrays by their {@link SubtreeHash}, finding the longest common subsequence with the
+ * linear space variant of the O(ND) difference algorithm of Myers. The time is proportional to the length of the arrays
+ * times the number of differences, the common prefix and suffix are matched without searching.
+ */
+final class ArrayAlignment {
+    private final SubtreeHash expected;
+    private final SubtreeHash actual;
+    private final int[] expectedToActual;
+
+    private ArrayAlignment(SubtreeHash expected, int expectedSize, SubtreeHash actual) {
+        this.expected = expected;
+        this.actual = actual;
+        expectedToActual = new int[expectedSize];
+        Arrays.fill(expectedToActual, -1);
+    }
+
+    /**
+     * @param expected     the hash of the expected array
+     * @param expectedSize the number of expected elements
+     * @param actual       the hash of the actual array
+     * @param actualSize   the number of actual elements
+     * @return the index of the actual element each expected element is aligned with, or -1 if it is not aligned
+     */
+    static int[] align(SubtreeHash expected, int expectedSize, SubtreeHash actual, int actualSize) {
+        ArrayAlignment alignment = new ArrayAlignment(expected, expectedSize, actual);
+        alignment.align(0, expectedSize, 0, actualSize);
+        return alignment.expectedToActual;
+    }
+
+    private void align(int expectedFrom, int expectedTo, int actualFrom, int actualTo) {
+        while (expectedFrom < expectedTo && actualFrom < actualTo && isSame(expectedFrom, actualFrom)) {
+            expectedToActual[expectedFrom++] = actualFrom++;
+        }
+        while (expectedFrom < expectedTo && actualFrom < actualTo && isSame(expectedTo - 1, actualTo - 1)) {
+            expectedToActual[--expectedTo] = --actualTo;
+        }
+        if (expectedFrom == expectedTo || actualFrom == actualTo) {
+            return;
+        }
+        int[] snake = middleSnake(expectedFrom, expectedTo, actualFrom, actualTo);
+        align(expectedFrom, snake[0], actualFrom, snake[1]);
+        for (int i = snake[0], j = snake[1]; i < snake[2]; i++, j++) {
+            expectedToActual[i] = j;
+        }
+        align(snake[2], expectedTo, snake[3], actualTo);
+    }
+
+    /**
+     * Finds the middle snake of the shortest edit script, searching from both ends at the same time.
+     *
+     * @return the start and the end of the snake: expected index, actual index, expected index, actual index
+     */
+    private int[] middleSnake(int expectedFrom, int expectedTo, int actualFrom, int actualTo) {
+        int n = expectedTo - expectedFrom;
+        int m = actualTo - actualFrom;
+        int delta = n - m;
+        boolean odd = (delta & 1) != 0;
+        int max = (n + m + 1) / 2;
+        int offset = max + 1;
+        int[] forward = new int[2 * offset + 1];
+        int[] backward = new int[2 * offset + 1];
+        for (int d = 0; d <= max; d++) {
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || k != d && forward[offset + k - 1] < forward[offset + k + 1] ? forward[offset + k + 1] : forward[offset + k - 1] + 1;
+                int y = x - k;
+                int startX = x;
+                while (x < n && y < m && isSame(expectedFrom + x, actualFrom + y)) {
+                    x++;
+                    y++;
+                }
+                forward[offset + k] = x;
+                int reverseK = delta - k;
+                if (odd && reverseK >= -(d - 1) && reverseK <= d - 1 && x + backward[offset + reverseK] >= n) {
+                    return new int[]{expectedFrom + startX, actualFrom + startX - k, expectedFrom + x, actualFrom + y};
+                }
+            }
+            for (int k = -d; k <= d; k += 2) {
+                int x = k == -d || k != d && backward[offset + k - 1] < backward[offset + k + 1] ? backward[offset + k + 1] : backward[offset + k - 1] + 1;
+                int y = x - k;
+                int startX = x;
+                while (x < n && y < m && isSame(expectedTo - 1 - x, actualTo - 1 - y)) {
+                    x++;
+                    y++;
+                }
+                backward[offset + k] = x;
+                int forwardK = delta - k;
+                if (!odd && forwardK >= -d && forwardK <= d && x + forward[offset + forwardK] >= n) {
+                    return new int[]{expectedTo - x, actualTo - y, expectedTo - startX, actualTo - startX + k};
+                }
+            }
+        }
+        throw new IllegalStateException("No middle snake found");
+    }
+
+    private boolean isSame(int expectedIndex, int actualIndex) {
+        return expected.element(expectedIndex).isSameAs(actual.element(actualIndex));
+    }
+}
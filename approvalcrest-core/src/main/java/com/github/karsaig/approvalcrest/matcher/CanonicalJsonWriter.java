@@ -0,0 +1,512 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes Json as UTF-8 bytes straight into a growable buffer, with the layout of the pretty printing of {@link Gson}:
+ * two spaces of indentation and {@code ": "} between names and values. Strings are escaped the same way as by
+ * {@link Gson}, with HTML escaping if {@link Gson#htmlSafe()}, and integral numbers are formatted into the buffer
+ * without an intermediate {@link String}. Other numbers are written with their {@code toString()}, the digits {@link Gson} writes,
+ * which parse back to the same value.
+ * <p>
+ * One writer is kept per thread and reused, see {@link #acquire()}. Its buffer is released if it grew above
+ * {@value #RETAINED_CAPACITY} bytes, so a large snapshot does not stay on the heap after it has been written.
+ */
+final class CanonicalJsonWriter extends JsonWriter {
+    private static final int RETAINED_CAPACITY = 1 << 22;
+    private static final int INITIAL_CAPACITY = 1 << 12;
+    private static final byte[] INDENT = {' ', ' '};
+    private static final byte[] HEX_DIGITS = "0123456789abcdef".getBytes();
+    private static final byte[] MIN_LONG = Long.toString(Long.MIN_VALUE).getBytes();
+    private static final ThreadLocal<CanonicalJsonWriter> WRITERS = ThreadLocal.withInitial(CanonicalJsonWriter::new);
+
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    private static final Writer UNWRITABLE_WRITER = new Writer() {
+        @Override
+        public void write(char[] buffer, int offset, int counter) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void flush() {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+            throw new AssertionError();
+        }
+    };
+
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int size;
+    private int[] stack = new int[32];
+    private int stackSize;
+    private String deferredName;
+    private boolean inUse;
+
+    private CanonicalJsonWriter() {
+        super(UNWRITABLE_WRITER);
+        reset();
+    }
+
+    /**
+     * Returns the writer of the current thread, or a new one if that is in use. The writer must be given back with
+     * {@link #release()}.
+     *
+     * @return an empty writer
+     */
+    static CanonicalJsonWriter acquire() {
+        CanonicalJsonWriter writer = WRITERS.get();
+        if (writer.inUse) {
+            writer = new CanonicalJsonWriter();
+        }
+        writer.inUse = true;
+        return writer;
+    }
+
+    /**
+     * Empties the writer, so the next {@link #acquire()} of the thread can reuse it.
+     */
+    void release() {
+        if (buffer.length > RETAINED_CAPACITY) {
+            buffer = new byte[INITIAL_CAPACITY];
+        }
+        reset();
+        inUse = false;
+    }
+
+    private void reset() {
+        size = 0;
+        stackSize = 0;
+        deferredName = null;
+        push(EMPTY_DOCUMENT);
+    }
+
+    /**
+     * Writes the object the same way as {@link Gson#toJson(Object)}.
+     *
+     * @param gson the {@link Gson} instance writing the object
+     * @param src  the object to write, may be null
+     * @return this writer
+     */
+    CanonicalJsonWriter write(Gson gson, Object src) {
+        if (src == null) {
+            gson.toJson(JsonNull.INSTANCE, this);
+        } else if (src instanceof JsonElement) {
+            gson.toJson((JsonElement) src, this);
+        } else {
+            gson.toJson(src, src.getClass(), this);
+        }
+        return this;
+    }
+
+    /**
+     * @return the buffer holding the UTF-8 bytes written, valid up to {@link #size()}
+     */
+    byte[] buffer() {
+        return buffer;
+    }
+
+    /**
+     * @return the number of bytes written
+     */
+    int size() {
+        return size;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        writeDeferredName();
+        return open(EMPTY_ARRAY, (byte) '[');
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        return close(EMPTY_ARRAY, NONEMPTY_ARRAY, (byte) ']');
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        writeDeferredName();
+        return open(EMPTY_OBJECT, (byte) '{');
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        return close(EMPTY_OBJECT, NONEMPTY_OBJECT, (byte) '}');
+    }
+
+    private JsonWriter open(int empty, byte openBracket) {
+        beforeValue();
+        push(empty);
+        writeByte(openBracket);
+        return this;
+    }
+
+    private JsonWriter close(int empty, int nonempty, byte closeBracket) {
+        int context = peek();
+        if (context != nonempty && context != empty) {
+            throw new IllegalStateException("Nesting problem.");
+        }
+        if (deferredName != null) {
+            throw new IllegalStateException("Dangling name: " + deferredName);
+        }
+        stackSize--;
+        if (context == nonempty) {
+            newline();
+        }
+        writeByte(closeBracket);
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        if (deferredName != null) {
+            throw new IllegalStateException();
+        }
+        deferredName = name;
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        writeDeferredName();
+        beforeValue();
+        string(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter jsonValue(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        writeDeferredName();
+        beforeValue();
+        utf8(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        if (deferredName != null) {
+            if (!getSerializeNulls()) {
+                deferredName = null;
+                return this;
+            }
+            writeDeferredName();
+        }
+        beforeValue();
+        ascii("null");
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        writeDeferredName();
+        beforeValue();
+        ascii(value ? "true" : "false");
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Boolean value) throws IOException {
+        return value == null ? nullValue() : value(value.booleanValue());
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        writeDeferredName();
+        if (!isLenient() && (Double.isNaN(value) || Double.isInfinite(value))) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        beforeValue();
+        ascii(Double.toString(value));
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        writeDeferredName();
+        beforeValue();
+        writeLong(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        writeDeferredName();
+        Class<?> type = value.getClass();
+        if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class) {
+            beforeValue();
+            writeLong(value.longValue());
+            return this;
+        }
+        String string = value.toString();
+        if (!isLenient() && (string.equals("-Infinity") || string.equals("Infinity") || string.equals("NaN"))) {
+            throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+        }
+        beforeValue();
+        ascii(string);
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        // the bytes are in the buffer already
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (stackSize > 1 || stackSize == 1 && stack[0] != NONEMPTY_DOCUMENT) {
+            throw new IOException("Incomplete document");
+        }
+    }
+
+    private void writeDeferredName() {
+        if (deferredName != null) {
+            beforeName();
+            string(deferredName);
+            deferredName = null;
+        }
+    }
+
+    private void beforeName() {
+        int context = peek();
+        if (context == NONEMPTY_OBJECT) {
+            writeByte((byte) ',');
+        } else if (context != EMPTY_OBJECT) {
+            throw new IllegalStateException("Nesting problem.");
+        }
+        newline();
+        stack[stackSize - 1] = DANGLING_NAME;
+    }
+
+    private void beforeValue() {
+        switch (peek()) {
+            case NONEMPTY_DOCUMENT:
+                if (!isLenient()) {
+                    throw new IllegalStateException("JSON must have only one top-level value.");
+                }
+                break;
+            case EMPTY_DOCUMENT:
+                stack[stackSize - 1] = NONEMPTY_DOCUMENT;
+                break;
+            case EMPTY_ARRAY:
+                stack[stackSize - 1] = NONEMPTY_ARRAY;
+                newline();
+                break;
+            case NONEMPTY_ARRAY:
+                writeByte((byte) ',');
+                newline();
+                break;
+            case DANGLING_NAME:
+                ensureCapacity(2);
+                buffer[size++] = ':';
+                buffer[size++] = ' ';
+                stack[stackSize - 1] = NONEMPTY_OBJECT;
+                break;
+            default:
+                throw new IllegalStateException("Nesting problem.");
+        }
+    }
+
+    private void newline() {
+        ensureCapacity(1 + (stackSize - 1) * INDENT.length);
+        buffer[size++] = '\n';
+        for (int i = 1; i < stackSize; i++) {
+            buffer[size++] = INDENT[0];
+            buffer[size++] = INDENT[1];
+        }
+    }
+
+    private void push(int context) {
+        if (stackSize == stack.length) {
+            stack = Arrays.copyOf(stack, stackSize * 2);
+        }
+        stack[stackSize++] = context;
+    }
+
+    private int peek() {
+        if (stackSize == 0) {
+            throw new IllegalStateException("JsonWriter is closed.");
+        }
+        return stack[stackSize - 1];
+    }
+
+    /**
+     * Writes a Json string, escaping the quote, the backslash, the control characters and the line and paragraph
+     * separators the same way as {@link JsonWriter}, and the HTML characters too if the writer is
+     * {@link #isHtmlSafe() HTML safe}.
+     */
+    private void string(String value) {
+        boolean htmlSafe = isHtmlSafe();
+        writeByte((byte) '"');
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            ensureCapacity(6);
+            if (c >= 0x20 && c < 0x80 && c != '"' && c != '\\' && !(htmlSafe && isHtml(c))) {
+                buffer[size++] = (byte) c;
+            } else if (c < 0x80) {
+                escape(c);
+            } else if (c == '\u2028' || c == '\u2029') {
+                unicodeEscape(c);
+            } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                codePoint(Character.toCodePoint(c, value.charAt(++i)));
+            } else {
+                codePoint(c);
+            }
+        }
+        writeByte((byte) '"');
+    }
+
+    private static boolean isHtml(char c) {
+        return c == '<' || c == '>' || c == '&' || c == '=' || c == '\'';
+    }
+
+    private void escape(char c) {
+        switch (c) {
+            case '"':
+            case '\\':
+                buffer[size++] = '\\';
+                buffer[size++] = (byte) c;
+                break;
+            case '\t':
+                twoBytes('\\', 't');
+                break;
+            case '\b':
+                twoBytes('\\', 'b');
+                break;
+            case '\n':
+                twoBytes('\\', 'n');
+                break;
+            case '\r':
+                twoBytes('\\', 'r');
+                break;
+            case '\f':
+                twoBytes('\\', 'f');
+                break;
+            default:
+                unicodeEscape(c);
+        }
+    }
+
+    private void twoBytes(char first, char second) {
+        buffer[size++] = (byte) first;
+        buffer[size++] = (byte) second;
+    }
+
+    private void unicodeEscape(char c) {
+        buffer[size++] = '\\';
+        buffer[size++] = 'u';
+        buffer[size++] = HEX_DIGITS[(c >> 12) & 0xf];
+        buffer[size++] = HEX_DIGITS[(c >> 8) & 0xf];
+        buffer[size++] = HEX_DIGITS[(c >> 4) & 0xf];
+        buffer[size++] = HEX_DIGITS[c & 0xf];
+    }
+
+    /**
+     * Encodes a code point in UTF-8. A lone surrogate is replaced with a question mark, the way the UTF-8 encoder of
+     * the JDK does.
+     */
+    private void codePoint(int codePoint) {
+        if (codePoint < 0x80) {
+            buffer[size++] = (byte) codePoint;
+        } else if (codePoint < 0x800) {
+            buffer[size++] = (byte) (0xc0 | codePoint >> 6);
+            buffer[size++] = (byte) (0x80 | codePoint & 0x3f);
+        } else if (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE) {
+            buffer[size++] = '?';
+        } else if (codePoint < 0x10000) {
+            buffer[size++] = (byte) (0xe0 | codePoint >> 12);
+            buffer[size++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+            buffer[size++] = (byte) (0x80 | codePoint & 0x3f);
+        } else {
+            buffer[size++] = (byte) (0xf0 | codePoint >> 18);
+            buffer[size++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+            buffer[size++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+            buffer[size++] = (byte) (0x80 | codePoint & 0x3f);
+        }
+    }
+
+    /**
+     * Writes raw Json text in UTF-8, without escaping.
+     */
+    private void utf8(String value) {
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            ensureCapacity(4);
+            if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+                codePoint(Character.toCodePoint(c, value.charAt(++i)));
+            } else {
+                codePoint(c);
+            }
+        }
+    }
+
+    private void ascii(String value) {
+        int length = value.length();
+        ensureCapacity(length);
+        for (int i = 0; i < length; i++) {
+            buffer[size++] = (byte) value.charAt(i);
+        }
+    }
+
+    private void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            ensureCapacity(MIN_LONG.length);
+            System.arraycopy(MIN_LONG, 0, buffer, size, MIN_LONG.length);
+            size += MIN_LONG.length;
+            return;
+        }
+        ensureCapacity(20);
+        if (value < 0) {
+            buffer[size++] = '-';
+            value = -value;
+        }
+        int digits = 1;
+        for (long rest = value / 10; rest != 0; rest /= 10) {
+            digits++;
+        }
+        for (int i = size + digits - 1; i >= size; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        size += digits;
+    }
+
+    private void writeByte(byte b) {
+        ensureCapacity(1);
+        buffer[size++] = b;
+    }
+
+    private void ensureCapacity(int extra) {
+        if (size + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, size + extra));
+        }
+    }
+}
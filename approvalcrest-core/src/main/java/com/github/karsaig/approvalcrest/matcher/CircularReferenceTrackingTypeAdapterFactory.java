@@ -0,0 +1,86 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import static java.util.Collections.newSetFromMap;
+import static org.apache.commons.lang3.ClassUtils.isPrimitiveOrWrapper;
+
+import java.io.IOException;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Keeps track of the objects being serialised by the current thread, and throws
+ * {@link CircularReferenceFoundException} when an object is reached again while it is still being written, instead of
+ * recursing until the stack overflows.
+ * <p>
+ * Registered last, so it wraps the adapters of every other factory. Strings, primitives, their wrappers and enums can't
+ * hold references, so they are not tracked. Neither are beans with an adapter registered for one of their super types,
+ * as {@link Gson} would no longer prefer that adapter for fields declared with the super type.
+ */
+class CircularReferenceTrackingTypeAdapterFactory implements TypeAdapterFactory {
+    private static final ThreadLocal<Set<Object>> OBJECTS_IN_PATH = ThreadLocal.withInitial(() -> newSetFromMap(new IdentityHashMap<>()));
+
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+        if (rawType.isPrimitive() || isPrimitiveOrWrapper(rawType) || rawType == String.class || rawType.isEnum()) {
+            return null;
+        }
+        TypeAdapter<T> delegate = gson.getDelegateAdapter(this, type);
+        if (ReflectiveAdapters.isReflective(delegate) && ReflectiveAdapters.hasCustomisedSupertype(gson, this, rawType)) {
+            return null;
+        }
+        return new TrackingAdapter<>(delegate);
+    }
+
+    static final class TrackingAdapter<T> extends TypeAdapter<T> {
+        private final TypeAdapter<T> delegate;
+
+        TrackingAdapter(TypeAdapter<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        TypeAdapter<T> getDelegate() {
+            return delegate;
+        }
+
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            if (value == null) {
+                delegate.write(out, null);
+                return;
+            }
+            Set<Object> objectsInPath = OBJECTS_IN_PATH.get();
+            if (!objectsInPath.add(value)) {
+                throw new CircularReferenceFoundException(value.getClass());
+            }
+            try {
+                delegate.write(out, value);
+            } finally {
+                objectsInPath.remove(value);
+            }
+        }
+
+        @Override
+        public T read(JsonReader in) throws IOException {
+            return delegate.read(in);
+        }
+    }
+
+    /**
+     * Thrown when the object graph being serialised has a circular reference.
+     */
+    static final class CircularReferenceFoundException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        CircularReferenceFoundException(Class<?> type) {
+            super("Circular reference found on " + type.getName(), null, false, false);
+        }
+    }
+}
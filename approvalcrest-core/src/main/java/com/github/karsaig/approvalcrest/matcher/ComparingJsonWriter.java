@@ -0,0 +1,317 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+
+import com.github.karsaig.approvalcrest.NumericTolerance;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonNull;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Compares Json written to it with the tokens pulled from a {@link JsonReader}, without building the tree of either
+ * side. Only the current token and the nesting are kept in memory.
+ * <p>
+ * The Json is the same if the tokens follow each other in the same order, the numbers have the same double value and
+ * the strings the same text. Json written in a different order, or with null members missing on one side, is reported
+ * as different, although {@link JsonTreeComparator} could find it equal: a difference means the trees have to be
+ * compared to decide. Numbers can be compared within a {@link NumericTolerance} applying to every number.
+ */
+final class ComparingJsonWriter extends JsonWriter {
+    private static final Writer UNWRITABLE_WRITER = new Writer() {
+        @Override
+        public void write(char[] buffer, int offset, int counter) {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void flush() {
+            throw new AssertionError();
+        }
+
+        @Override
+        public void close() {
+            throw new AssertionError();
+        }
+    };
+
+    private final JsonReader reader;
+    private final NumericTolerance tolerance;
+    private String deferredName;
+
+    private ComparingJsonWriter(Reader expected, NumericTolerance tolerance) {
+        super(UNWRITABLE_WRITER);
+        reader = new JsonReader(expected);
+        reader.setLenient(true);
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Writes the object the same way as {@link Gson#toJson(Object)} and compares it with the Json read, which may start
+     * with a comment.
+     *
+     * @param gson     the {@link Gson} instance writing the object
+     * @param src      the object to write, may be null
+     * @param expected the reader of the expected Json
+     * @return true if the Json of the object is the same as the Json read
+     * @throws IOException exception thrown when failed to read the expected Json
+     */
+    static boolean isSame(Gson gson, Object src, Reader expected) throws IOException {
+        return isSame(gson, src, expected, null);
+    }
+
+    /**
+     * Writes the object the same way as {@link Gson#toJson(Object)} and compares it with the Json read, comparing every
+     * number within the tolerance.
+     *
+     * @param gson      the {@link Gson} instance writing the object
+     * @param src       the object to write, may be null
+     * @param expected  the reader of the expected Json
+     * @param tolerance the tolerance of every number, or null to compare them exactly
+     * @return true if the Json of the object is the same as the Json read
+     * @throws IOException exception thrown when failed to read the expected Json
+     */
+    static boolean isSame(Gson gson, Object src, Reader expected, NumericTolerance tolerance) throws IOException {
+        ComparingJsonWriter writer = new ComparingJsonWriter(expected, tolerance);
+        JsonToken first = writer.reader.peek();
+        if (first != JsonToken.BEGIN_OBJECT && first != JsonToken.BEGIN_ARRAY) {
+            // top level values are compared by their text, left to the comparison of the trees
+            return false;
+        }
+        try {
+            if (src == null) {
+                gson.toJson(JsonNull.INSTANCE, writer);
+            } else if (src instanceof JsonElement) {
+                gson.toJson((JsonElement) src, writer);
+            } else {
+                gson.toJson(src, src.getClass(), writer);
+            }
+        } catch (DifferenceFoundException e) {
+            return false;
+        } catch (JsonIOException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw e;
+        }
+        return writer.reader.peek() == JsonToken.END_DOCUMENT;
+    }
+
+    @Override
+    public JsonWriter beginArray() throws IOException {
+        writeDeferredName();
+        expect(JsonToken.BEGIN_ARRAY);
+        reader.beginArray();
+        return this;
+    }
+
+    @Override
+    public JsonWriter endArray() throws IOException {
+        expect(JsonToken.END_ARRAY);
+        reader.endArray();
+        return this;
+    }
+
+    @Override
+    public JsonWriter beginObject() throws IOException {
+        writeDeferredName();
+        expect(JsonToken.BEGIN_OBJECT);
+        reader.beginObject();
+        return this;
+    }
+
+    @Override
+    public JsonWriter endObject() throws IOException {
+        if (deferredName != null) {
+            throw new IllegalStateException("Dangling name: " + deferredName);
+        }
+        expect(JsonToken.END_OBJECT);
+        reader.endObject();
+        return this;
+    }
+
+    @Override
+    public JsonWriter name(String name) throws IOException {
+        if (name == null) {
+            throw new NullPointerException("name == null");
+        }
+        if (deferredName != null) {
+            throw new IllegalStateException();
+        }
+        deferredName = name;
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        writeDeferredName();
+        expect(JsonToken.STRING);
+        if (!value.equals(reader.nextString())) {
+            throw DifferenceFoundException.INSTANCE;
+        }
+        return this;
+    }
+
+    /**
+     * Raw Json text of a number, like the elements of float arrays, is compared as the next number. Other raw Json text
+     * is not parsed to be compared, it is reported as a difference.
+     */
+    @Override
+    public JsonWriter jsonValue(String value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        double number;
+        try {
+            number = isNumber(value) ? Double.parseDouble(value) : Double.NaN;
+        } catch (NumberFormatException e) {
+            number = Double.NaN;
+        }
+        if (Double.isNaN(number)) {
+            throw DifferenceFoundException.INSTANCE;
+        }
+        writeDeferredName();
+        compareNumber(number);
+        return this;
+    }
+
+    @Override
+    public JsonWriter nullValue() throws IOException {
+        if (deferredName != null) {
+            if (!getSerializeNulls()) {
+                deferredName = null;
+                return this;
+            }
+            writeDeferredName();
+        }
+        expect(JsonToken.NULL);
+        reader.nextNull();
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(boolean value) throws IOException {
+        writeDeferredName();
+        expect(JsonToken.BOOLEAN);
+        if (value != reader.nextBoolean()) {
+            throw DifferenceFoundException.INSTANCE;
+        }
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Boolean value) throws IOException {
+        return value == null ? nullValue() : value(value.booleanValue());
+    }
+
+    @Override
+    public JsonWriter value(double value) throws IOException {
+        writeDeferredName();
+        compareNumber(value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(long value) throws IOException {
+        writeDeferredName();
+        compareNumber((double) value);
+        return this;
+    }
+
+    @Override
+    public JsonWriter value(Number value) throws IOException {
+        if (value == null) {
+            return nullValue();
+        }
+        writeDeferredName();
+        Class<?> type = value.getClass();
+        if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class) {
+            compareNumber((double) value.longValue());
+        } else if (type == Double.class) {
+            compareNumber(value.doubleValue());
+        } else {
+            compareNumber(Double.parseDouble(value.toString()));
+        }
+        return this;
+    }
+
+    @Override
+    public void flush() {
+        // nothing is written
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    /**
+     * Numbers are the same if their text parses to the same double, the way {@link JsonTreeComparator} compares them.
+     * The text read is parsed directly, without a {@link java.math.BigDecimal} or a lazily parsed number.
+     */
+    private void compareNumber(double value) throws IOException {
+        expect(JsonToken.NUMBER);
+        double expectedValue = Double.parseDouble(reader.nextString());
+        if (value != expectedValue && (tolerance == null || !tolerance.isWithin(expectedValue, value))) {
+            throw DifferenceFoundException.INSTANCE;
+        }
+    }
+
+    /**
+     * Only the characters of Json numbers are let through to {@link Double#parseDouble(String)}, which also parses
+     * hexadecimal numbers, type suffixes, NaN and Infinity.
+     */
+    private static boolean isNumber(String text) {
+        if (text.isEmpty() || !isDigit(text.charAt(text.length() - 1)) || text.charAt(0) != '-' && !isDigit(text.charAt(0))) {
+            return false;
+        }
+        for (int i = 1; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!isDigit(c) && c != '.' && c != 'e' && c != 'E' && c != '-' && c != '+') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private void writeDeferredName() throws IOException {
+        if (deferredName != null) {
+            expect(JsonToken.NAME);
+            if (!deferredName.equals(reader.nextName())) {
+                throw DifferenceFoundException.INSTANCE;
+            }
+            deferredName = null;
+        }
+    }
+
+    private void expect(JsonToken token) throws IOException {
+        if (reader.peek() != token) {
+            throw DifferenceFoundException.INSTANCE;
+        }
+    }
+
+    /**
+     * Stops writing at the first difference. It is unchecked, so {@link Gson} doesn't wrap it into a
+     * {@link JsonIOException}, and the single shared instance has neither a stack trace nor suppressed exceptions.
+     */
+    private static final class DifferenceFoundException extends RuntimeException {
+        private static final DifferenceFoundException INSTANCE = new DifferenceFoundException();
+
+        private DifferenceFoundException() {
+            super("Difference found", null, false, false);
+        }
+    }
+}
@@ -13,6 +13,9 @@ import java.util.function.Function;
 
 import org.hamcrest.Matcher;
 
+import com.github.karsaig.approvalcrest.ByteArrayEncoding;
+import com.github.karsaig.approvalcrest.NumericTolerance;
+
 
 /**
  * {@link Matcher} implementation where fields and object types can be skipped from the comparison, or matched with
@@ -106,4 +109,115 @@ public interface CustomisableMatcher<T, U extends CustomisableMatcher<T, U>> ext
      * @return the instance of the matcher
      */
     U skipCircularReferenceCheck(Function<Object, Boolean>... matchers);
-}
\ No newline at end of file
+
+    /**
+     * Limits how deep the object graph is walked looking for circular references, objects deeper than the limit are not
+     * checked. Unlimited by default.
+     *
+     * @param depth the maximum number of nested objects, collections and maps walked
+     * @return the instance of the matcher
+     */
+    U limitCircularReferenceCheckDepth(int depth);
+
+    /**
+     * Detects circular references while the objects are serialised, so acyclic objects are not walked up front. When a
+     * circular reference is found, the objects are walked and serialised again with the circular reference types.
+     *
+     * @return the instance of the matcher
+     */
+    U detectCircularReferencesWhileSerialising();
+
+    /**
+     * Serialises beans through field getters compiled once per class, instead of reading every field reflectively. The
+     * Json compared is the same, it is written faster when the same classes are serialised many times.
+     *
+     * @return the instance of the matcher
+     */
+    U serialiseBeansWithAccessors();
+
+    /**
+     * Specify the paths of arrays, or collections, whose elements are compared regardless of their order. The elements
+     * are matched by the hash of their Json, the differences are the elements left unmatched on either side.
+     * Example:
+     * <pre>sameBeanAs(expected).withUnorderedArrays("orders.lines")</pre>
+     *
+     * @param fieldPaths the paths of the arrays, without array indices
+     * @return the instance of the matcher
+     */
+    U withUnorderedArrays(String... fieldPaths);
+
+    /**
+     * Specify the key field of the objects in the arrays at the given path: the differences of the arrays are reported
+     * on the elements with the same key, as removed, inserted and changed elements. The verdict does not change.
+     * Example:
+     * <pre>sameBeanAs(expected).alignArraysBy("items", "id")</pre>
+     *
+     * @param fieldPath the path of the arrays, without array indices
+     * @param keyField  the name of the field identifying the elements
+     * @return the instance of the matcher
+     */
+    U alignArraysBy(String fieldPath, String keyField);
+
+    /**
+     * Reports the differences of arrays on the elements aligned by their longest common subsequence, instead of by
+     * position, so an element inserted near the start of a long array is reported alone. The verdict does not change.
+     *
+     * @return the instance of the matcher
+     */
+    U alignArrays();
+
+    /**
+     * Compares the Json trees by 128 bit hashes of their subtrees, computed in parallel for large arrays and objects,
+     * and descends only into the subtrees with different hashes. The differences reported are the same, it is faster
+     * for large snapshots with few differences.
+     *
+     * @return the instance of the matcher
+     */
+    U compareBySubtreeHashes();
+
+    /**
+     * Compares the numbers within the tolerance, unless a tolerance is given for their path. A tolerance is immutable,
+     * so it can be declared once per test class.
+     * Example:
+     * <pre>sameBeanAs(expected).withTolerance(NumericTolerance.relative(1e-9).orUlps(2))</pre>
+     *
+     * @param tolerance the tolerance of the numbers
+     * @return the instance of the matcher
+     */
+    U withTolerance(NumericTolerance tolerance);
+
+    /**
+     * Compares the numbers at the given path within the tolerance. The numbers in the arrays at unordered array paths
+     * are matched exactly, as their elements are matched by hash.
+     * Example:
+     * <pre>sameBeanAs(expected).withTolerance("lines.price", NumericTolerance.absolute(0.005))</pre>
+     *
+     * @param fieldPath the path of the numbers, without array indices
+     * @param tolerance the tolerance of the numbers
+     * @return the instance of the matcher
+     */
+    U withTolerance(String fieldPath, NumericTolerance tolerance);
+
+    /**
+     * Limits the failure to the first differences: the expected and the actual Json of the failure hold only the lines
+     * around the differences, the lines left out are replaced by {@code ...} lines on both sides, so they still line up
+     * in a diff viewer. File based matchers write the full actual Json to a file with the {@code -received} suffix
+     * beside the approved file.
+     * Example:
+     * <pre>sameBeanAs(expected).limitDiagnostics(10, 3)</pre>
+     *
+     * @param maxDifferences the number of differences described
+     * @param contextLines   the number of lines described before and after each difference
+     * @return the instance of the matcher
+     */
+    U limitDiagnostics(int maxDifferences, int contextLines);
+
+    /**
+     * Sets how byte arrays are written to the Json compared: an array of numbers by default, or a single Base64 or
+     * hexadecimal string.
+     *
+     * @param encoding the encoding of byte arrays
+     * @return the instance of the matcher
+     */
+    U encodeByteArraysAs(ByteArrayEncoding encoding);
+}
@@ -11,9 +11,11 @@ package com.github.karsaig.approvalcrest.matcher;
 
 import static com.github.karsaig.approvalcrest.BeanFinder.findBeanAt;
 import static com.github.karsaig.approvalcrest.CyclicReferenceDetector.getClassesWithCircularReferences;
-import static com.github.karsaig.approvalcrest.FieldsIgnorer.MARKER;
 import static com.github.karsaig.approvalcrest.FieldsIgnorer.findPaths;
 import static com.github.karsaig.approvalcrest.matcher.GsonProvider.gson;
+import static com.github.karsaig.approvalcrest.matcher.JsonTreeComparator.areEqual;
+import static com.github.karsaig.approvalcrest.matcher.JsonTreeComparator.compare;
+import static java.util.Collections.singletonList;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -21,26 +23,29 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.function.Function;
-import java.util.regex.Pattern;
 
 import org.hamcrest.Description;
 import org.hamcrest.DiagnosingMatcher;
 import org.hamcrest.Matcher;
-import org.json.JSONException;
-import org.skyscreamer.jsonassert.JSONAssert;
+import org.hamcrest.StringDescription;
 
+import com.github.karsaig.approvalcrest.ByteArrayEncoding;
 import com.github.karsaig.approvalcrest.MatcherConfiguration;
+import com.github.karsaig.approvalcrest.NumericTolerance;
 import com.github.karsaig.approvalcrest.PathNullPointerException;
+import com.github.karsaig.approvalcrest.matcher.CircularReferenceTrackingTypeAdapterFactory.CircularReferenceFoundException;
+import com.github.karsaig.approvalcrest.matcher.JsonTreeComparator.Result;
+import com.github.karsaig.approvalcrest.matcher.typeadapters.PrimitiveArrayTypeAdapterFactory;
 
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 
 /**
  * Extends the functionalities of {@link DiagnosingMatcher} with the possibility to specify fields and object types to
  * ignore in the comparison, or fields to be matched with a custom matcher
  */
 class DiagnosingCustomisableMatcher<T> extends AbstractDiagnosingMatcher<T> implements CustomisableMatcher<T, DiagnosingCustomisableMatcher<T>> {
-    private static final Pattern MARKER_PATTERN = Pattern.compile(MARKER);
     protected final Set<Class<?>> circularReferenceTypes = new HashSet<>();
     protected final T expected;
     private GsonConfiguration configuration;
@@ -52,8 +57,16 @@ class DiagnosingCustomisableMatcher<T> extends AbstractDiagnosingMatcher<T> impl
 
     @Override
     public void describeTo(Description description) {
-        Gson gson = gson(matcherConfiguration, circularReferenceTypes, configuration);
-        description.appendText(filterJson(gson, expected));
+        String expectedJson;
+        try {
+            Gson gson = gson(matcherConfiguration, circularReferenceTypes, configuration);
+            expectedJson = describedJson(gson, filterJson(gson, expected));
+        } catch (CircularReferenceFoundException e) {
+            circularReferenceTypes.addAll(getClassesWithCircularReferences(expected, matcherConfiguration));
+            Gson gson = gson(matcherConfiguration, circularReferenceTypes, configuration);
+            expectedJson = describedJson(gson, filterJson(gson, expected));
+        }
+        description.appendText(expectedJson);
         for (String fieldPath : matcherConfiguration.getCustomMatchers().keySet()) {
             description.appendText("\nand ")
                     .appendText(fieldPath).appendText(" ")
@@ -61,25 +74,91 @@ class DiagnosingCustomisableMatcher<T> extends AbstractDiagnosingMatcher<T> impl
         }
     }
 
+    /**
+     * With limited diagnostics only the first and the last lines of the expected Json are described.
+     */
+    private String describedJson(Gson gson, JsonElement json) {
+        if (matcherConfiguration.isLimitingDiagnostics()) {
+            return WindowedJsonPrinter.toJson(gson, json, singletonList(""), matcherConfiguration.getDiagnosticContextLines());
+        }
+        return toJson(gson, json);
+    }
+
     @Override
     protected boolean matches(Object actual, Description mismatchDescription) {
+        if (isDetectingCircularReferencesWhileSerialising()) {
+            Description description = new StringDescription();
+            try {
+                boolean matches = matches(actual, description, gson(matcherConfiguration, circularReferenceTypes, configuration));
+                mismatchDescription.appendText(description.toString());
+                return matches;
+            } catch (CircularReferenceFoundException e) {
+                // matched again below, with the graph adapters of the circular reference types
+            }
+        }
         circularReferenceTypes.addAll(getClassesWithCircularReferences(actual, matcherConfiguration));
         circularReferenceTypes.addAll(getClassesWithCircularReferences(expected, matcherConfiguration));
-        Gson gson = gson(matcherConfiguration, circularReferenceTypes, configuration);
+        return matches(actual, mismatchDescription, gson(matcherConfiguration, circularReferenceTypes, configuration));
+    }
 
+    /**
+     * @return true if circular references are detected while serialising, and none has been found yet
+     */
+    protected boolean isDetectingCircularReferencesWhileSerialising() {
+        return matcherConfiguration.isDetectingCircularReferencesWhileSerialising() && circularReferenceTypes.isEmpty();
+    }
+
+    private boolean matches(Object actual, Description mismatchDescription, Gson gson) {
         if (!areCustomMatchersMatching(actual, mismatchDescription, gson)) {
             return false;
         }
+        if (isComparedAsPrimitiveArrays(actual, gson)) {
+            String difference = PrimitiveArrayComparator.firstDifference(expected, actual, matcherConfiguration.getNumericTolerance(""),
+                    matcherConfiguration.getByteArrayEncoding());
+            if (difference == null) {
+                return true;
+            }
+            if (!matcherConfiguration.isLimitingDiagnostics() || isWrittenAsString(expected)) {
+                return appendMismatchDescription(mismatchDescription, gson.toJson(expected), gson.toJson(actual), difference);
+            }
+            // the differences of the elements are described on the Json trees, around their paths
+        }
 
-        String expectedJson = filterJson(gson, expected);
+        JsonElement expectedJson = filterJson(gson, expected);
 
         if (actual == null) {
-            return appendMismatchDescription(mismatchDescription, expectedJson, "null", "actual was null");
+            if (matcherConfiguration.isLimitingDiagnostics()) {
+                return appendMismatchDescription(mismatchDescription, gson, expectedJson, JsonNull.INSTANCE, singletonList(""),
+                        matcherConfiguration.getDiagnosticContextLines(), "actual was null");
+            }
+            return appendMismatchDescription(mismatchDescription, toJson(gson, expectedJson), "null", "actual was null");
         }
 
-        String actualJson = filterJson(gson, actual);
+        JsonElement actualJson = filterJson(gson, actual);
+
+        return assertEquals(gson, expectedJson, actualJson, mismatchDescription);
+    }
 
-        return assertEquals(expectedJson, actualJson, mismatchDescription);
+    /**
+     * Primitive arrays are compared directly if they are written by the adapters of
+     * {@link PrimitiveArrayTypeAdapterFactory}, so their Json would be the same as the arrays. Arrays compared
+     * regardless of their order, or with their differences reported on aligned elements, are left to the Json trees.
+     */
+    private boolean isComparedAsPrimitiveArrays(Object actual, Gson gson) {
+        return PrimitiveArrayComparator.canCompare(expected, actual)
+                && matcherConfiguration.getPathsToIgnore().isEmpty()
+                && matcherConfiguration.getCustomMatchers().isEmpty()
+                && !matcherConfiguration.getUnorderedArrayPaths().contains("")
+                && !matcherConfiguration.getArrayAlignmentKeys().containsKey("")
+                && !matcherConfiguration.isAligningArrays()
+                && PrimitiveArrayTypeAdapterFactory.isPrimitiveArrayAdapter(ReflectiveAdapters.unwrap(gson.getAdapter(expected.getClass())));
+    }
+
+    /**
+     * A byte array written as a single string is a single line of Json, there is nothing to leave out around it.
+     */
+    private boolean isWrittenAsString(Object array) {
+        return array instanceof byte[] && matcherConfiguration.getByteArrayEncoding() != ByteArrayEncoding.NUMBERS;
     }
 
     private boolean areCustomMatchersMatching(Object actual, Description mismatchDescription, Gson gson) {
@@ -138,14 +217,23 @@ class DiagnosingCustomisableMatcher<T> extends AbstractDiagnosingMatcher<T> impl
     }
 
 
-    private boolean assertEquals(String expectedJson, String actualJson, Description mismatchDescription) {
-        try {
-            JSONAssert.assertEquals(expectedJson, actualJson, true);
-        } catch (AssertionError | JSONException e) {
-            return appendMismatchDescription(mismatchDescription, expectedJson, actualJson, e.getMessage());
+    private boolean assertEquals(Gson gson, JsonElement expectedJson, JsonElement actualJson, Description mismatchDescription) {
+        Result result;
+        if (matcherConfiguration.isComparingBySubtreeHashes()) {
+            result = JsonTreeComparator.compareBySubtreeHashes(expectedJson, actualJson, matcherConfiguration);
+            if (result.passed()) {
+                return true;
+            }
+        } else if (areEqual(expectedJson, actualJson, matcherConfiguration)) {
+            return true;
+        } else {
+            result = compare(expectedJson, actualJson, matcherConfiguration);
         }
-
-        return true;
+        if (matcherConfiguration.isLimitingDiagnostics()) {
+            return appendMismatchDescription(mismatchDescription, gson, expectedJson, actualJson, result.getDifferencePaths(),
+                    matcherConfiguration.getDiagnosticContextLines(), result.getMessage());
+        }
+        return appendMismatchDescription(mismatchDescription, toJson(gson, expectedJson), toJson(gson, actualJson), result.getMessage());
     }
 
     private void appendFieldJsonSnippet(Object actual, Description mismatchDescription, Gson gson) {
@@ -163,17 +251,15 @@ class DiagnosingCustomisableMatcher<T> extends AbstractDiagnosingMatcher<T> impl
         }
     }
 
-    private String filterJson(Gson gson, Object object) {
+    private JsonElement filterJson(Gson gson, Object object) {
         Set<String> set = new HashSet<>();
         set.addAll(matcherConfiguration.getPathsToIgnore());
         set.addAll(matcherConfiguration.getCustomMatchers().keySet());
-        JsonElement filteredJson = findPaths(gson, object, set);
-
-        return removeSetMarker(gson.toJson(filteredJson));
+        return findPaths(GsonProvider.toReorderedJsonTree(gson, object, set), set);
     }
 
-    private String removeSetMarker(String json) {
-        return MARKER_PATTERN.matcher(json).replaceAll("");
+    private String toJson(Gson gson, JsonElement jsonElement) {
+        return gson.toJson(jsonElement);
     }
 
     @Override
@@ -199,4 +285,70 @@ class DiagnosingCustomisableMatcher<T> extends AbstractDiagnosingMatcher<T> impl
         matcherConfiguration.addSkipCircularReferenceChecker(matchers);
         return this;
     }
-}
\ No newline at end of file
+
+    @Override
+    public DiagnosingCustomisableMatcher<T> limitCircularReferenceCheckDepth(int depth) {
+        matcherConfiguration.setMaxCircularReferenceCheckDepth(depth);
+        return this;
+    }
+
+    @Override
+    public DiagnosingCustomisableMatcher<T> detectCircularReferencesWhileSerialising() {
+        matcherConfiguration.detectCircularReferencesWhileSerialising();
+        return this;
+    }
+
+    @Override
+    public DiagnosingCustomisableMatcher<T> serialiseBeansWithAccessors() {
+        matcherConfiguration.serialiseBeansWithAccessors();
+        return this;
+    }
+
+    @Override
+    public DiagnosingCustomisableMatcher<T> encodeByteArraysAs(ByteArrayEncoding encoding) {
+        matcherConfiguration.encodeByteArraysAs(encoding);
+        return this;
+    }
+
+    @Override
+    public DiagnosingCustomisableMatcher<T> compareBySubtreeHashes() {
+        matcherConfiguration.compareBySubtreeHashes();
+        return this;
+    }
+
+    @Override
+    public DiagnosingCustomisableMatcher<T> withUnorderedArrays(String... fieldPaths) {
+        matcherConfiguration.addUnorderedArrayPath(fieldPaths);
+        return this;
+    }
+
+    @Override
+    public DiagnosingCustomisableMatcher<T> alignArraysBy(String fieldPath, String keyField) {
+        matcherConfiguration.alignArraysBy(fieldPath, keyField);
+        return this;
+    }
+
+    @Override
+    public DiagnosingCustomisableMatcher<T> alignArrays() {
+        matcherConfiguration.alignArrays();
+        return this;
+    }
+
+    @Override
+    public DiagnosingCustomisableMatcher<T> withTolerance(NumericTolerance tolerance) {
+        matcherConfiguration.withNumericTolerance(tolerance);
+        return this;
+    }
+
+    @Override
+    public DiagnosingCustomisableMatcher<T> withTolerance(String fieldPath, NumericTolerance tolerance) {
+        matcherConfiguration.withNumericTolerance(fieldPath, tolerance);
+        return this;
+    }
+
+    @Override
+    public DiagnosingCustomisableMatcher<T> limitDiagnostics(int maxDifferences, int contextLines) {
+        matcherConfiguration.limitDiagnostics(maxDifferences, contextLines);
+        return this;
+    }
+}
@@ -7,8 +7,11 @@ import static java.nio.file.attribute.PosixFilePermission.OTHERS_READ;
 import static java.nio.file.attribute.PosixFilePermission.OTHERS_WRITE;
 import static java.nio.file.attribute.PosixFilePermission.OWNER_READ;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -27,6 +30,7 @@ public class FileStoreMatcherUtils {
     public static final Object SEPARATOR = "-";
     private static final String APPROVED_NAME_PART = "approved";
     private static final String NOT_APPROVED_NAME_PART = "not-approved";
+    private static final String RECEIVED_NAME_PART = "received";
     private final String fileExtension;
 
     public FileStoreMatcherUtils(String fileExtension) {
@@ -50,10 +54,58 @@ public class FileStoreMatcherUtils {
         return writeToFile(file, jsonObject, comment);
     }
 
+    /**
+     * Creates file with '-not-approved' suffix and .json extension and writes
+     * the UTF-8 encoded Json in it.
+     *
+     * @param fileNameWithPath specifies the name of the file with full path (relative to
+     *                         project root)
+     * @param json             the buffer holding the file's content
+     * @param length           the number of bytes of the content
+     * @throws IOException exception thrown when failed to create the file
+     */
+    public String createNotApproved(Path fileNameWithPath, byte[] json, int length, String comment) throws IOException {
+        Path file = getFullFileName(fileNameWithPath, false);
+        Path parent = file.getParent();
+        Files.createDirectories(parent, PosixFilePermissions.asFileAttribute(EnumSet.allOf(PosixFilePermission.class)));
+        return writeToFile(file, json, length, comment);
+    }
+
     public String overwriteApprovedFile(Path fileNameWithPath, String jsonObject, String comment) throws IOException {
         return writeToFile(getFullFileName(fileNameWithPath, true), jsonObject, comment);
     }
 
+    public String overwriteApprovedFile(Path fileNameWithPath, byte[] json, int length, String comment) throws IOException {
+        return writeToFile(getFullFileName(fileNameWithPath, true), json, length, comment);
+    }
+
+    /**
+     * Creates, or overwrites, the file with '-received' suffix beside the approved file and writes the UTF-8 encoded
+     * Json in it.
+     *
+     * @param fileNameWithPath specifies the name of the file with full path (relative to
+     *                         project root)
+     * @param json             the buffer holding the file's content
+     * @param length           the number of bytes of the content
+     * @param comment          the comment line of the file
+     * @return the name of the file written
+     * @throws IOException exception thrown when failed to write the file
+     */
+    public String createReceived(Path fileNameWithPath, byte[] json, int length, String comment) throws IOException {
+        return writeToFile(getReceived(fileNameWithPath), json, length, comment);
+    }
+
+    /**
+     * Deletes the file with '-received' suffix beside the approved file, if it exists.
+     *
+     * @param fileNameWithPath specifies the name of the file with full path (relative to
+     *                         project root)
+     * @throws IOException exception thrown when failed to delete the file
+     */
+    public void deleteReceived(Path fileNameWithPath) throws IOException {
+        Files.deleteIfExists(getReceived(fileNameWithPath));
+    }
+
     private String writeToFile(Path file, String jsonObject, String comment) throws IOException {
         try (BufferedWriter writer = Files.newBufferedWriter(file, UTF_8)) {
             writer.write("/*" + comment + "*/");
@@ -64,6 +116,72 @@ public class FileStoreMatcherUtils {
         return file.getFileName().toString();
     }
 
+    private String writeToFile(Path file, byte[] json, int length, String comment) throws IOException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            out.write(("/*" + comment + "*/\n").getBytes(UTF_8));
+            out.write(json, 0, length);
+        }
+        Files.setPosixFilePermissions(file, EnumSet.of(OTHERS_READ, OTHERS_WRITE, GROUP_READ, GROUP_WRITE, OWNER_READ, OTHERS_WRITE));
+        return file.getFileName().toString();
+    }
+
+    /**
+     * Checks whether the content of the file, after the comment line, is exactly the given UTF-8 encoded Json. The
+     * file is streamed, not read into memory.
+     *
+     * @param file   the file to check
+     * @param json   the buffer holding the expected content
+     * @param length the number of bytes of the content
+     * @return true if the file has the same bytes
+     * @throws IOException exception thrown when failed to read the file
+     */
+    public boolean hasContent(Path file, byte[] json, int length) throws IOException {
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            if (!skipComment(in)) {
+                return false;
+            }
+            byte[] chunk = new byte[8192];
+            int position = 0;
+            for (int read = in.read(chunk); read != -1; read = in.read(chunk)) {
+                if (position + read > length) {
+                    return false;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (chunk[i] != json[position + i]) {
+                        return false;
+                    }
+                }
+                position += read;
+            }
+            return position == length;
+        }
+    }
+
+    /**
+     * Skips the comment line the same way as {@link #readFile(Path)}, returns false if the file starts with a comment
+     * which is not followed by a new line.
+     */
+    private static boolean skipComment(InputStream in) throws IOException {
+        in.mark(2);
+        if (in.read() != '/' || in.read() != '*') {
+            in.reset();
+            return true;
+        }
+        int matched = 1;
+        for (int b = in.read(); b != -1; b = in.read()) {
+            if (b == '*') {
+                matched = 1;
+            } else if (b == '/' && matched == 1) {
+                matched = 2;
+            } else if (b == '\n' && matched == 2) {
+                return true;
+            } else {
+                matched = 0;
+            }
+        }
+        return false;
+    }
+
     public String readFile(Path file) throws IOException {
         String fileContent = new String(Files.readAllBytes(file), UTF_8);
         if (fileContent.startsWith("/*")) {
@@ -85,21 +203,27 @@ public class FileStoreMatcherUtils {
         return getFullFileName(fileNameWithPath, true);
     }
 
+    /**
+     * Gets file with '-received' suffix and .json extension and returns it.
+     *
+     * @param fileNameWithPath the name of the file with full path (relative to project root)
+     * @return the {@link Path} object
+     */
+    public Path getReceived(Path fileNameWithPath) {
+        return getFileNameWithExtension(fileNameWithPath, RECEIVED_NAME_PART);
+    }
+
     public Path getFullFileName(Path fileName, boolean approved) {
-        return getFileNameWithExtension(fileName, approved);
+        return getFileNameWithExtension(fileName, approved ? APPROVED_NAME_PART : NOT_APPROVED_NAME_PART);
     }
 
-    private Path getFileNameWithExtension(Path fileName, boolean approved) {
+    private Path getFileNameWithExtension(Path fileName, String namePart) {
         Path parent = fileName.getParent();
 
         StringBuilder stringBuilder = new StringBuilder();
         stringBuilder.append(fileName.getFileName().toString());
         stringBuilder.append(SEPARATOR);
-        if (approved) {
-            stringBuilder.append(APPROVED_NAME_PART);
-        } else {
-            stringBuilder.append(NOT_APPROVED_NAME_PART);
-        }
+        stringBuilder.append(namePart);
         stringBuilder.append(fileExtension);
 
         if (parent == null) {
@@ -0,0 +1,135 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import static java.lang.invoke.MethodType.methodType;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodHandles.Lookup;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
+import com.github.karsaig.approvalcrest.processor.ApprovalSerializable;
+import com.github.karsaig.approvalcrest.processor.FieldReader;
+import com.github.karsaig.approvalcrest.processor.GeneratedFields;
+
+/**
+ * The field readers generated at compile time for the beans annotated with {@link ApprovalSerializable}, discovered
+ * once with {@link ServiceLoader} from the services the annotation processor registers. The private fields the
+ * processor lists are read with a private lookup of the bean, which needs Java 9.
+ */
+final class GeneratedFieldReaders {
+    private static final Map<Class<?>, GeneratedFields> FIELDS = load();
+    private static final Method PRIVATE_LOOKUP_IN = privateLookupIn();
+
+    private GeneratedFieldReaders() {
+    }
+
+    private static Map<Class<?>, GeneratedFields> load() {
+        Map<Class<?>, GeneratedFields> fields = new HashMap<>();
+        Iterator<GeneratedFields> services = ServiceLoader.load(GeneratedFields.class).iterator();
+        while (true) {
+            try {
+                if (!services.hasNext()) {
+                    break;
+                }
+                GeneratedFields generated = services.next();
+                fields.put(generated.getBeanClass(), generated);
+            } catch (ServiceConfigurationError e) {
+                // a stale entry of an incremental compilation, the bean is read reflectively
+            }
+        }
+        return fields;
+    }
+
+    private static Method privateLookupIn() {
+        try {
+            return MethodHandles.class.getMethod("privateLookupIn", Class.class, Lookup.class);
+        } catch (NoSuchMethodException e) {
+            // Java 8, private fields are read reflectively
+            return null;
+        }
+    }
+
+    /**
+     * @return true if any bean on the classpath has generated field readers
+     */
+    static boolean isAvailable() {
+        return !FIELDS.isEmpty();
+    }
+
+    /**
+     * @param type the type to check
+     * @return true if the class or one of its super classes has generated field readers
+     */
+    static boolean covers(Class<?> type) {
+        for (Class<?> clazz = type; clazz != null; clazz = clazz.getSuperclass()) {
+            if (FIELDS.containsKey(clazz)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the generated reader of the field as a getter taking the bean as an {@link Object}.
+     *
+     * @param field     the field to read
+     * @param valueType the type the getter returns, int, long, boolean, char or {@link Object}
+     * @return the getter, or null if the field has no generated reader of the type
+     */
+    static MethodHandle getter(Field field, Class<?> valueType) {
+        GeneratedFields fields = FIELDS.get(field.getDeclaringClass());
+        if (fields == null) {
+            return null;
+        }
+        if (fields.isPrivate(field.getName())) {
+            return privateGetter(field, valueType);
+        }
+        FieldReader reader = fields.getReader(field.getName());
+        if (reader == null) {
+            return null;
+        }
+        try {
+            if (valueType == Object.class) {
+                return bind(FieldReader.class, "get", valueType, reader);
+            } else if (valueType == int.class && reader instanceof FieldReader.OfInt) {
+                return bind(FieldReader.OfInt.class, "getInt", valueType, reader);
+            } else if (valueType == long.class && reader instanceof FieldReader.OfLong) {
+                return bind(FieldReader.OfLong.class, "getLong", valueType, reader);
+            } else if (valueType == boolean.class && reader instanceof FieldReader.OfBoolean) {
+                return bind(FieldReader.OfBoolean.class, "getBoolean", valueType, reader);
+            } else if (valueType == char.class && reader instanceof FieldReader.OfChar) {
+                return bind(FieldReader.OfChar.class, "getChar", valueType, reader);
+            }
+            return null;
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * @return the getter of the private field, or null before Java 9 or if the package of the bean is not open
+     */
+    private static MethodHandle privateGetter(Field field, Class<?> valueType) {
+        if (PRIVATE_LOOKUP_IN == null) {
+            return null;
+        }
+        Class<?> beanClass = field.getDeclaringClass();
+        try {
+            Lookup lookup = (Lookup) PRIVATE_LOOKUP_IN.invoke(null, beanClass, MethodHandles.lookup());
+            return lookup.findGetter(beanClass, field.getName(), field.getType()).asType(methodType(valueType, Object.class));
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+
+    private static MethodHandle bind(Class<?> readerType, String method, Class<?> valueType, FieldReader reader)
+            throws NoSuchMethodException, IllegalAccessException {
+        return MethodHandles.publicLookup().findVirtual(readerType, method, methodType(valueType, Object.class)).bindTo(reader);
+    }
+}
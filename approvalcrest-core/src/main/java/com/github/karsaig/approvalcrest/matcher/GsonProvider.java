@@ -10,18 +10,19 @@
 package com.github.karsaig.approvalcrest.matcher;
 
 import static com.github.karsaig.approvalcrest.FieldsIgnorer.MARKER;
-import static com.google.common.collect.Sets.newTreeSet;
-import static org.apache.commons.lang3.ClassUtils.isPrimitiveOrWrapper;
 
 import java.lang.reflect.Type;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import org.hamcrest.Matcher;
 
+import com.github.karsaig.approvalcrest.ByteArrayEncoding;
+import com.github.karsaig.approvalcrest.FieldPathTrie;
 import com.github.karsaig.approvalcrest.MatcherConfiguration;
 import com.github.karsaig.approvalcrest.matcher.typeadapters.ClassAdapter;
 import com.github.karsaig.approvalcrest.matcher.typeadapters.DateAdapter;
@@ -31,19 +32,24 @@ import com.github.karsaig.approvalcrest.matcher.typeadapters.LocalDateTimeAdapte
 import com.github.karsaig.approvalcrest.matcher.typeadapters.LocalTimeAdapter;
 import com.github.karsaig.approvalcrest.matcher.typeadapters.OffsetDateTimeAdapter;
 import com.github.karsaig.approvalcrest.matcher.typeadapters.OffsetTimeAdapter;
+import com.github.karsaig.approvalcrest.matcher.typeadapters.PrimitiveArrayTypeAdapterFactory;
 import com.github.karsaig.approvalcrest.matcher.typeadapters.ZonedDateTimeAdapter;
 
 import com.google.common.base.Optional;
-import com.google.common.collect.ArrayListMultimap;
+import com.google.common.base.Suppliers;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Ordering;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.gson.ExclusionStrategy;
 import com.google.gson.FieldAttributes;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
 import com.google.gson.TypeAdapterFactory;
@@ -52,9 +58,24 @@ import com.google.gson.graph.GraphAdapterBuilder;
 /**
  * Provides an instance of {@link Gson}. If any class type has been ignored on the matcher, the {@link Gson} provided
  * will include an {@link ExclusionStrategy} which will skip the serialisation of fields for that type.
+ * <p>
+ * Built instances are kept in a bounded LRU cache keyed by a {@link Fingerprint} of the configuration, so assertions
+ * sharing the same configuration also share the type adapters {@link Gson} has already discovered. Instances for field
+ * name patterns without a consistent {@code equals} and {@code hashCode} are built without the cache.
  */
 @SuppressWarnings("rawtypes")
 class GsonProvider {
+    private static final int MAX_CACHED_GSON_INSTANCES = 64;
+
+    private static final LoadingCache<Fingerprint, Gson> GSON_CACHE = CacheBuilder.newBuilder()
+            .maximumSize(MAX_CACHED_GSON_INSTANCES)
+            .recordStats()
+            .build(CacheLoader.from(GsonProvider::createGson));
+
+    private static final LoadingCache<Gson, PathAwareSerializer> PATH_AWARE_SERIALIZERS = CacheBuilder.newBuilder()
+            .weakKeys()
+            .build(CacheLoader.from(gson -> new PathAwareSerializer(gson, null)));
+
     /**
      * Returns a {@link Gson} instance containing {@link ExclusionStrategy} based on the object types to ignore during
      * serialisation.
@@ -77,23 +98,91 @@ class GsonProvider {
      * @return an instance of {@link Gson}
      */
     public static Gson gson(MatcherConfiguration matcherConfiguration, Set<Class<?>> circularReferenceTypes, GsonConfiguration additionalConfig) {
+        Fingerprint fingerprint = new Fingerprint(matcherConfiguration, circularReferenceTypes, additionalConfig);
+        return fingerprint.isCacheable() ? GSON_CACHE.getUnchecked(fingerprint) : createGson(fingerprint);
+    }
+
+    /**
+     * Returns the hit and miss counters of the {@link Gson} instance cache.
+     *
+     * @return the statistics of the cache
+     */
+    static CacheStats cacheStats() {
+        return GSON_CACHE.stats();
+    }
+
+    /**
+     * Serialises the object to a Json tree without the fields of the paths to ignore, so those are never serialised.
+     * Set and map fields on the paths are ordered by their elements without the ignored fields.
+     *
+     * @param gson          the {@link Gson} instance to serialise with
+     * @param src           the object to serialise
+     * @param pathsToIgnore the dot separated paths of the fields to leave out
+     * @return the Json tree of the object
+     */
+    static JsonElement toJsonTree(Gson gson, Object src, Set<String> pathsToIgnore) {
+        if (pathsToIgnore.isEmpty()) {
+            return gson.toJsonTree(src);
+        }
+        return PATH_AWARE_SERIALIZERS.getUnchecked(gson).toJsonTree(src, FieldPathTrie.of(pathsToIgnore), false);
+    }
+
+    /**
+     * Serialises the object like {@link #toJsonTree(Gson, Object, Set)}, and if it is a set or a map, orders its
+     * elements by their Json without the ignored fields, as if they were removed from the serialised tree afterwards.
+     *
+     * @param gson          the {@link Gson} instance to serialise with
+     * @param src           the object to serialise
+     * @param pathsToIgnore the dot separated paths of the fields to leave out
+     * @return the Json tree of the object
+     */
+    static JsonElement toReorderedJsonTree(Gson gson, Object src, Set<String> pathsToIgnore) {
+        return PATH_AWARE_SERIALIZERS.getUnchecked(gson).toJsonTree(src, FieldPathTrie.of(pathsToIgnore), true);
+    }
+
+    private static Gson createGson(Fingerprint fingerprint) {
+        Supplier<Gson> orderingGson = Suppliers.memoize(() -> createGson(fingerprint, null));
+        Gson gson = createGson(fingerprint, orderingGson);
+        PATH_AWARE_SERIALIZERS.put(gson, new PathAwareSerializer(gson, orderingGson));
+        return gson;
+    }
+
+    /**
+     * @param orderingGson supplies the instance the elements of sets and maps are ordered by, or null to create that
+     *                     instance, which prefixes the names of set and map fields with the {@link
+     *                     com.github.karsaig.approvalcrest.FieldsIgnorer#MARKER}, like the approved files were ordered
+     */
+    private static Gson createGson(Fingerprint fingerprint, Supplier<Gson> orderingGson) {
         GsonBuilder gsonBuilder = initGson();
 
-        defaultGsonConfiguration(gsonBuilder, matcherConfiguration, circularReferenceTypes);
-        if (additionalConfig != null) {
-            additionalConfiguration(additionalConfig, gsonBuilder);
+        defaultGsonConfiguration(gsonBuilder, fingerprint, orderingGson);
+        if (fingerprint.hasAdditionalConfiguration()) {
+            additionalConfiguration(fingerprint, gsonBuilder);
+        }
+        if (fingerprint.trackCircularReferences) {
+            // registered last, so it wraps the adapters of every other factory
+            gsonBuilder.registerTypeAdapterFactory(new CircularReferenceTrackingTypeAdapterFactory());
         }
 
         return gsonBuilder.create();
     }
 
-    private static void defaultGsonConfiguration(GsonBuilder gsonBuilder, MatcherConfiguration matcherConfiguration, Set<Class<?>> circularReferenceTypes) {
+    private static void defaultGsonConfiguration(GsonBuilder gsonBuilder, Fingerprint fingerprint, Supplier<Gson> orderingGson) {
+        if (fingerprint.accessorSerialisation) {
+            // registered before every other factory, so it only replaces the reflective adapters
+            gsonBuilder.registerTypeAdapterFactory(new AccessorTypeAdapterFactory());
+        } else if (GeneratedFieldReaders.isAvailable()) {
+            gsonBuilder.registerTypeAdapterFactory(AccessorTypeAdapterFactory.forGeneratedBeans());
+        }
+        // registered first, so the graph adapters of circular reference types and the user's adapters take precedence
+        registerSetAndMapSerialisation(gsonBuilder, fingerprint, orderingGson);
 
-        if (!circularReferenceTypes.isEmpty()) {
-            registerCircularReferenceTypes(circularReferenceTypes, gsonBuilder);
+        if (!fingerprint.circularReferenceTypes.isEmpty()) {
+            registerCircularReferenceTypes(fingerprint.circularReferenceTypes, gsonBuilder);
         }
 
         gsonBuilder.registerTypeAdapter(Optional.class, new OptionalSerializer());
+        gsonBuilder.registerTypeAdapterFactory(new PrimitiveArrayTypeAdapterFactory(fingerprint.byteArrayEncoding));
         gsonBuilder.registerTypeAdapterFactory(DateAdapter.FACTORY);
         gsonBuilder.registerTypeAdapterFactory(ClassAdapter.FACTORY);
         gsonBuilder.registerTypeAdapter(InstantAdapter.INSTANT_TYPE, new InstantAdapter());
@@ -104,20 +193,17 @@ class GsonProvider {
         gsonBuilder.registerTypeAdapter(OffsetTimeAdapter.OFFSET_TIME_TYPE, new OffsetTimeAdapter());
         gsonBuilder.registerTypeAdapter(ZonedDateTimeAdapter.ZONED_DATE_TIME_TYPE, new ZonedDateTimeAdapter());
 
-        registerSetSerialisation(gsonBuilder);
-
-        registerMapSerialisation(gsonBuilder);
-
-        markSetAndMapFields(gsonBuilder);
-
-        registerExclusionStrategies(gsonBuilder, matcherConfiguration);
+        if (orderingGson == null) {
+            markSetAndMapFields(gsonBuilder);
+        }
+        registerExclusionStrategies(gsonBuilder, fingerprint.typesToIgnore, fingerprint.patternsToIgnore());
     }
 
-    private static void additionalConfiguration(GsonConfiguration additionalConfig, GsonBuilder gsonBuilder) {
-        for (TypeAdapterFactory factory : additionalConfig.getTypeAdapterFactories()) {
+    private static void additionalConfiguration(Fingerprint fingerprint, GsonBuilder gsonBuilder) {
+        for (TypeAdapterFactory factory : fingerprint.typeAdapterFactories) {
             gsonBuilder.registerTypeAdapterFactory(factory);
         }
-        Map<Type, List<Object>> typeAdapterMap = additionalConfig.getTypeAdapters();
+        Map<Type, List<Object>> typeAdapterMap = fingerprint.typeAdapters;
         for (Type type : typeAdapterMap.keySet()) {
             if (typeAdapterMap.get(type) != null) {
                 for (Object o : typeAdapterMap.get(type)) {
@@ -126,7 +212,7 @@ class GsonProvider {
                 }
             }
         }
-        Map<Class<?>, List<Object>> hierarchyTypeAdapterMap = additionalConfig.getTypeHierarchyAdapter();
+        Map<Class<?>, List<Object>> hierarchyTypeAdapterMap = fingerprint.typeHierarchyAdapters;
         for (Class<?> clazz : hierarchyTypeAdapterMap.keySet()) {
             if (hierarchyTypeAdapterMap.get(clazz) != null) {
                 for (Object o : hierarchyTypeAdapterMap.get(clazz)) {
@@ -137,15 +223,15 @@ class GsonProvider {
 
     }
 
-    private static void registerExclusionStrategies(GsonBuilder gsonBuilder, MatcherConfiguration matcherConfiguration) {
-        if (matcherConfiguration.getTypesToIgnore().isEmpty() && matcherConfiguration.getPatternsToIgnore().isEmpty()) {
+    private static void registerExclusionStrategies(GsonBuilder gsonBuilder, Set<Class<?>> typesToIgnore, List<Matcher<String>> patternsToIgnore) {
+        if (typesToIgnore.isEmpty() && patternsToIgnore.isEmpty()) {
             return;
         }
 
         gsonBuilder.setExclusionStrategies(new ExclusionStrategy() {
             @Override
             public boolean shouldSkipField(FieldAttributes f) {
-                for (Matcher<String> p : matcherConfiguration.getPatternsToIgnore()) {
+                for (Matcher<String> p : patternsToIgnore) {
                     if (p.matches(f.getName())) {
                         return true;
                     }
@@ -155,7 +241,7 @@ class GsonProvider {
 
             @Override
             public boolean shouldSkipClass(Class<?> clazz) {
-                return (matcherConfiguration.getTypesToIgnore().contains(clazz));
+                return typesToIgnore.contains(clazz);
             }
         });
     }
@@ -169,22 +255,9 @@ class GsonProvider {
         });
     }
 
-    private static void registerMapSerialisation(GsonBuilder gsonBuilder) {
-        gsonBuilder.registerTypeHierarchyAdapter(Map.class, (JsonSerializer<Map>) (map, type, context) -> {
-            Gson gson = gsonBuilder.create();
-
-            ArrayListMultimap<String, Object> objects = mapObjectsByTheirJsonRepresentation(map, gson);
-            return arrayOfObjectsOrderedByTheirJsonRepresentation(gson, objects, map);
-        });
-    }
-
-    private static void registerSetSerialisation(GsonBuilder gsonBuilder) {
-        gsonBuilder.registerTypeHierarchyAdapter(Set.class, (JsonSerializer<Set>) (set, type, context) -> {
-            Gson gson = gsonBuilder.create();
-
-            Set<Object> orderedSet = orderSetByElementsJsonRepresentation(set, gson);
-            return arrayOfObjectsOrderedByTheirJsonRepresentation(gson, orderedSet);
-        });
+    private static void registerSetAndMapSerialisation(GsonBuilder gsonBuilder, Fingerprint fingerprint, Supplier<Gson> orderingGson) {
+        Set<Class<?>> overriddenHierarchies = fingerprint.hasAdditionalConfiguration() ? fingerprint.typeHierarchyAdapters.keySet() : ImmutableSet.of();
+        gsonBuilder.registerTypeAdapterFactory(new OrderedCollectionTypeAdapterFactory(overriddenHierarchies, orderingGson));
     }
 
     private static void registerCircularReferenceTypes(Set<Class<?>> circularReferenceTypes, GsonBuilder gsonBuilder) {
@@ -195,80 +268,127 @@ class GsonProvider {
         graphAdapterBuilder.registerOn(gsonBuilder);
     }
 
-    @SuppressWarnings("unchecked")
-    private static Set<Object> orderSetByElementsJsonRepresentation(Set set, Gson gson) {
-        Set<Object> objects = newTreeSet(Comparator.comparing(gson::toJson));
-        objects.addAll(set);
-        return objects;
+    private static GsonBuilder initGson() {
+        return new GsonBuilder().setPrettyPrinting();
     }
 
-    @SuppressWarnings("unchecked")
-    private static ArrayListMultimap<String, Object> mapObjectsByTheirJsonRepresentation(Map map, Gson gson) {
-        ArrayListMultimap<String, Object> objects = ArrayListMultimap.create();
-        for (Entry<Object, Object> mapEntry : (Set<Map.Entry<Object, Object>>) map.entrySet()) {
-            objects.put(gson.toJson(mapEntry.getKey()).concat(gson.toJson(mapEntry.getValue())), mapEntry.getKey());
-        }
-        return objects;
-    }
+    private static class OptionalSerializer<T> implements JsonSerializer<Optional<T>> {
 
-    private static JsonArray arrayOfObjectsOrderedByTheirJsonRepresentation(Gson gson, Set<Object> objects) {
-        JsonArray array = new JsonArray();
-        for (Object object : objects) {
-            array.add(gson.toJsonTree(object));
+        @Override
+        public JsonElement serialize(Optional<T> src, Type typeOfSrc, JsonSerializationContext context) {
+            JsonArray result = new JsonArray();
+            result.add(context.serialize(src.orNull()));
+            return result;
         }
-        return array;
     }
 
-    private static JsonArray arrayOfObjectsOrderedByTheirJsonRepresentation(Gson gson, ArrayListMultimap<String, Object> objects, Map map) {
-        ImmutableList<String> sortedMapKeySet = Ordering.natural().immutableSortedCopy(objects.keySet());
-        JsonArray array = new JsonArray();
-        if (allKeysArePrimitiveOrStringOrEnum(sortedMapKeySet, objects)) {
-            for (String jsonRepresentation : sortedMapKeySet) {
-                List<Object> objectsInTheSet = objects.get(jsonRepresentation);
-                for (Object objectInTheSet : objectsInTheSet) {
-                    JsonObject jsonObject = new JsonObject();
-                    jsonObject.add(String.valueOf(objectInTheSet), gson.toJsonTree(map.get(objectInTheSet)));
-                    array.add(jsonObject);
+    /**
+     * Stable key of everything a {@link Gson} instance is built from. The configuration objects are mutable, so their
+     * content is copied when the key is created. Field name patterns are compared with their own {@code equals}: most
+     * Hamcrest matchers don't implement it, so they are only equal to the same instance. Two matchers with the same
+     * description may still match different names, so the description is not part of the key.
+     */
+    static final class Fingerprint {
+        private static final ClassValue<Boolean> CONSISTENT_EQUALITY = new ClassValue<Boolean>() {
+            @Override
+            protected Boolean computeValue(Class<?> type) {
+                try {
+                    boolean overridesEquals = type.getMethod("equals", Object.class).getDeclaringClass() != Object.class;
+                    boolean overridesHashCode = type.getMethod("hashCode").getDeclaringClass() != Object.class;
+                    return overridesEquals == overridesHashCode;
+                } catch (NoSuchMethodException e) {
+                    return false;
                 }
             }
-        } else {
-            for (String jsonRepresentation : sortedMapKeySet) {
-                JsonArray keyValueArray = new JsonArray();
-                List<Object> objectsInTheSet = objects.get(jsonRepresentation);
-                for (Object objectInTheSet : objectsInTheSet) {
-                    keyValueArray.add(gson.toJsonTree(objectInTheSet));
-                    keyValueArray.add(gson.toJsonTree(map.get(objectInTheSet)));
-                    array.add(keyValueArray);
-                }
+        };
+
+        private final Set<Class<?>> typesToIgnore;
+        private final List<Matcher<String>> patternsToIgnore;
+        private final boolean cacheable;
+        private final Set<Class<?>> circularReferenceTypes;
+        private final List<TypeAdapterFactory> typeAdapterFactories;
+        private final Map<Type, List<Object>> typeAdapters;
+        private final Map<Class<?>, List<Object>> typeHierarchyAdapters;
+        private final boolean trackCircularReferences;
+        private final boolean accessorSerialisation;
+        private final ByteArrayEncoding byteArrayEncoding;
+        private final int hashCode;
+
+        Fingerprint(MatcherConfiguration matcherConfiguration, Set<Class<?>> circularReferenceTypes, GsonConfiguration additionalConfig) {
+            this.typesToIgnore = ImmutableSet.copyOf(matcherConfiguration.getTypesToIgnore());
+            this.patternsToIgnore = ImmutableList.copyOf(matcherConfiguration.getPatternsToIgnore());
+            boolean consistentEquality = true;
+            for (Matcher<String> pattern : patternsToIgnore) {
+                consistentEquality &= CONSISTENT_EQUALITY.get(pattern.getClass());
+            }
+            this.cacheable = consistentEquality;
+            this.circularReferenceTypes = ImmutableSet.copyOf(circularReferenceTypes);
+            this.trackCircularReferences = matcherConfiguration.isDetectingCircularReferencesWhileSerialising() && circularReferenceTypes.isEmpty();
+            this.accessorSerialisation = matcherConfiguration.isSerialisingBeansWithAccessors();
+            this.byteArrayEncoding = matcherConfiguration.getByteArrayEncoding();
+            if (additionalConfig == null) {
+                this.typeAdapterFactories = null;
+                this.typeAdapters = null;
+                this.typeHierarchyAdapters = null;
+            } else {
+                this.typeAdapterFactories = ImmutableList.copyOf(additionalConfig.getTypeAdapterFactories());
+                this.typeAdapters = copyOf(additionalConfig.getTypeAdapters());
+                this.typeHierarchyAdapters = copyOf(additionalConfig.getTypeHierarchyAdapter());
             }
+            this.hashCode = Objects.hash(typesToIgnore, patternsToIgnore, this.circularReferenceTypes, typeAdapterFactories, typeAdapters, typeHierarchyAdapters,
+                    trackCircularReferences, accessorSerialisation, byteArrayEncoding);
         }
 
-        return array;
-    }
-
-    private static boolean allKeysArePrimitiveOrStringOrEnum(ImmutableList<String> sortedMapKeySet, ArrayListMultimap<String, Object> objects) {
-        for (String jsonRepresentation : sortedMapKeySet) {
-            List<Object> mapKeys = objects.get(jsonRepresentation);
-            for (Object object : mapKeys) {
-                if (!(isPrimitiveOrWrapper(object.getClass()) || object.getClass() == String.class || object.getClass().isEnum())) {
-                    return false;
+        private static <K> Map<K, List<Object>> copyOf(Map<K, List<Object>> adapters) {
+            ImmutableMap.Builder<K, List<Object>> result = ImmutableMap.builder();
+            for (Entry<K, List<Object>> entry : adapters.entrySet()) {
+                if (entry.getValue() != null) {
+                    result.put(entry.getKey(), ImmutableList.copyOf(entry.getValue()));
                 }
             }
+            return result.build();
         }
-        return true;
-    }
 
-    private static GsonBuilder initGson() {
-        return new GsonBuilder().setPrettyPrinting();
-    }
+        boolean hasAdditionalConfiguration() {
+            return typeAdapterFactories != null;
+        }
 
-    private static class OptionalSerializer<T> implements JsonSerializer<Optional<T>> {
+        List<Matcher<String>> patternsToIgnore() {
+            return patternsToIgnore;
+        }
+
+        /**
+         * @return false if a field name pattern overrides only one of {@code equals} and {@code hashCode}, so the
+         * fingerprint can't be looked up safely
+         */
+        boolean isCacheable() {
+            return cacheable;
+        }
 
         @Override
-        public JsonElement serialize(Optional<T> src, Type typeOfSrc, JsonSerializationContext context) {
-            JsonArray result = new JsonArray();
-            result.add(context.serialize(src.orNull()));
-            return result;
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            Fingerprint that = (Fingerprint) o;
+            return hashCode == that.hashCode
+                    && trackCircularReferences == that.trackCircularReferences
+                    && accessorSerialisation == that.accessorSerialisation
+                    && byteArrayEncoding == that.byteArrayEncoding
+                    && typesToIgnore.equals(that.typesToIgnore)
+                    && patternsToIgnore.equals(that.patternsToIgnore)
+                    && circularReferenceTypes.equals(that.circularReferenceTypes)
+                    && Objects.equals(typeAdapterFactories, that.typeAdapterFactories)
+                    && Objects.equals(typeAdapters, that.typeAdapters)
+                    && Objects.equals(typeHierarchyAdapters, that.typeHierarchyAdapters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
         }
     }
 }
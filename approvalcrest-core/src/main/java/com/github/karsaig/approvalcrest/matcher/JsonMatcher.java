@@ -3,13 +3,15 @@ package com.github.karsaig.approvalcrest.matcher;
 import static com.github.karsaig.approvalcrest.AssertUtil.fail;
 import static com.github.karsaig.approvalcrest.BeanFinder.findBeanAt;
 import static com.github.karsaig.approvalcrest.CyclicReferenceDetector.getClassesWithCircularReferences;
-import static com.github.karsaig.approvalcrest.FieldsIgnorer.MARKER;
 import static com.github.karsaig.approvalcrest.FieldsIgnorer.findPaths;
+import static com.github.karsaig.approvalcrest.matcher.JsonTreeComparator.areEqual;
+import static com.github.karsaig.approvalcrest.matcher.JsonTreeComparator.compare;
 import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.singletonList;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.Reader;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.HashMap;
@@ -18,18 +20,22 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.function.Function;
-import java.util.regex.Pattern;
 
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
-import org.json.JSONException;
-import org.skyscreamer.jsonassert.JSONAssert;
+import org.hamcrest.StringDescription;
 
+import com.github.karsaig.approvalcrest.ByteArrayEncoding;
+import com.github.karsaig.approvalcrest.FieldsIgnorer;
 import com.github.karsaig.approvalcrest.MatcherConfiguration;
+import com.github.karsaig.approvalcrest.NumericTolerance;
+import com.github.karsaig.approvalcrest.matcher.CircularReferenceTrackingTypeAdapterFactory.CircularReferenceFoundException;
+import com.github.karsaig.approvalcrest.matcher.JsonTreeComparator.Result;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.gson.Gson;
 import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
 import com.google.gson.JsonParser;
 
 /**
@@ -58,7 +64,6 @@ import com.google.gson.JsonParser;
  */
 public class JsonMatcher<T> extends AbstractDiagnosingFileMatcher<T, JsonMatcher<T>> implements CustomisableMatcher<T, JsonMatcher<T>> {
     private static final String UPDATE_IN_PLACE_NAME = "jsonMatcherUpdateInPlace";
-    private static final Pattern MARKER_PATTERN = Pattern.compile(MARKER);
 
     private final MatcherConfiguration matcherConfiguration = new MatcherConfiguration();
     private final Set<Class<?>> circularReferenceTypes = new HashSet<>();
@@ -66,6 +71,7 @@ public class JsonMatcher<T> extends AbstractDiagnosingFileMatcher<T, JsonMatcher
     private FileStoreMatcherUtils fileStoreMatcherUtils = new FileStoreMatcherUtils(".json");
 
     private GsonConfiguration configuration;
+    private boolean comparingStreamed;
 
     public JsonMatcher(TestMetaInformation testMetaInformation) {
         super(testMetaInformation);
@@ -74,13 +80,23 @@ public class JsonMatcher<T> extends AbstractDiagnosingFileMatcher<T, JsonMatcher
     @Override
     public void describeTo(Description description) {
         Gson gson = GsonProvider.gson(matcherConfiguration, circularReferenceTypes, configuration);
-        description.appendText(filterJson(gson, expected));
+        description.appendText(describedJson(gson, filteredView(expected)));
         for (String fieldPath : matcherConfiguration.getCustomMatchers().keySet()) {
             description.appendText("\nand ").appendText(fieldPath).appendText(" ")
                     .appendDescriptionOf(matcherConfiguration.getCustomMatchers().get(fieldPath));
         }
     }
 
+    /**
+     * With limited diagnostics only the first and the last lines of the expected Json are described.
+     */
+    private String describedJson(Gson gson, JsonElement json) {
+        if (matcherConfiguration.isLimitingDiagnostics()) {
+            return WindowedJsonPrinter.toJson(gson, json, singletonList(""), matcherConfiguration.getDiagnosticContextLines());
+        }
+        return toJson(gson, json);
+    }
+
     @Override
     public JsonMatcher<T> ignoring(String fieldPath) {
         matcherConfiguration.addPathToIgnore(fieldPath);
@@ -114,25 +130,45 @@ public class JsonMatcher<T> extends AbstractDiagnosingFileMatcher<T, JsonMatcher
 
     @Override
     protected boolean matches(Object actual, Description mismatchDescription) {
-        boolean matches = false;
+        if (matcherConfiguration.isDetectingCircularReferencesWhileSerialising() && circularReferenceTypes.isEmpty()) {
+            Description description = new StringDescription();
+            try {
+                boolean matches = matches(actual, description, GsonProvider.gson(matcherConfiguration, circularReferenceTypes, configuration));
+                mismatchDescription.appendText(description.toString());
+                return matches;
+            } catch (CircularReferenceFoundException e) {
+                // matched again below, with the graph adapters of the circular reference types
+            }
+        }
         circularReferenceTypes.addAll(getClassesWithCircularReferences(actual, matcherConfiguration));
+        return matches(actual, mismatchDescription, GsonProvider.gson(matcherConfiguration, circularReferenceTypes, configuration));
+    }
+
+    private boolean matches(Object actual, Description mismatchDescription, Gson gson) {
+        boolean matches = false;
         init();
-        Gson gson = GsonProvider.gson(matcherConfiguration, circularReferenceTypes, configuration);
         createNotApprovedFileIfNotExists(actual, gson);
+        if (comparingStreamed ? isApprovedAsStreamed(actual, gson) : isApprovedAsWritten(actual, gson)) {
+            deleteReceivedFile();
+            return true;
+        }
         initExpectedFromFile();
 
         if (areCustomMatchersMatching(actual, mismatchDescription, gson)) {
 
-            String expectedJson = filterJson(gson, expected);
+            JsonElement expectedJson = filteredView(expected);
 
             JsonElement actualJsonElement = getAsJsonElement(gson, actual);
 
-            if (actual == null) {
-                matches = appendMismatchDescription(mismatchDescription, expectedJson, "null", "actual was null");
+            if (actual == null && matcherConfiguration.isLimitingDiagnostics()) {
+                matches = appendMismatchDescription(mismatchDescription, gson, expectedJson, JsonNull.INSTANCE, singletonList(""),
+                        matcherConfiguration.getDiagnosticContextLines(), "actual was null");
+            } else if (actual == null) {
+                matches = appendMismatchDescription(mismatchDescription, toJson(gson, expectedJson), "null", "actual was null");
             } else {
-                String actualJson = filterJson(gson, actualJsonElement);
+                JsonElement actualJson = filterJson(actualJsonElement);
 
-                matches = assertEquals(expectedJson, actualJson, mismatchDescription);
+                matches = assertEquals(gson, actual, expectedJson, actualJson, mismatchDescription);
                 if (!matches) {
                     matches = handleInPlaceOverwrite(actual, gson);
                 }
@@ -140,6 +176,9 @@ public class JsonMatcher<T> extends AbstractDiagnosingFileMatcher<T, JsonMatcher
         } else {
             matches = handleInPlaceOverwrite(actual, gson);
         }
+        if (matches) {
+            deleteReceivedFile();
+        }
         return matches;
     }
 
@@ -163,13 +202,50 @@ public class JsonMatcher<T> extends AbstractDiagnosingFileMatcher<T, JsonMatcher
         return false;
     }
 
+    /**
+     * Compares the approved file to the bytes the actual object would be written as, so an unchanged snapshot is
+     * matched without parsing the file. Any other difference is left to the comparison of the Json trees.
+     */
+    private boolean isApprovedAsWritten(Object actual, Gson gson) {
+        if (actual == null || !matcherConfiguration.getPathsToIgnore().isEmpty() || !matcherConfiguration.getCustomMatchers().isEmpty()) {
+            return false;
+        }
+        CanonicalJsonWriter writer = CanonicalJsonWriter.acquire();
+        try {
+            serializeToJson(actual, gson, writer);
+            return fileStoreMatcherUtils.hasContent(fileStoreMatcherUtils.getApproved(fileNameWithPath), writer.buffer(), writer.size());
+        } catch (IOException e) {
+            return false;
+        } finally {
+            writer.release();
+        }
+    }
+
+    /**
+     * Compares the approved file to the actual object while it is serialised, without reading either of them into a
+     * tree. Differences, and the Json the streams cannot compare, are left to the comparison of the Json trees.
+     */
+    private boolean isApprovedAsStreamed(Object actual, Gson gson) {
+        if (actual == null || !matcherConfiguration.getPathsToIgnore().isEmpty() || !matcherConfiguration.getCustomMatchers().isEmpty()) {
+            return false;
+        }
+        try (Reader reader = Files.newBufferedReader(fileStoreMatcherUtils.getApproved(fileNameWithPath), UTF_8)) {
+            Object toCompare = actual instanceof String ? new JsonParser().parse((String) actual) : actual;
+            // a tolerance of every number can be applied without tracking the paths
+            NumericTolerance tolerance = matcherConfiguration.getNumericTolerances().isEmpty() ? matcherConfiguration.getNumericTolerance() : null;
+            return ComparingJsonWriter.isSame(gson, toCompare, reader, tolerance);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
     private JsonElement getAsJsonElement(Gson gson, Object object) {
         JsonElement result;
         if (object instanceof String) {
             JsonParser jsonParser = new JsonParser();
             result = jsonParser.parse((String) object);
         } else {
-            result = gson.toJsonTree(object);
+            result = GsonProvider.toJsonTree(gson, object, matcherConfiguration.getPathsToIgnore());
         }
         return result;
 
@@ -178,63 +254,91 @@ public class JsonMatcher<T> extends AbstractDiagnosingFileMatcher<T, JsonMatcher
     private void initExpectedFromFile() {
         Path approvedFile = fileStoreMatcherUtils.getApproved(fileNameWithPath);
 
-        try {
-            String approvedJsonStr = readFile(approvedFile);
+        try (Reader reader = Files.newBufferedReader(approvedFile, UTF_8)) {
             JsonParser jsonParser = new JsonParser();
-            expected = jsonParser.parse(approvedJsonStr);
+            expected = jsonParser.parse(reader);
         } catch (IOException e) {
             throw new IllegalStateException(
                     String.format("Exception while initializing expected from file: %s", approvedFile.toString()), e);
         }
     }
 
-    private String readFile(Path file) throws IOException {
-        try (BufferedReader br = Files.newBufferedReader(file, UTF_8)) {
-            StringBuilder sb = new StringBuilder();
-            String line = br.readLine();
-
-            while (line != null) {
-                sb.append(line);
-                sb.append("\n");
-                line = br.readLine();
-            }
-            return sb.toString();
-        }
+    private JsonElement filterJson(JsonElement jsonElement) {
+        return findPaths(jsonElement, matcherConfiguration.getPathsToIgnore());
     }
 
-    private String filterJson(Gson gson, JsonElement jsonElement) {
-        Set<String> set = new HashSet<>();
-        set.addAll(matcherConfiguration.getPathsToIgnore());
-
-        JsonElement filteredJson = findPaths(jsonElement, set);
+    private JsonElement filteredView(JsonElement jsonElement) {
+        return FieldsIgnorer.filteredView(jsonElement, matcherConfiguration.getPathsToIgnore());
+    }
 
-        return removeSetMarker(gson.toJson(filteredJson));
+    private String toJson(Gson gson, JsonElement jsonElement) {
+        return gson.toJson(jsonElement);
     }
 
-    private boolean assertEquals(String expectedJson, String actualJson,
+    private boolean assertEquals(Gson gson, Object actual, JsonElement expectedJson, JsonElement actualJson,
                                  Description mismatchDescription) {
-        try {
-            JSONAssert.assertEquals(expectedJson, actualJson, true);
-        } catch (AssertionError e) {
-            return appendMismatchDescription(mismatchDescription, expectedJson, actualJson, getAssertMessage(fileStoreMatcherUtils, e));
-        } catch (JSONException e) {
-            return appendMismatchDescription(mismatchDescription, expectedJson, actualJson, getAssertMessage(fileStoreMatcherUtils, e));
+        Result result;
+        if (matcherConfiguration.isComparingBySubtreeHashes()) {
+            result = JsonTreeComparator.compareBySubtreeHashes(expectedJson, actualJson, matcherConfiguration);
+            if (result.passed()) {
+                return true;
+            }
+        } else if (areEqual(expectedJson, actualJson, matcherConfiguration)) {
+            return true;
+        } else {
+            result = compare(expectedJson, actualJson, matcherConfiguration);
+        }
+        if (matcherConfiguration.isLimitingDiagnostics()) {
+            String differences = result.getMessage() + "\nFull actual Json written to '" + createReceivedFile(actual, gson) + "'";
+            return appendMismatchDescription(mismatchDescription, gson, expectedJson, actualJson, result.getDifferencePaths(),
+                    matcherConfiguration.getDiagnosticContextLines(), getAssertMessage(fileStoreMatcherUtils, differences));
         }
+        return appendMismatchDescription(mismatchDescription, toJson(gson, expectedJson), toJson(gson, actualJson),
+                getAssertMessage(fileStoreMatcherUtils, result.getMessage()));
+    }
 
-        return true;
+    /**
+     * Writes the actual object to the received file beside the approved file, the same way as to an approved file,
+     * without leaving out the ignored paths.
+     */
+    private String createReceivedFile(Object actual, Gson gson) {
+        CanonicalJsonWriter writer = CanonicalJsonWriter.acquire();
+        try {
+            serializeToJson(actual, gson, writer);
+            String createdFileName = fileStoreMatcherUtils.createReceived(fileNameWithPath, writer.buffer(), writer.size(), getCommentLine());
+            return testClassNameHash == null ? createdFileName : testClassNameHash + File.separator + createdFileName;
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    String.format("Exception while creating received file %s", actual.toString()), e);
+        } finally {
+            writer.release();
+        }
     }
 
-    private String removeSetMarker(String json) {
-        return MARKER_PATTERN.matcher(json).replaceAll("");
+    /**
+     * Deletes the received file written by an earlier mismatch. Only matchers limiting the diagnostics write one, so a
+     * received file beside the approved file is left alone by the others.
+     */
+    private void deleteReceivedFile() {
+        if (!matcherConfiguration.isLimitingDiagnostics()) {
+            return;
+        }
+        try {
+            fileStoreMatcherUtils.deleteReceived(fileNameWithPath);
+        } catch (IOException e) {
+            throw new IllegalStateException(
+                    String.format("Exception while deleting received file %s", fileNameWithPath), e);
+        }
     }
 
     private void createNotApprovedFileIfNotExists(Object toApprove, Gson gson) {
         Path approvedFile = fileStoreMatcherUtils.getApproved(fileNameWithPath);
         if (Files.notExists(approvedFile)) {
+            CanonicalJsonWriter writer = CanonicalJsonWriter.acquire();
             try {
                 String approvedFileName = approvedFile.getFileName().toString();
-                String content = serializeToJson(toApprove, gson);
-                String createdFileName = fileStoreMatcherUtils.createNotApproved(fileNameWithPath, content, getCommentLine());
+                serializeToJson(toApprove, gson, writer);
+                String createdFileName = fileStoreMatcherUtils.createNotApproved(fileNameWithPath, writer.buffer(), writer.size(), getCommentLine());
                 String message;
                 if (testClassNameHash == null) {
                     message = "Not approved file created: '" + createdFileName
@@ -248,6 +352,8 @@ public class JsonMatcher<T> extends AbstractDiagnosingFileMatcher<T, JsonMatcher
             } catch (IOException e) {
                 throw new IllegalStateException(
                         String.format("Exception while creating not approved file %s", toApprove.toString()), e);
+            } finally {
+                writer.release();
             }
         }
     }
@@ -255,12 +361,15 @@ public class JsonMatcher<T> extends AbstractDiagnosingFileMatcher<T, JsonMatcher
     private void overwriteApprovedFile(Object actual, Gson gson) {
         Path approvedFile = fileStoreMatcherUtils.getApproved(fileNameWithPath);
         if (Files.exists(approvedFile)) {
+            CanonicalJsonWriter writer = CanonicalJsonWriter.acquire();
             try {
-                String content = serializeToJson(actual, gson);
-                fileStoreMatcherUtils.overwriteApprovedFile(fileNameWithPath, content, getCommentLine());
+                serializeToJson(actual, gson, writer);
+                fileStoreMatcherUtils.overwriteApprovedFile(fileNameWithPath, writer.buffer(), writer.size(), getCommentLine());
             } catch (IOException e) {
                 throw new IllegalStateException(
                         String.format("Exception while overwriting approved file %s", actual.toString()), e);
+            } finally {
+                writer.release();
             }
         } else {
             throw new IllegalStateException("Approved file " + fileNameWithPath + " must exist in order to overwrite it! ");
@@ -271,16 +380,13 @@ public class JsonMatcher<T> extends AbstractDiagnosingFileMatcher<T, JsonMatcher
         return testClassName + "." + testMethodName;
     }
 
-    private String serializeToJson(Object toApprove, Gson gson) {
-        String content;
+    private void serializeToJson(Object toApprove, Gson gson, CanonicalJsonWriter writer) {
         if (String.class.isInstance(toApprove)) {
             JsonParser jsonParser = new JsonParser();
-            JsonElement toApproveJsonElement = jsonParser.parse(String.class.cast(toApprove));
-            content = removeSetMarker(gson.toJson(toApproveJsonElement));
+            writer.write(gson, jsonParser.parse(String.class.cast(toApprove)));
         } else {
-            content = removeSetMarker(gson.toJson(toApprove));
+            writer.write(gson, toApprove);
         }
-        return content;
     }
 
 
@@ -337,4 +443,82 @@ public class JsonMatcher<T> extends AbstractDiagnosingFileMatcher<T, JsonMatcher
         matcherConfiguration.addSkipCircularReferenceChecker(matchers);
         return this;
     }
+
+    @Override
+    public JsonMatcher<T> limitCircularReferenceCheckDepth(int depth) {
+        matcherConfiguration.setMaxCircularReferenceCheckDepth(depth);
+        return this;
+    }
+
+    @Override
+    public JsonMatcher<T> detectCircularReferencesWhileSerialising() {
+        matcherConfiguration.detectCircularReferencesWhileSerialising();
+        return this;
+    }
+
+    @Override
+    public JsonMatcher<T> serialiseBeansWithAccessors() {
+        matcherConfiguration.serialiseBeansWithAccessors();
+        return this;
+    }
+
+    @Override
+    public JsonMatcher<T> encodeByteArraysAs(ByteArrayEncoding encoding) {
+        matcherConfiguration.encodeByteArraysAs(encoding);
+        return this;
+    }
+
+    @Override
+    public JsonMatcher<T> compareBySubtreeHashes() {
+        matcherConfiguration.compareBySubtreeHashes();
+        return this;
+    }
+
+    @Override
+    public JsonMatcher<T> withUnorderedArrays(String... fieldPaths) {
+        matcherConfiguration.addUnorderedArrayPath(fieldPaths);
+        return this;
+    }
+
+    @Override
+    public JsonMatcher<T> alignArraysBy(String fieldPath, String keyField) {
+        matcherConfiguration.alignArraysBy(fieldPath, keyField);
+        return this;
+    }
+
+    @Override
+    public JsonMatcher<T> alignArrays() {
+        matcherConfiguration.alignArrays();
+        return this;
+    }
+
+    @Override
+    public JsonMatcher<T> withTolerance(NumericTolerance tolerance) {
+        matcherConfiguration.withNumericTolerance(tolerance);
+        return this;
+    }
+
+    @Override
+    public JsonMatcher<T> withTolerance(String fieldPath, NumericTolerance tolerance) {
+        matcherConfiguration.withNumericTolerance(fieldPath, tolerance);
+        return this;
+    }
+
+    @Override
+    public JsonMatcher<T> limitDiagnostics(int maxDifferences, int contextLines) {
+        matcherConfiguration.limitDiagnostics(maxDifferences, contextLines);
+        return this;
+    }
+
+    /**
+     * Compares the approved file with the actual object token by token while the object is serialised, so neither is
+     * read into a Json tree when they are the same. The trees are built only to describe a difference. Not used with
+     * ignored paths and custom matchers.
+     *
+     * @return the instance of the matcher
+     */
+    public JsonMatcher<T> compareStreamed() {
+        comparingStreamed = true;
+        return this;
+    }
 }
@@ -0,0 +1,650 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+import com.github.karsaig.approvalcrest.MatcherConfiguration;
+import com.github.karsaig.approvalcrest.NumericTolerance;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Strict structural comparison of two Json trees, without printing and parsing them again.
+ * <p>
+ * The verdicts and the difference messages are the same as the ones of JSONAssert in strict mode on the printed trees:
+ * object members are compared regardless of their order, array elements in order, numbers by their double value and
+ * object members with null value are treated as absent, as they are not printed. The elements of the arrays at the
+ * unordered array paths of the {@link MatcherConfiguration} are compared regardless of their order. The differences of
+ * arrays can be reported on elements aligned by a key field or by their longest common subsequence, instead of by
+ * position. Numbers with a {@link NumericTolerance} are equal if they are within the tolerance, except in unordered
+ * arrays, where the elements are matched by their hashes.
+ * <p>
+ * If the configuration limits the diagnostics, the comparison stops at the first difference past the number of
+ * differences described, and the {@link Result} only tells that there are more.
+ */
+final class JsonTreeComparator {
+    private static final Pattern NUMBER_PATTERN = Pattern.compile("-?(?:0|[1-9]\\d*)(?:\\.\\d+)?(?:[eE][+-]?\\d+)?");
+    private static final MatcherConfiguration DEFAULT_CONFIGURATION = new MatcherConfiguration();
+
+    private final Set<String> unorderedArrayPaths;
+    private final Map<String, String> arrayAlignmentKeys;
+    private final boolean aligningArrays;
+    private final NumericTolerance numericTolerance;
+    private final Map<String, NumericTolerance> numericTolerances;
+    private final MatcherConfiguration configuration;
+    private final Result result;
+
+    private JsonTreeComparator(MatcherConfiguration configuration, Result result) {
+        this.configuration = configuration;
+        this.unorderedArrayPaths = configuration.getUnorderedArrayPaths();
+        this.arrayAlignmentKeys = configuration.getArrayAlignmentKeys();
+        this.aligningArrays = configuration.isAligningArrays();
+        this.numericTolerance = configuration.getNumericTolerance();
+        this.numericTolerances = configuration.getNumericTolerances();
+        this.result = result;
+    }
+
+    /**
+     * Compares the trees, returning on the first difference.
+     *
+     * @param expected the expected tree
+     * @param actual   the actual tree
+     * @return true if the trees are equal
+     */
+    static boolean areEqual(JsonElement expected, JsonElement actual) {
+        return areEqual(expected, actual, DEFAULT_CONFIGURATION);
+    }
+
+    /**
+     * Compares the trees with the array semantics of the configuration, returning on the first difference.
+     *
+     * @param expected      the expected tree
+     * @param actual        the actual tree
+     * @param configuration the configuration of the matcher
+     * @return true if the trees are equal
+     */
+    static boolean areEqual(JsonElement expected, JsonElement actual, MatcherConfiguration configuration) {
+        return new JsonTreeComparator(configuration, null).compare(expected, actual, null, null);
+    }
+
+    /**
+     * Compares the trees, collecting every difference.
+     *
+     * @param expected the expected tree
+     * @param actual   the actual tree
+     * @return the result of the comparison
+     */
+    static Result compare(JsonElement expected, JsonElement actual) {
+        return compare(expected, actual, DEFAULT_CONFIGURATION);
+    }
+
+    /**
+     * Compares the trees with the array semantics of the configuration, collecting the differences described by the
+     * configuration.
+     *
+     * @param expected      the expected tree
+     * @param actual        the actual tree
+     * @param configuration the configuration of the matcher
+     * @return the result of the comparison
+     */
+    static Result compare(JsonElement expected, JsonElement actual, MatcherConfiguration configuration) {
+        Result result = new Result(configuration.getMaxDiagnosedDifferences());
+        new JsonTreeComparator(configuration, result).compare(expected, actual, null, null);
+        return result;
+    }
+
+    /**
+     * Compares the trees by the {@link SubtreeHash} of their subtrees, collecting every difference. Only the subtrees
+     * with different hashes are compared, the differences found are the same as the ones of
+     * {@link #compare(JsonElement, JsonElement)}.
+     *
+     * @param expected the expected tree
+     * @param actual   the actual tree
+     * @return the result of the comparison
+     */
+    static Result compareBySubtreeHashes(JsonElement expected, JsonElement actual) {
+        return compareBySubtreeHashes(expected, actual, DEFAULT_CONFIGURATION);
+    }
+
+    /**
+     * Compares the trees by the {@link SubtreeHash} of their subtrees with the array semantics of the configuration,
+     * collecting the differences described by the configuration.
+     *
+     * @param expected      the expected tree
+     * @param actual        the actual tree
+     * @param configuration the configuration of the matcher
+     * @return the result of the comparison
+     */
+    static Result compareBySubtreeHashes(JsonElement expected, JsonElement actual, MatcherConfiguration configuration) {
+        Result result = new Result(configuration.getMaxDiagnosedDifferences());
+        JsonTreeComparator comparator = new JsonTreeComparator(configuration, result);
+        if (isUnparsable(expected) || isUnparsable(actual)) {
+            comparator.compare(expected, actual, null, null);
+        } else {
+            SubtreeHash[] hashes = SubtreeHash.of(expected, actual, "", comparator.unorderedArrayPaths);
+            comparator.compare(expected, actual, hashes[0], hashes[1]);
+        }
+        return result;
+    }
+
+    private boolean compare(JsonElement expected, JsonElement actual, SubtreeHash expectedHash, SubtreeHash actualHash) {
+        if (isUnparsable(expected)) {
+            return fail("", "Unparsable JSON string: " + expected);
+        }
+        if (isUnparsable(actual)) {
+            return fail("", "Unparsable JSON string: " + actual);
+        }
+        if (expected.isJsonObject() && actual.isJsonObject()) {
+            return compareObjects("", expected.getAsJsonObject(), actual.getAsJsonObject(), expectedHash, actualHash);
+        }
+        if (expected.isJsonArray() && actual.isJsonArray()) {
+            return compareArrays("", expected.getAsJsonArray(), actual.getAsJsonArray(), expectedHash, actualHash);
+        }
+        if (expected.isJsonPrimitive() && actual.isJsonPrimitive()) {
+            if (isSameText(expected.getAsJsonPrimitive(), actual.getAsJsonPrimitive())) {
+                return true;
+            }
+            NumericTolerance tolerance = toleranceAt("");
+            if (tolerance != null && expected.getAsJsonPrimitive().isNumber() && actual.getAsJsonPrimitive().isNumber()
+                    && areEqualValues(expected, actual, tolerance)) {
+                return true;
+            }
+            return fail("", "");
+        }
+        return fail("", failureMessage("", describe(expected), describe(actual)));
+    }
+
+    private static boolean isUnparsable(JsonElement element) {
+        if (element.isJsonNull()) {
+            return true;
+        }
+        if (element.isJsonPrimitive()) {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            return primitive.isBoolean() || primitive.isNumber() && !NUMBER_PATTERN.matcher(primitive.getAsString()).matches();
+        }
+        return false;
+    }
+
+    private static boolean isSameText(JsonPrimitive expected, JsonPrimitive actual) {
+        return expected.isString() == actual.isString() && expected.getAsString().equals(actual.getAsString());
+    }
+
+    private boolean compareObjects(String prefix, JsonObject expected, JsonObject actual, SubtreeHash expectedHash, SubtreeHash actualHash) {
+        if (isSameSubtree(expectedHash, actualHash)) {
+            return true;
+        }
+        Map<String, JsonElement> expectedMembers = membersOf(expected);
+        Map<String, JsonElement> actualMembers = membersOf(actual);
+        boolean equal = true;
+        for (String name : keys(expectedMembers)) {
+            JsonElement actualValue = actualMembers.get(name);
+            if (actualValue == null) {
+                equal = fail(qualify(prefix, name), missingMessage(prefix, name));
+            } else {
+                equal &= compareValues(qualify(prefix, name), expectedMembers.get(name), actualValue,
+                        expectedHash == null ? null : expectedHash.member(name), actualHash == null ? null : actualHash.member(name));
+            }
+            if (!equal && stopsAtDifference()) {
+                return false;
+            }
+        }
+        for (String name : keys(actualMembers)) {
+            if (!expectedMembers.containsKey(name)) {
+                equal = fail(qualify(prefix, name), unexpectedMessage(prefix, name));
+                if (stopsAtDifference()) {
+                    return false;
+                }
+            }
+        }
+        return equal;
+    }
+
+    private boolean compareArrays(String prefix, JsonArray expected, JsonArray actual, SubtreeHash expectedHash, SubtreeHash actualHash) {
+        if (isSameSubtree(expectedHash, actualHash)) {
+            return true;
+        }
+        if (!unorderedArrayPaths.isEmpty() && unorderedArrayPaths.contains(fieldPath(prefix))) {
+            return compareUnorderedArrays(prefix, expected, actual, expectedHash, actualHash);
+        }
+        String keyField = arrayAlignmentKeys.isEmpty() ? null : arrayAlignmentKeys.get(fieldPath(prefix));
+        if (!stopsAtDifference() && (keyField != null || aligningArrays)) {
+            if (hasTolerances() && expected.size() == actual.size() && new JsonTreeComparator(configuration, null).compareValues(prefix, expected, actual, null, null)) {
+                // elements within the tolerance may not be aligned by their hashes, the verdict is the one by position
+                return true;
+            }
+            // the aligned elements are compared by their hashes
+            if (expectedHash == null) {
+                SubtreeHash[] hashes = SubtreeHash.of(expected, actual, fieldPath(prefix), unorderedArrayPaths);
+                if (hashes[0].isSameAs(hashes[1])) {
+                    return true;
+                }
+                expectedHash = hashes[0];
+                actualHash = hashes[1];
+            }
+            Map<JsonElement, Integer> actualIndices = keyField == null ? null : indicesByKey(actual, keyField);
+            if (actualIndices != null && indicesByKey(expected, keyField) != null) {
+                return compareArraysAlignedByKey(prefix, expected, actual, expectedHash, actualHash, keyField, actualIndices);
+            }
+            return compareAlignedArrays(prefix, expected, actual, expectedHash, actualHash);
+        }
+        if (expected.size() != actual.size()) {
+            return fail(prefix, prefix + "[]: Expected " + expected.size() + " values but got " + actual.size());
+        }
+        boolean equal = true;
+        // the elements have the path of the array without indices
+        NumericTolerance tolerance = toleranceAt(prefix);
+        for (int i = 0; i < expected.size(); i++) {
+            JsonElement expectedElement = expected.get(i);
+            JsonElement actualElement = actual.get(i);
+            // the path of an element is only built for nested values and differences
+            if (expectedElement.isJsonPrimitive() && actualElement.isJsonPrimitive() && areEqualValues(expectedElement, actualElement, tolerance)) {
+                continue;
+            }
+            equal &= compareValues(prefix + "[" + i + "]", expectedElement, actualElement,
+                    expectedHash == null ? null : expectedHash.element(i), actualHash == null ? null : actualHash.element(i));
+            if (!equal && stopsAtDifference()) {
+                return false;
+            }
+        }
+        return equal;
+    }
+
+    /**
+     * Matches the elements of the arrays by the {@link SubtreeHash} of the elements, regardless of their order. Every
+     * expected element is matched with at most one actual element with the same hash, the elements left unmatched on
+     * either side are the differences.
+     */
+    private boolean compareUnorderedArrays(String prefix, JsonArray expected, JsonArray actual, SubtreeHash expectedHash, SubtreeHash actualHash) {
+        if (stopsAtDifference() && expected.size() != actual.size()) {
+            return false;
+        }
+        if (expectedHash == null) {
+            SubtreeHash[] hashes = SubtreeHash.of(expected, actual, fieldPath(prefix), unorderedArrayPaths);
+            if (hashes[0].isSameAs(hashes[1])) {
+                return true;
+            }
+            expectedHash = hashes[0];
+            actualHash = hashes[1];
+        }
+        // the indices of the unmatched expected elements with the same hash are chained in ascending order
+        Map<SubtreeHash, Integer> firstUnmatched = new HashMap<>();
+        int[] nextUnmatched = new int[expected.size()];
+        for (int i = expected.size() - 1; i >= 0; i--) {
+            Integer next = firstUnmatched.put(expectedHash.element(i), i);
+            nextUnmatched[i] = next == null ? -1 : next;
+        }
+        BitSet matched = new BitSet(expected.size());
+        List<Integer> unexpected = new ArrayList<>();
+        for (int i = 0; i < actual.size(); i++) {
+            SubtreeHash element = actualHash.element(i);
+            Integer index = firstUnmatched.get(element);
+            if (index == null) {
+                if (stopsAtDifference()) {
+                    return false;
+                }
+                unexpected.add(i);
+            } else {
+                matched.set(index);
+                if (nextUnmatched[index] == -1) {
+                    firstUnmatched.remove(element);
+                } else {
+                    firstUnmatched.put(element, nextUnmatched[index]);
+                }
+            }
+        }
+        boolean equal = true;
+        for (int i = matched.nextClearBit(0); i < expected.size() && !stopsAtDifference(); i = matched.nextClearBit(i + 1)) {
+            equal = fail(prefix + "[" + i + "]", prefix + "[]\nExpected: " + describeElement(expected.get(i)) + "\n     but none found\n");
+        }
+        for (int i = 0; i < unexpected.size() && !stopsAtDifference(); i++) {
+            equal = fail(prefix + "[" + unexpected.get(i) + "]", prefix + "[]\nUnexpected: " + describeElement(actual.get(unexpected.get(i))) + "\n");
+        }
+        return equal;
+    }
+
+    /**
+     * Elements can be aligned by their key if every element is an object with a unique primitive value of the key
+     * field, otherwise they are aligned by their longest common subsequence.
+     *
+     * @return the index of the element of every key, or null if the elements cannot be aligned by the key
+     */
+    private static Map<JsonElement, Integer> indicesByKey(JsonArray array, String keyField) {
+        Map<JsonElement, Integer> indices = new HashMap<>();
+        for (int i = 0; i < array.size(); i++) {
+            JsonElement key = keyOf(array.get(i), keyField);
+            if (key == null || indices.put(key, i) != null) {
+                return null;
+            }
+        }
+        return indices;
+    }
+
+    /**
+     * Aligns the elements of the arrays by the value of their key field with a hash join. The differences are the
+     * removed, the inserted and the changed elements, or the order if only that is different. The arrays are equal
+     * only if their elements are equal in the same order, the same as without alignment.
+     */
+    private boolean compareArraysAlignedByKey(String prefix, JsonArray expected, JsonArray actual, SubtreeHash expectedHash,
+                                              SubtreeHash actualHash, String keyField, Map<JsonElement, Integer> actualIndices) {
+        int changes = result.differences;
+        BitSet aligned = new BitSet(actual.size());
+        boolean inOrder = expected.size() == actual.size();
+        for (int i = 0; i < expected.size() && !stopsAtDifference(); i++) {
+            Integer index = actualIndices.get(keyOf(expected.get(i), keyField));
+            if (index == null) {
+                fail(prefix + "[" + i + "]", removedMessage(prefix, i, expected.get(i)));
+            } else {
+                aligned.set(index);
+                inOrder &= index == i;
+                if (!expectedHash.element(i).isSameAs(actualHash.element(index))) {
+                    compareValues(prefix + "[" + i + "]", expected.get(i), actual.get(index), expectedHash.element(i), actualHash.element(index));
+                }
+            }
+        }
+        for (int i = aligned.nextClearBit(0); i < actual.size() && !stopsAtDifference(); i = aligned.nextClearBit(i + 1)) {
+            fail(prefix + "[" + i + "]", insertedMessage(prefix, i, actual.get(i)));
+        }
+        if (result.differences == changes && !inOrder) {
+            fail(prefix, prefix + "[]: Expected the same elements in the order of " + keyField + "\n");
+        }
+        return result.differences == changes;
+    }
+
+    private static JsonElement keyOf(JsonElement element, String keyField) {
+        if (!element.isJsonObject()) {
+            return null;
+        }
+        JsonElement key = element.getAsJsonObject().get(keyField);
+        return key != null && key.isJsonPrimitive() ? key : null;
+    }
+
+    /**
+     * Aligns the elements of the arrays by the longest common subsequence of their {@link SubtreeHash}. The elements
+     * between two aligned ones are compared in pairs, the ones left over are removed or inserted.
+     */
+    private boolean compareAlignedArrays(String prefix, JsonArray expected, JsonArray actual, SubtreeHash expectedHash, SubtreeHash actualHash) {
+        int[] expectedToActual = ArrayAlignment.align(expectedHash, expected.size(), actualHash, actual.size());
+        boolean equal = true;
+        int i = 0;
+        int j = 0;
+        while ((i < expected.size() || j < actual.size()) && !stopsAtDifference()) {
+            int nextI = i;
+            while (nextI < expected.size() && expectedToActual[nextI] == -1) {
+                nextI++;
+            }
+            int nextJ = nextI < expected.size() ? expectedToActual[nextI] : actual.size();
+            for (; i < nextI && j < nextJ; i++, j++) {
+                equal &= compareValues(prefix + "[" + i + "]", expected.get(i), actual.get(j), expectedHash.element(i), actualHash.element(j));
+            }
+            for (; i < nextI; i++) {
+                equal = fail(prefix + "[" + i + "]", removedMessage(prefix, i, expected.get(i)));
+            }
+            for (; j < nextJ; j++) {
+                equal = fail(prefix + "[" + j + "]", insertedMessage(prefix, j, actual.get(j)));
+            }
+            // the aligned elements are the same
+            i = nextI + 1;
+            j = nextJ + 1;
+        }
+        return equal;
+    }
+
+    private boolean compareValues(String path, JsonElement expected, JsonElement actual, SubtreeHash expectedHash, SubtreeHash actualHash) {
+        if (expected.isJsonObject() && actual.isJsonObject()) {
+            return compareObjects(path, expected.getAsJsonObject(), actual.getAsJsonObject(), expectedHash, actualHash);
+        }
+        if (expected.isJsonArray() && actual.isJsonArray()) {
+            return compareArrays(path, expected.getAsJsonArray(), actual.getAsJsonArray(), expectedHash, actualHash);
+        }
+        if (areEqualValues(expected, actual, toleranceAt(path))) {
+            return true;
+        }
+        return fail(path, failureMessage(path, describe(expected), describe(actual)));
+    }
+
+    private boolean hasTolerances() {
+        return numericTolerance != null || !numericTolerances.isEmpty();
+    }
+
+    /**
+     * @return the tolerance of the numbers at the path, or null if they are compared exactly
+     */
+    private NumericTolerance toleranceAt(String path) {
+        if (numericTolerances.isEmpty()) {
+            return numericTolerance;
+        }
+        NumericTolerance tolerance = numericTolerances.get(fieldPath(path));
+        return tolerance == null ? numericTolerance : tolerance;
+    }
+
+    /**
+     * Subtrees with the same hash are taken as equal without comparing them, the hashes are null if the trees are not
+     * compared by hashes.
+     */
+    private static boolean isSameSubtree(SubtreeHash expectedHash, SubtreeHash actualHash) {
+        return expectedHash != null && expectedHash.isSameAs(actualHash);
+    }
+
+    private static boolean areEqualValues(JsonElement expected, JsonElement actual, NumericTolerance tolerance) {
+        if (expected.isJsonNull() || actual.isJsonNull()) {
+            return expected.isJsonNull() && actual.isJsonNull();
+        }
+        if (!expected.isJsonPrimitive() || !actual.isJsonPrimitive()) {
+            return false;
+        }
+        JsonPrimitive expectedPrimitive = expected.getAsJsonPrimitive();
+        JsonPrimitive actualPrimitive = actual.getAsJsonPrimitive();
+        if (expectedPrimitive.isNumber() && actualPrimitive.isNumber()) {
+            if (tolerance != null) {
+                return tolerance.isWithin(SubtreeHash.doubleValue(expectedPrimitive.getAsNumber()), SubtreeHash.doubleValue(actualPrimitive.getAsNumber()));
+            }
+            return areEqualNumbers(expectedPrimitive.getAsNumber(), actualPrimitive.getAsNumber());
+        }
+        if (expectedPrimitive.isBoolean() && actualPrimitive.isBoolean()) {
+            return expectedPrimitive.getAsBoolean() == actualPrimitive.getAsBoolean();
+        }
+        if (expectedPrimitive.isString() && actualPrimitive.isString()) {
+            return expectedPrimitive.getAsString().equals(actualPrimitive.getAsString());
+        }
+        return false;
+    }
+
+    /**
+     * Numbers are equal if their printed forms parse to the same double. Numbers of the same boxed type are compared
+     * without printing them: the text of a long parses to the double the long is converted to, and the text of a double
+     * or a float to the value itself.
+     */
+    private static boolean areEqualNumbers(Number expected, Number actual) {
+        Class<?> type = expected.getClass();
+        if (type == actual.getClass()) {
+            if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class) {
+                return (double) expected.longValue() == (double) actual.longValue();
+            }
+            if (type == Double.class) {
+                return expected.doubleValue() == actual.doubleValue();
+            }
+            if (type == Float.class) {
+                return expected.floatValue() == actual.floatValue();
+            }
+        }
+        return Double.parseDouble(expected.toString()) == Double.parseDouble(actual.toString());
+    }
+
+    private static Map<String, JsonElement> membersOf(JsonObject object) {
+        Map<String, JsonElement> members = new HashMap<>();
+        for (Entry<String, JsonElement> member : object.entrySet()) {
+            if (!member.getValue().isJsonNull()) {
+                members.put(member.getKey(), member.getValue());
+            }
+        }
+        return members;
+    }
+
+    /**
+     * Differences are reported in the order of the member names, the same way as JSONAssert does.
+     */
+    private Iterable<String> keys(Map<String, JsonElement> members) {
+        return result == null ? members.keySet() : new TreeSet<>(members.keySet());
+    }
+
+    private static String describe(JsonElement element) {
+        if (element.isJsonArray()) {
+            return "a JSON array";
+        }
+        if (element.isJsonObject()) {
+            return "a JSON object";
+        }
+        if (element.isJsonNull()) {
+            return "null";
+        }
+        JsonPrimitive primitive = element.getAsJsonPrimitive();
+        if (primitive.isNumber()) {
+            return describeNumber(primitive.getAsString());
+        }
+        return primitive.getAsString();
+    }
+
+    private static String describeElement(JsonElement element) {
+        return element.isJsonArray() || element.isJsonObject() ? element.toString() : describe(element);
+    }
+
+    private static String describeNumber(String number) {
+        if (number.indexOf('.') == -1) {
+            try {
+                return Long.toString(Long.parseLong(number));
+            } catch (NumberFormatException e) {
+                // not an integer in the range of long, described as a double
+            }
+        }
+        return Double.toString(Double.parseDouble(number));
+    }
+
+    private static String qualify(String prefix, String name) {
+        return prefix.isEmpty() ? name : prefix + "." + name;
+    }
+
+    /**
+     * @return the path without the indices of the array elements, e.g. {@code beans.name} for {@code beans[2].name}
+     */
+    private static String fieldPath(String path) {
+        if (path.indexOf('[') == -1) {
+            return path;
+        }
+        StringBuilder fieldPath = new StringBuilder(path.length());
+        boolean inIndex = false;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '[') {
+                inIndex = true;
+            } else if (c == ']') {
+                inIndex = false;
+            } else if (!inIndex) {
+                fieldPath.append(c);
+            }
+        }
+        return fieldPath.toString();
+    }
+
+    private static String failureMessage(String path, String expected, String actual) {
+        return path + "\nExpected: " + expected + "\n     got: " + actual + "\n";
+    }
+
+    private static String missingMessage(String prefix, String name) {
+        return prefix + "\nExpected: " + name + "\n     but none found\n";
+    }
+
+    private static String unexpectedMessage(String prefix, String name) {
+        return prefix + "\nUnexpected: " + name + "\n";
+    }
+
+    private static String removedMessage(String prefix, int index, JsonElement element) {
+        return prefix + "[" + index + "]\nExpected: " + describeElement(element) + "\n     but none found\n";
+    }
+
+    private static String insertedMessage(String prefix, int index, JsonElement element) {
+        return prefix + "[" + index + "]\nUnexpected: " + describeElement(element) + "\n";
+    }
+
+    /**
+     * @return true if the comparison returns on the first difference: it only tells whether the trees are equal, or it
+     * found more differences than described
+     */
+    private boolean stopsAtDifference() {
+        return result == null || result.moreDifferences;
+    }
+
+    private boolean fail(String path, String message) {
+        if (result != null) {
+            result.addDifference(path, message);
+        }
+        return false;
+    }
+
+    /**
+     * Differences found by {@link JsonTreeComparator#compare(JsonElement, JsonElement)}.
+     */
+    static final class Result {
+        private final int maxDifferences;
+        private final List<String> differencePaths = new ArrayList<>();
+        private final StringBuilder message = new StringBuilder();
+        private int differences;
+        private boolean moreDifferences;
+
+        /**
+         * @param maxDifferences the number of differences collected, 0 to collect every difference
+         */
+        private Result(int maxDifferences) {
+            this.maxDifferences = maxDifferences;
+        }
+
+        private void addDifference(String path, String differenceMessage) {
+            differences++;
+            if (maxDifferences != 0 && differencePaths.size() == maxDifferences) {
+                moreDifferences = true;
+                return;
+            }
+            differencePaths.add(path);
+            if (message.length() != 0) {
+                message.append(" ; ");
+            }
+            message.append(differenceMessage);
+        }
+
+        boolean passed() {
+            return differences == 0;
+        }
+
+        /**
+         * @return the description of the differences collected, in the format of JSONAssert, followed by a note if
+         * there are more differences
+         */
+        String getMessage() {
+            return moreDifferences ? message + " ; ... and more differences" : message.toString();
+        }
+
+        /**
+         * @return the paths of the differences collected, e.g. {@code beans[2].name}
+         */
+        List<String> getDifferencePaths() {
+            return Collections.unmodifiableList(differencePaths);
+        }
+
+        /**
+         * @return true if the comparison stopped at a difference past the ones collected
+         */
+        boolean hasMoreDifferences() {
+            return moreDifferences;
+        }
+    }
+}
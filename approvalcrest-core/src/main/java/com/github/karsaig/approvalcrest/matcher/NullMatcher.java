@@ -15,6 +15,8 @@ import static org.hamcrest.CoreMatchers.nullValue;
 
 import org.hamcrest.Description;
 
+import com.github.karsaig.approvalcrest.matcher.CircularReferenceTrackingTypeAdapterFactory.CircularReferenceFoundException;
+
 /**
  * {@link DiagnosingCustomisableMatcher} implementation which verifies a bean is null.
  */
@@ -26,8 +28,18 @@ class NullMatcher<T> extends DiagnosingCustomisableMatcher<T> {
     @Override
     protected boolean matches(Object actual, Description mismatchDescription) {
         if (actual != null) {
-            circularReferenceTypes.addAll(getClassesWithCircularReferences(actual,matcherConfiguration ));
-            String actualJson = gson(matcherConfiguration, circularReferenceTypes).toJson(actual);
+            String actualJson = null;
+            if (isDetectingCircularReferencesWhileSerialising()) {
+                try {
+                    actualJson = gson(matcherConfiguration, circularReferenceTypes).toJson(actual);
+                } catch (CircularReferenceFoundException e) {
+                    // serialised again below, with the graph adapters of the circular reference types
+                }
+            }
+            if (actualJson == null) {
+                circularReferenceTypes.addAll(getClassesWithCircularReferences(actual,matcherConfiguration ));
+                actualJson = gson(matcherConfiguration, circularReferenceTypes).toJson(actual);
+            }
             return appendMismatchDescription(mismatchDescription, "null", actualJson, "actual is not null");
         }
         return true;
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2013 Shazam Entertainment Limited
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the License.
+ *
+ * You may obtain a copy of the License at http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the specific language governing permissions and limitations under the License.
+ */
+package com.github.karsaig.approvalcrest.matcher;
+
+import static com.github.karsaig.approvalcrest.FieldsIgnorer.MARKER;
+import static org.apache.commons.lang3.ClassUtils.isPrimitiveOrWrapper;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import com.github.karsaig.approvalcrest.JsonElementOrdering;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Serialises {@link Set}s and {@link Map}s as arrays ordered by the JSON representation of their elements, so the
+ * output doesn't depend on the iteration order of the collection. Set elements are serialised once, and the trees are
+ * ordered by their printed form, keeping elements with equal JSON.
+ * <p>
+ * Elements are serialised by the {@link Gson} instance the factory is registered on, so its adapter cache is shared by
+ * every collection of an assertion. Types covered by one of the given type hierarchy adapters are left to those
+ * adapters, the same way they took precedence when sets and maps were serialised by type hierarchy adapters.
+ * <p>
+ * The order is the one of the approved files written when {@link Set} and {@link Map} typed fields were named with the
+ * {@link com.github.karsaig.approvalcrest.FieldsIgnorer#MARKER} prefix: the sort keys are printed from the elements
+ * serialised by an ordering {@link Gson}, which still prefixes those field names. The prefix is removed from the
+ * elements before they are written.
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+class OrderedCollectionTypeAdapterFactory implements TypeAdapterFactory {
+    private final Set<Class<?>> overriddenHierarchies;
+    private final Supplier<Gson> orderingGson;
+
+    /**
+     * @param overriddenHierarchies base types of the type hierarchy adapters registered by the user
+     * @param orderingGson          supplies the {@link Gson} instance prefixing the set and map field names, the
+     *                              elements are ordered by, or null if the factory is registered on that instance
+     */
+    OrderedCollectionTypeAdapterFactory(Set<Class<?>> overriddenHierarchies, Supplier<Gson> orderingGson) {
+        this.overriddenHierarchies = ImmutableSet.copyOf(overriddenHierarchies);
+        this.orderingGson = orderingGson;
+    }
+
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<? super T> rawType = type.getRawType();
+        if (isOverridden(rawType)) {
+            return null;
+        }
+        if (Map.class.isAssignableFrom(rawType)) {
+            return (TypeAdapter<T>) new MapAdapter(gson, orderingGson);
+        }
+        if (Set.class.isAssignableFrom(rawType)) {
+            return (TypeAdapter<T>) new SetAdapter(gson, orderingGson);
+        }
+        return null;
+    }
+
+    private boolean isOverridden(Class<?> rawType) {
+        for (Class<?> baseType : overriddenHierarchies) {
+            if (baseType.isAssignableFrom(rawType)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes the {@link com.github.karsaig.approvalcrest.FieldsIgnorer#MARKER} prefix of the member names in the tree
+     * serialised by the ordering {@link Gson}, keeping the order of the members.
+     *
+     * @param json a tree serialised by the ordering {@link Gson}, it is changed in place
+     * @return the same tree
+     */
+    static JsonElement removeMarkers(JsonElement json) {
+        if (json.isJsonArray()) {
+            for (JsonElement element : json.getAsJsonArray()) {
+                removeMarkers(element);
+            }
+        } else if (json.isJsonObject()) {
+            JsonObject object = json.getAsJsonObject();
+            boolean marked = false;
+            for (Entry<String, JsonElement> member : object.entrySet()) {
+                removeMarkers(member.getValue());
+                marked |= member.getKey().startsWith(MARKER);
+            }
+            if (marked) {
+                List<Entry<String, JsonElement>> members = new ArrayList<>(object.entrySet());
+                for (Entry<String, JsonElement> member : members) {
+                    object.remove(member.getKey());
+                }
+                for (Entry<String, JsonElement> member : members) {
+                    String name = member.getKey();
+                    object.add(name.startsWith(MARKER) ? name.substring(MARKER.length()) : name, member.getValue());
+                }
+            }
+        }
+        return json;
+    }
+
+    /**
+     * Serialises the elements of the ordered collections.
+     */
+    interface ElementSerializer {
+
+        /**
+         * @param element the element, key or value to serialise
+         * @param name    the name of the member holding the value in the output, or null if it is an array element
+         * @return the Json tree of the element
+         */
+        JsonElement toJsonTree(Object element, String name);
+    }
+
+    abstract static class OrderedAdapter<T> extends TypeAdapter<T> {
+        final Gson gson;
+        private final Supplier<Gson> orderingGson;
+        private final TypeAdapter<JsonElement> treeAdapter;
+
+        OrderedAdapter(Gson gson, Supplier<Gson> orderingGson) {
+            this.gson = gson;
+            this.orderingGson = orderingGson;
+            this.treeAdapter = gson.getAdapter(JsonElement.class);
+        }
+
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+                return;
+            }
+            Gson ordering = orderingGson();
+            JsonArray array = toJsonArray(value, (element, name) -> ordering.toJsonTree(element), null);
+            treeAdapter.write(out, orderingGson == null ? array : removeMarkers(array));
+        }
+
+        /**
+         * @return the {@link Gson} instance prefixing the set and map field names, the sort keys are printed by
+         */
+        Gson orderingGson() {
+            return orderingGson == null ? gson : orderingGson.get();
+        }
+
+        /**
+         * Serialises the collection to an ordered array.
+         *
+         * @param value              the collection
+         * @param orderSerializer    serialises the elements the order is decided by, with the ordering {@link Gson}
+         * @param outputSerializer   serialises the elements written to the array, or null to write the trees of the
+         *                           order serializer, so the elements are only serialised once
+         * @return the ordered array
+         */
+        abstract JsonArray toJsonArray(T value, ElementSerializer orderSerializer, ElementSerializer outputSerializer);
+
+        static JsonElement output(JsonElement ordered, Object element, String name, ElementSerializer outputSerializer) {
+            return outputSerializer == null ? ordered : outputSerializer.toJsonTree(element, name);
+        }
+
+        @Override
+        public T read(JsonReader in) {
+            throw new UnsupportedOperationException("Only for serialization!");
+        }
+    }
+
+    private static class SetAdapter extends OrderedAdapter<Set> {
+
+        SetAdapter(Gson gson, Supplier<Gson> orderingGson) {
+            super(gson, orderingGson);
+        }
+
+        @Override
+        JsonArray toJsonArray(Set set, ElementSerializer orderSerializer, ElementSerializer outputSerializer) {
+            Gson ordering = orderingGson();
+            List<JsonElement> elements = new ArrayList<>(set.size());
+            List<String> sortKeys = new ArrayList<>(set.size());
+            for (Object object : (Set<Object>) set) {
+                JsonElement ordered = orderSerializer.toJsonTree(object, null);
+                sortKeys.add(ordering.toJson(ordered));
+                elements.add(output(ordered, object, null, outputSerializer));
+            }
+            return JsonElementOrdering.sortedArray(elements, sortKeys);
+        }
+    }
+
+    /**
+     * Orders the entries as if by the concatenated JSON of their key and value, but serialises every key and value only
+     * once. The printed form of a value is only needed when the key of one entry is a prefix of the other's, which
+     * happens for numeric keys, and even then the first character of the value usually decides.
+     */
+    private static class MapAdapter extends OrderedAdapter<Map> {
+
+        MapAdapter(Gson gson, Supplier<Gson> orderingGson) {
+            super(gson, orderingGson);
+        }
+
+        @Override
+        JsonArray toJsonArray(Map map, ElementSerializer orderSerializer, ElementSerializer outputSerializer) {
+            boolean primitiveKeys = allKeysArePrimitiveOrStringOrEnum(map.keySet());
+            List<MapEntry> entries = new ArrayList<>(map.size());
+            for (Entry<Object, Object> mapEntry : (Set<Map.Entry<Object, Object>>) map.entrySet()) {
+                entries.add(primitiveKeys ? keyedByName(mapEntry, orderSerializer, outputSerializer)
+                        : keyedByTree(mapEntry, orderSerializer, outputSerializer));
+            }
+            entries.sort(this::compare);
+
+            JsonArray array = new JsonArray(entries.size());
+            for (MapEntry entry : entries) {
+                if (primitiveKeys) {
+                    JsonObject jsonObject = new JsonObject();
+                    jsonObject.add(String.valueOf(entry.key), entry.outputValue);
+                    array.add(jsonObject);
+                } else {
+                    JsonArray keyValueArray = new JsonArray(2);
+                    keyValueArray.add(entry.outputKeyTree);
+                    keyValueArray.add(entry.outputValue);
+                    array.add(keyValueArray);
+                }
+            }
+            return array;
+        }
+
+        private MapEntry keyedByName(Entry<Object, Object> mapEntry, ElementSerializer orderSerializer, ElementSerializer outputSerializer) {
+            Object key = mapEntry.getKey();
+            String name = String.valueOf(key);
+            JsonElement value = orderSerializer.toJsonTree(mapEntry.getValue(), name);
+            JsonElement outputValue = output(value, mapEntry.getValue(), name, outputSerializer);
+            return new MapEntry(key, gson.toJson(key), value, null, outputValue);
+        }
+
+        private MapEntry keyedByTree(Entry<Object, Object> mapEntry, ElementSerializer orderSerializer, ElementSerializer outputSerializer) {
+            JsonElement keyTree = orderSerializer.toJsonTree(mapEntry.getKey(), null);
+            JsonElement value = orderSerializer.toJsonTree(mapEntry.getValue(), null);
+            return new MapEntry(mapEntry.getKey(), orderingGson().toJson(keyTree), value,
+                    output(keyTree, mapEntry.getKey(), null, outputSerializer),
+                    output(value, mapEntry.getValue(), null, outputSerializer));
+        }
+
+        private int compare(MapEntry first, MapEntry second) {
+            String firstKey = first.keyJson;
+            String secondKey = second.keyJson;
+            if (secondKey.length() > firstKey.length() && secondKey.startsWith(firstKey)) {
+                int result = firstCharOfValue(first) - secondKey.charAt(firstKey.length());
+                if (result != 0) {
+                    return result;
+                }
+            } else if (firstKey.length() > secondKey.length() && firstKey.startsWith(secondKey)) {
+                int result = firstKey.charAt(secondKey.length()) - firstCharOfValue(second);
+                if (result != 0) {
+                    return result;
+                }
+            } else if (!firstKey.equals(secondKey)) {
+                return firstKey.compareTo(secondKey);
+            }
+            return firstKey.concat(valueJson(first)).compareTo(secondKey.concat(valueJson(second)));
+        }
+
+        private char firstCharOfValue(MapEntry entry) {
+            if (entry.value.isJsonObject()) {
+                return '{';
+            }
+            if (entry.value.isJsonArray()) {
+                return '[';
+            }
+            return valueJson(entry).charAt(0);
+        }
+
+        private String valueJson(MapEntry entry) {
+            if (entry.valueJson == null) {
+                entry.valueJson = orderingGson().toJson(entry.value);
+            }
+            return entry.valueJson;
+        }
+
+        private static boolean allKeysArePrimitiveOrStringOrEnum(Set<Object> keys) {
+            for (Object key : keys) {
+                if (key == null || !(isPrimitiveOrWrapper(key.getClass()) || key.getClass() == String.class || key.getClass().isEnum())) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private static final class MapEntry {
+        private final Object key;
+        private final String keyJson;
+        private final JsonElement value;
+        private final JsonElement outputKeyTree;
+        private final JsonElement outputValue;
+        private String valueJson;
+
+        MapEntry(Object key, String keyJson, JsonElement value, JsonElement outputKeyTree, JsonElement outputValue) {
+            this.key = key;
+            this.keyJson = keyJson;
+            this.value = value;
+            this.outputKeyTree = outputKeyTree;
+            this.outputValue = outputValue;
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import static com.github.karsaig.approvalcrest.FieldsIgnorer.MARKER;
+import static com.github.karsaig.approvalcrest.matcher.OrderedCollectionTypeAdapterFactory.removeMarkers;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+import com.github.karsaig.approvalcrest.FieldPathTrie;
+import com.github.karsaig.approvalcrest.FieldPathTrie.Node;
+import com.github.karsaig.approvalcrest.JsonElementOrdering;
+import com.github.karsaig.approvalcrest.matcher.OrderedCollectionTypeAdapterFactory.ElementSerializer;
+import com.github.karsaig.approvalcrest.matcher.OrderedCollectionTypeAdapterFactory.OrderedAdapter;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonNull;
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.annotations.SerializedName;
+import com.google.gson.internal.$Gson$Types;
+import com.google.gson.internal.Excluder;
+import com.google.gson.internal.bind.ArrayTypeAdapter;
+import com.google.gson.internal.bind.CollectionTypeAdapterFactory;
+import com.google.gson.internal.bind.JsonTreeWriter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Serialises objects to Json trees with the adapters of a {@link Gson} instance, leaving out the fields of the ignored
+ * paths, so they are never serialised.
+ * <p>
+ * Only the beans, collections and arrays on the way to an ignored path are written here, mirroring the reflective
+ * serialisation of {@link Gson}, everything else is written by the adapter {@link Gson} would use.
+ * <p>
+ * Sets and maps held by {@link Set} or {@link Map} typed fields are ordered by their elements without the ignored fields,
+ * so elements differing only in ignored fields are in the same order. Other sets and maps keep the order of their fully
+ * serialised elements, the same order they have in the approved files. The elements are ordered by their trees written
+ * by the ordering {@link Gson}, with the {@link com.github.karsaig.approvalcrest.FieldsIgnorer#MARKER} prefix of the
+ * set and map field names, like the sets and maps of the approved files.
+ */
+@SuppressWarnings({"rawtypes", "unchecked"})
+class PathAwareSerializer {
+    private final Gson gson;
+    private final Supplier<Gson> orderingGson;
+    private final Excluder excluder;
+    private final TypeAdapter<JsonElement> treeAdapter;
+    private final Map<TypeToken<?>, List<BoundField>> boundFields = new ConcurrentHashMap<>();
+    private volatile PathAwareSerializer orderingSerializer;
+
+    /**
+     * @param gson         the {@link Gson} instance to serialise with
+     * @param orderingGson supplies the instance the elements of sets and maps are ordered by, or null if it is the
+     *                     given instance
+     */
+    PathAwareSerializer(Gson gson, Supplier<Gson> orderingGson) {
+        this.gson = gson;
+        this.orderingGson = orderingGson;
+        this.excluder = gson.excluder();
+        this.treeAdapter = gson.getAdapter(JsonElement.class);
+    }
+
+    /**
+     * Serialises the object to a Json tree without the fields of the given paths.
+     *
+     * @param src           the object to serialise
+     * @param pathsToIgnore the trie of the paths to leave out
+     * @param reorderRoot   true to order a set or a map by its elements without the ignored fields
+     * @return the Json tree of the object
+     */
+    JsonElement toJsonTree(Object src, FieldPathTrie pathsToIgnore, boolean reorderRoot) {
+        if (src == null) {
+            return JsonNull.INSTANCE;
+        }
+        if (reorderRoot && (src instanceof Set || src instanceof Map)) {
+            return toReorderedJsonTree(src, pathsToIgnore.getRoot());
+        }
+        if (pathsToIgnore.isEmpty()) {
+            return gson.toJsonTree(src);
+        }
+        return toJsonTree(src, pathsToIgnore.getRoot());
+    }
+
+    private JsonElement toJsonTree(Object src, Node node) {
+        if (src == null) {
+            return JsonNull.INSTANCE;
+        }
+        JsonTreeWriter writer = newTreeWriter();
+        try {
+            write(writer, src, src.getClass(), gson.getAdapter(src.getClass()), node, false);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        return writer.get();
+    }
+
+    private JsonElement toReorderedJsonTree(Object src, Node node) {
+        TypeAdapter adapter = ReflectiveAdapters.unwrap(gson.getAdapter(src.getClass()));
+        if (!(adapter instanceof OrderedAdapter)) {
+            // written by a type hierarchy adapter of the user
+            return JsonElementOrdering.sortedArray(toJsonTree(src, node).getAsJsonArray(), JsonElement::toString);
+        }
+        JsonTreeWriter writer = newTreeWriter();
+        try {
+            writeOrdered(writer, src, (OrderedAdapter) adapter, node, true);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        return writer.get();
+    }
+
+    private JsonTreeWriter newTreeWriter() {
+        JsonTreeWriter writer = new JsonTreeWriter();
+        writer.setLenient(true);
+        writer.setHtmlSafe(gson.htmlSafe());
+        writer.setSerializeNulls(gson.serializeNulls());
+        return writer;
+    }
+
+    /**
+     * @return the serializer of the ordering {@link Gson}, writing the trees the elements of sets and maps are ordered by
+     */
+    private PathAwareSerializer orderingSerializer() {
+        if (orderingGson == null) {
+            return this;
+        }
+        PathAwareSerializer result = orderingSerializer;
+        if (result == null) {
+            result = new PathAwareSerializer(orderingGson.get(), null);
+            orderingSerializer = result;
+        }
+        return result;
+    }
+
+    /**
+     * Writes a value the same way as the runtime type wrapper of {@link Gson} does: the adapter of the runtime type is
+     * used, unless it is reflective and the declared type has a specific adapter.
+     */
+    private void writeValue(JsonWriter out, Object value, Type declaredType, Node node, boolean reordered) throws IOException {
+        TypeAdapter declaredAdapter = gson.getAdapter(TypeToken.get(declaredType));
+        if (value != null && (declaredType == Object.class || declaredType instanceof TypeVariable || declaredType instanceof Class)) {
+            Class<?> runtimeType = value.getClass();
+            if (runtimeType != declaredType) {
+                TypeAdapter runtimeAdapter = gson.getAdapter(runtimeType);
+                if (!ReflectiveAdapters.isReflective(runtimeAdapter) || ReflectiveAdapters.isReflective(declaredAdapter)) {
+                    write(out, value, runtimeType, runtimeAdapter, node, reordered);
+                    return;
+                }
+            }
+        }
+        write(out, value, declaredType, declaredAdapter, node, reordered);
+    }
+
+    private void write(JsonWriter out, Object value, Type type, TypeAdapter adapter, Node node, boolean reordered) throws IOException {
+        TypeAdapter unwrapped = ReflectiveAdapters.unwrap(adapter);
+        if (value == null || node == null || node.getChildren().isEmpty()) {
+            adapter.write(out, value);
+        } else if (ReflectiveAdapters.isReflective(unwrapped)) {
+            writeBean(out, value, TypeToken.get(type), adapter, node);
+        } else if (unwrapped.getClass().getEnclosingClass() == CollectionTypeAdapterFactory.class) {
+            writeCollection(out, (Collection) value, type, node);
+        } else if (unwrapped instanceof ArrayTypeAdapter) {
+            writeArray(out, value, type, node);
+        } else if (unwrapped instanceof OrderedAdapter) {
+            writeOrdered(out, value, (OrderedAdapter) unwrapped, node, reordered);
+        } else {
+            adapter.write(out, value);
+        }
+    }
+
+    private void writeBean(JsonWriter out, Object bean, TypeToken<?> type, TypeAdapter adapter, Node node) throws IOException {
+        List<BoundField> fields = boundFields.computeIfAbsent(type, this::getBoundFields);
+        if (fields == null) {
+            adapter.write(out, bean);
+            return;
+        }
+        out.beginObject();
+        for (BoundField field : fields) {
+            Node child = node.getChild(field.pathName);
+            if (child != null && child.isIgnored()) {
+                continue;
+            }
+            Object fieldValue = field.get(bean);
+            if (fieldValue != bean) {
+                out.name(field.name);
+                writeValue(out, fieldValue, field.type, child, field.reordered);
+            }
+        }
+        out.endObject();
+    }
+
+    /**
+     * Writes a set or a map without the ignored fields. A reordered one is ordered by the printed form of its elements
+     * without the ignored fields, the others by their fully serialised elements.
+     */
+    private void writeOrdered(JsonWriter out, Object value, OrderedAdapter adapter, Node node, boolean reordered) throws IOException {
+        PathAwareSerializer ordering = orderingSerializer();
+        JsonArray array;
+        if (reordered) {
+            ElementSerializer orderedPrunedSerializer = (element, name) -> ordering.toJsonTree(element, childOf(node, name));
+            array = JsonElementOrdering.sortedArray(adapter.toJsonArray(value, orderedPrunedSerializer, null), JsonElement::toString);
+            if (ordering != this) {
+                removeMarkers(array);
+            }
+        } else {
+            Gson fullOrdering = adapter.orderingGson();
+            ElementSerializer prunedSerializer = (element, name) -> toJsonTree(element, childOf(node, name));
+            array = adapter.toJsonArray(value, (element, name) -> fullOrdering.toJsonTree(element), prunedSerializer);
+        }
+        treeAdapter.write(out, array);
+    }
+
+    private static Node childOf(Node node, String name) {
+        return name == null ? node : node.getChild(name);
+    }
+
+    private void writeCollection(JsonWriter out, Collection<?> collection, Type type, Node node) throws IOException {
+        Type elementType = $Gson$Types.getCollectionElementType(type, $Gson$Types.getRawType(type));
+        out.beginArray();
+        for (Object element : collection) {
+            writeValue(out, element, elementType, node, false);
+        }
+        out.endArray();
+    }
+
+    private void writeArray(JsonWriter out, Object array, Type type, Node node) throws IOException {
+        Type componentType = $Gson$Types.getArrayComponentType(type);
+        out.beginArray();
+        for (int i = 0, length = Array.getLength(array); i < length; i++) {
+            writeValue(out, Array.get(array, i), componentType, node, false);
+        }
+        out.endArray();
+    }
+
+    /**
+     * Collects the serialised fields the same way as the reflective adapter of {@link Gson}, or returns null if a field
+     * has its own adapter, in which case the bean is left to {@link Gson}.
+     */
+    private List<BoundField> getBoundFields(TypeToken<?> type) {
+        List<BoundField> result = new ArrayList<>();
+        Class<?> raw = type.getRawType();
+        if (raw.isInterface()) {
+            return result;
+        }
+        while (raw != Object.class) {
+            // static fields too, the excluder decides about them like for the reflective adapter
+            for (Field field : raw.getDeclaredFields()) {
+                if (excluder.excludeClass(field.getType(), true) || excluder.excludeField(field, true)) {
+                    continue;
+                }
+                if (field.isAnnotationPresent(JsonAdapter.class)) {
+                    return null;
+                }
+                field.setAccessible(true);
+                Type fieldType = $Gson$Types.resolve(type.getType(), raw, field.getGenericType());
+                result.add(new BoundField(field, getFieldName(field), fieldType));
+            }
+            type = TypeToken.get($Gson$Types.resolve(type.getType(), raw, raw.getGenericSuperclass()));
+            raw = type.getRawType();
+        }
+        return result;
+    }
+
+    private String getFieldName(Field field) {
+        SerializedName serializedName = field.getAnnotation(SerializedName.class);
+        return serializedName == null ? gson.fieldNamingStrategy().translateName(field) : serializedName.value();
+    }
+
+    private static final class BoundField {
+        private final Field field;
+        private final String name;
+        private final String pathName;
+        private final Type type;
+        private final boolean reordered;
+
+        BoundField(Field field, String name, Type type) {
+            this.field = field;
+            this.name = name;
+            this.pathName = name.startsWith(MARKER) ? name.substring(MARKER.length()) : name;
+            this.type = type;
+            this.reordered = Set.class.isAssignableFrom(field.getType()) || Map.class.isAssignableFrom(field.getType());
+        }
+
+        Object get(Object bean) {
+            try {
+                return field.get(bean);
+            } catch (IllegalAccessException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import java.util.Arrays;
+
+import com.github.karsaig.approvalcrest.ByteArrayEncoding;
+import com.github.karsaig.approvalcrest.NumericTolerance;
+import com.github.karsaig.approvalcrest.matcher.typeadapters.PrimitiveArrayTypeAdapterFactory;
+
+/**
+ * Compares arrays of int, long, double, float and byte values element by element, without serialising them to Json
+ * trees first. The verdict is the same as the one of {@link JsonTreeComparator} on their trees, but only the first
+ * difference is reported. The values can be compared within a {@link NumericTolerance}, checked only for the values
+ * that are not equal.
+ */
+final class PrimitiveArrayComparator {
+
+    private PrimitiveArrayComparator() {
+    }
+
+    /**
+     * @param expected the expected object
+     * @param actual   the actual object
+     * @return true if both objects are primitive arrays of the same type supported by the comparator
+     */
+    static boolean canCompare(Object expected, Object actual) {
+        if (expected == null || actual == null || expected.getClass() != actual.getClass()) {
+            return false;
+        }
+        Class<?> type = expected.getClass();
+        return type == int[].class || type == long[].class || type == double[].class || type == float[].class || type == byte[].class;
+    }
+
+    /**
+     * Finds the first difference of two arrays accepted by {@link #canCompare(Object, Object)}.
+     *
+     * @param expected the expected array
+     * @param actual   the actual array
+     * @return the description of the first difference in the format of {@link JsonTreeComparator}, or null if the
+     * arrays are equal
+     */
+    static String firstDifference(Object expected, Object actual) {
+        return firstDifference(expected, actual, null, ByteArrayEncoding.NUMBERS);
+    }
+
+    /**
+     * Finds the first difference of two arrays accepted by {@link #canCompare(Object, Object)}, comparing the values
+     * within the tolerance. Byte arrays written as a single string are compared exactly, and their difference is
+     * described on the strings, the values seen in the Json.
+     *
+     * @param expected          the expected array
+     * @param actual            the actual array
+     * @param tolerance         the tolerance of the values, or null to compare them exactly
+     * @param byteArrayEncoding how byte arrays are written to Json
+     * @return the description of the first difference in the format of {@link JsonTreeComparator}, or null if the
+     * arrays are equal
+     */
+    static String firstDifference(Object expected, Object actual, NumericTolerance tolerance, ByteArrayEncoding byteArrayEncoding) {
+        if (expected instanceof int[]) {
+            return firstDifference((int[]) expected, (int[]) actual, tolerance);
+        } else if (expected instanceof long[]) {
+            return firstDifference((long[]) expected, (long[]) actual, tolerance);
+        } else if (expected instanceof double[]) {
+            return firstDifference((double[]) expected, (double[]) actual, tolerance);
+        } else if (expected instanceof float[]) {
+            return firstDifference((float[]) expected, (float[]) actual, tolerance);
+        }
+        if (byteArrayEncoding != ByteArrayEncoding.NUMBERS) {
+            return encodedDifference((byte[]) expected, (byte[]) actual, byteArrayEncoding);
+        }
+        return firstDifference((byte[]) expected, (byte[]) actual, tolerance);
+    }
+
+    private static String firstDifference(int[] expected, int[] actual, NumericTolerance tolerance) {
+        if (expected.length != actual.length) {
+            return sizeMessage(expected.length, actual.length);
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != actual[i] && !isWithin(tolerance, expected[i], actual[i])) {
+                return failureMessage(i, Integer.toString(expected[i]), Integer.toString(actual[i]));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Longs are compared as doubles, the way the Json comparison compares every number.
+     */
+    private static String firstDifference(long[] expected, long[] actual, NumericTolerance tolerance) {
+        if (expected.length != actual.length) {
+            return sizeMessage(expected.length, actual.length);
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if ((double) expected[i] != (double) actual[i] && !isWithin(tolerance, expected[i], actual[i])) {
+                return failureMessage(i, Long.toString(expected[i]), Long.toString(actual[i]));
+            }
+        }
+        return null;
+    }
+
+    private static String firstDifference(double[] expected, double[] actual, NumericTolerance tolerance) {
+        if (expected.length != actual.length) {
+            return sizeMessage(expected.length, actual.length);
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != actual[i] && !isWithin(tolerance, expected[i], actual[i])) {
+                return failureMessage(i, Double.toString(expected[i]), Double.toString(actual[i]));
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Floats are described, and compared within the tolerance, by the double their Json text is parsed to.
+     */
+    private static String firstDifference(float[] expected, float[] actual, NumericTolerance tolerance) {
+        if (expected.length != actual.length) {
+            return sizeMessage(expected.length, actual.length);
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != actual[i] && (tolerance == null
+                    || !tolerance.isWithin(Double.parseDouble(Float.toString(expected[i])), Double.parseDouble(Float.toString(actual[i]))))) {
+                return failureMessage(i, Double.toString(Double.parseDouble(Float.toString(expected[i]))),
+                        Double.toString(Double.parseDouble(Float.toString(actual[i]))));
+            }
+        }
+        return null;
+    }
+
+    private static String firstDifference(byte[] expected, byte[] actual, NumericTolerance tolerance) {
+        if (expected.length != actual.length) {
+            return sizeMessage(expected.length, actual.length);
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if (expected[i] != actual[i] && !isWithin(tolerance, expected[i], actual[i])) {
+                return failureMessage(i, Byte.toString(expected[i]), Byte.toString(actual[i]));
+            }
+        }
+        return null;
+    }
+
+    private static String encodedDifference(byte[] expected, byte[] actual, ByteArrayEncoding byteArrayEncoding) {
+        if (Arrays.equals(expected, actual)) {
+            return null;
+        }
+        return "\nExpected: " + PrimitiveArrayTypeAdapterFactory.encode(expected, byteArrayEncoding)
+                + "\n     got: " + PrimitiveArrayTypeAdapterFactory.encode(actual, byteArrayEncoding) + "\n";
+    }
+
+    private static boolean isWithin(NumericTolerance tolerance, double expected, double actual) {
+        return tolerance != null && tolerance.isWithin(expected, actual);
+    }
+
+    private static String sizeMessage(int expectedSize, int actualSize) {
+        return "[]: Expected " + expectedSize + " values but got " + actualSize;
+    }
+
+    private static String failureMessage(int index, String expected, String actual) {
+        return "[" + index + "]\nExpected: " + expected + "\n     got: " + actual + "\n";
+    }
+}
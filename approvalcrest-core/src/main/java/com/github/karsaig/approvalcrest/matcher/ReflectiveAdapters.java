@@ -0,0 +1,63 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import static org.apache.commons.lang3.ClassUtils.getAllInterfaces;
+
+import com.github.karsaig.approvalcrest.matcher.CircularReferenceTrackingTypeAdapterFactory.TrackingAdapter;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.internal.bind.ReflectiveTypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+
+/**
+ * Tells apart the adapters writing the fields of a bean the way the reflective adapter of {@link Gson} does from the
+ * ones registered for a type, which {@link Gson} prefers over a reflective adapter of a more specific runtime type.
+ */
+final class ReflectiveAdapters {
+
+    private ReflectiveAdapters() {
+    }
+
+    /**
+     * @param adapter the adapter to check
+     * @return true if the adapter, or the adapter it wraps to track circular references, writes the fields of beans
+     */
+    static boolean isReflective(TypeAdapter<?> adapter) {
+        TypeAdapter<?> unwrapped = unwrap(adapter);
+        return unwrapped instanceof ReflectiveTypeAdapterFactory.Adapter || unwrapped instanceof AccessorTypeAdapterFactory.Adapter;
+    }
+
+    /**
+     * @param adapter the adapter to unwrap
+     * @return the adapter wrapped to track circular references, or the adapter itself
+     */
+    static TypeAdapter<?> unwrap(TypeAdapter<?> adapter) {
+        return adapter instanceof TrackingAdapter ? ((TrackingAdapter<?>) adapter).getDelegate() : adapter;
+    }
+
+    /**
+     * Checks whether a super class or an interface of the type has an adapter registered. {@link Gson} only recognises
+     * its own reflective adapter as reflective, so a factory replacing or wrapping the reflective adapter of such a type
+     * would make a field declared with the super type written by the adapter of the runtime type, instead of the one
+     * registered.
+     *
+     * @param gson     the {@link Gson} instance looking up the adapters
+     * @param skipPast the factory asking, the adapters are looked up as if it was not registered
+     * @param type     the type to check
+     * @return true if a super type has an adapter other than a reflective one
+     */
+    static boolean hasCustomisedSupertype(Gson gson, TypeAdapterFactory skipPast, Class<?> type) {
+        for (Class<?> superclass = type.getSuperclass(); superclass != null && superclass != Object.class; superclass = superclass.getSuperclass()) {
+            if (!isReflective(gson.getDelegateAdapter(skipPast, TypeToken.get(superclass)))) {
+                return true;
+            }
+        }
+        for (Class<?> anInterface : getAllInterfaces(type)) {
+            if (!isReflective(gson.getDelegateAdapter(skipPast, TypeToken.get(anInterface)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
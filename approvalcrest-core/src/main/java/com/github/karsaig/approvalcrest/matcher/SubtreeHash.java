@@ -0,0 +1,316 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * 128 bit hash of a Json subtree, together with the hashes of its elements or members, so two trees can be compared by
+ * descending only into the subtrees with different hashes.
+ * <p>
+ * Subtrees equal for {@link JsonTreeComparator} have the same hash: object members are hashed regardless of their
+ * order, members with null value are left out and numbers are hashed by their double value. The elements of the arrays
+ * at unordered array paths are hashed regardless of their order too. Arrays and objects with more than
+ * {@value #PARALLEL_THRESHOLD} values are hashed in parallel on the common {@link ForkJoinPool}.
+ */
+final class SubtreeHash {
+    private static final int PARALLEL_THRESHOLD = 256;
+    private static final long NULL = 0x6a09e667f3bcc908L;
+    private static final long TRUE = 0xbb67ae8584caa73bL;
+    private static final long FALSE = 0x3c6ef372fe94f82bL;
+    private static final long STRING = 0xa54ff53a5f1d36f1L;
+    private static final long NUMBER = 0x510e527fade682d1L;
+    private static final long ARRAY = 0x9b05688c2b3e6c1fL;
+    private static final long UNORDERED_ARRAY = 0xcbbb9d5dc1059ed8L;
+    private static final long OBJECT = 0x1f83d9abfb41bd6bL;
+    private static final long SECOND_LANE = 0x5be0cd19137e2179L;
+    private static final long MULTIPLIER = 0x9e3779b97f4a7c15L;
+
+    private final long high;
+    private final long low;
+    private final SubtreeHash[] elements;
+    private final Map<String, SubtreeHash> members;
+
+    private SubtreeHash(long high, long low, SubtreeHash[] elements, Map<String, SubtreeHash> members) {
+        this.high = high;
+        this.low = low;
+        this.elements = elements;
+        this.members = members;
+    }
+
+    /**
+     * Hashes two trees at the same time.
+     *
+     * @param expected            the expected tree
+     * @param actual              the actual tree
+     * @param path                the path of the trees without array indices, empty for the root
+     * @param unorderedArrayPaths the paths of the arrays with elements in any order
+     * @return the hashes of the expected and the actual tree
+     */
+    static SubtreeHash[] of(JsonElement expected, JsonElement actual, String path, Set<String> unorderedArrayPaths) {
+        // paths are only built if they are looked up
+        String start = unorderedArrayPaths.isEmpty() ? null : path;
+        return ForkJoinPool.commonPool().invoke(new RecursiveTask<SubtreeHash[]>() {
+            @Override
+            protected SubtreeHash[] compute() {
+                ForkJoinTask<SubtreeHash> expectedHash = new HashTask(expected, start, unorderedArrayPaths).fork();
+                SubtreeHash actualHash = hash(actual, start, unorderedArrayPaths);
+                return new SubtreeHash[]{expectedHash.join(), actualHash};
+            }
+        });
+    }
+
+    /**
+     * @param other the hash of the other subtree
+     * @return true if the subtrees have the same hash, so they are considered equal
+     */
+    boolean isSameAs(SubtreeHash other) {
+        return high == other.high && low == other.low;
+    }
+
+    /**
+     * @param index the index of the element
+     * @return the hash of the element of a hashed array
+     */
+    SubtreeHash element(int index) {
+        return elements[index];
+    }
+
+    /**
+     * @param name the name of the member
+     * @return the hash of the member of a hashed object, or null if the member is absent or null
+     */
+    SubtreeHash member(String name) {
+        return members.get(name);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof SubtreeHash && isSameAs((SubtreeHash) other);
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) high;
+    }
+
+    private static SubtreeHash hash(JsonElement element, String path, Set<String> unorderedArrayPaths) {
+        if (element.isJsonArray()) {
+            return hashArray(element.getAsJsonArray(), path, unorderedArrayPaths);
+        }
+        if (element.isJsonObject()) {
+            return hashObject(element.getAsJsonObject(), path, unorderedArrayPaths);
+        }
+        if (element.isJsonNull()) {
+            return leaf(NULL);
+        }
+        return hashPrimitive(element.getAsJsonPrimitive());
+    }
+
+    private static SubtreeHash hashArray(JsonArray array, String path, Set<String> unorderedArrayPaths) {
+        SubtreeHash[] elements = new SubtreeHash[array.size()];
+        List<JsonElement> values = new ArrayList<>(elements.length);
+        for (JsonElement element : array) {
+            values.add(element);
+        }
+        hashAll(values, elements, path, null, unorderedArrayPaths);
+        if (path != null && unorderedArrayPaths.contains(path)) {
+            return unordered(elements);
+        }
+        long high = ARRAY;
+        long low = ARRAY ^ SECOND_LANE;
+        for (SubtreeHash element : elements) {
+            high = (high ^ element.high) * MULTIPLIER;
+            low = (low ^ element.low) * MULTIPLIER + 1;
+        }
+        return new SubtreeHash(mix(high ^ elements.length), mix(low ^ elements.length), elements, null);
+    }
+
+    /**
+     * The elements are combined by addition, so their order does not change the hash.
+     */
+    private static SubtreeHash unordered(SubtreeHash[] elements) {
+        long high = 0;
+        long low = 0;
+        for (SubtreeHash element : elements) {
+            high += mix(element.high);
+            low += mix(element.low);
+        }
+        return new SubtreeHash(mix(high ^ UNORDERED_ARRAY ^ elements.length), mix(low ^ UNORDERED_ARRAY ^ SECOND_LANE ^ elements.length),
+                elements, null);
+    }
+
+    /**
+     * The members are combined by addition, so their order does not change the hash.
+     */
+    private static SubtreeHash hashObject(JsonObject object, String path, Set<String> unorderedArrayPaths) {
+        List<String> names = new ArrayList<>(object.size());
+        List<JsonElement> values = new ArrayList<>(object.size());
+        for (Entry<String, JsonElement> member : object.entrySet()) {
+            if (!member.getValue().isJsonNull()) {
+                names.add(member.getKey());
+                values.add(member.getValue());
+            }
+        }
+        SubtreeHash[] hashes = new SubtreeHash[values.size()];
+        hashAll(values, hashes, path, names, unorderedArrayPaths);
+        Map<String, SubtreeHash> members = new HashMap<>();
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < hashes.length; i++) {
+            SubtreeHash name = hashString(STRING, names.get(i));
+            high += mix(name.high ^ hashes[i].high * MULTIPLIER);
+            low += mix(name.low ^ hashes[i].low * MULTIPLIER);
+            members.put(names.get(i), hashes[i]);
+        }
+        return new SubtreeHash(mix(high ^ OBJECT ^ hashes.length), mix(low ^ OBJECT ^ SECOND_LANE ^ hashes.length), null,
+                Collections.unmodifiableMap(members));
+    }
+
+    /**
+     * Hashes the elements of an array, or the members of an object if their names are given.
+     */
+    private static void hashAll(List<JsonElement> values, SubtreeHash[] hashes, String path, List<String> names, Set<String> unorderedArrayPaths) {
+        if (values.size() > PARALLEL_THRESHOLD && ForkJoinTask.inForkJoinPool()) {
+            new RangeTask(values, hashes, path, names, unorderedArrayPaths, 0, values.size()).invoke();
+        } else {
+            hashRange(values, hashes, path, names, unorderedArrayPaths, 0, values.size());
+        }
+    }
+
+    private static void hashRange(List<JsonElement> values, SubtreeHash[] hashes, String path, List<String> names,
+                                  Set<String> unorderedArrayPaths, int from, int to) {
+        for (int i = from; i < to; i++) {
+            hashes[i] = hash(values.get(i), childPath(path, names == null ? null : names.get(i)), unorderedArrayPaths);
+        }
+    }
+
+    private static String childPath(String path, String name) {
+        if (path == null || name == null) {
+            return path;
+        }
+        return path.isEmpty() ? name : path + "." + name;
+    }
+
+    private static SubtreeHash hashPrimitive(JsonPrimitive primitive) {
+        if (primitive.isBoolean()) {
+            return leaf(primitive.getAsBoolean() ? TRUE : FALSE);
+        }
+        if (primitive.isNumber()) {
+            double value = doubleValue(primitive.getAsNumber());
+            // 0.0 and -0.0 are equal numbers
+            return leaf(NUMBER ^ Double.doubleToLongBits(value == 0.0 ? 0.0 : value));
+        }
+        return hashString(STRING, primitive.getAsString());
+    }
+
+    /**
+     * The double the text of the number parses to, the same value {@link JsonTreeComparator} compares. The text of a
+     * lazily parsed number is parsed directly, without a {@link java.math.BigDecimal}.
+     *
+     * @param number the number of a Json primitive
+     * @return the double value of the number
+     */
+    static double doubleValue(Number number) {
+        Class<?> type = number.getClass();
+        if (type == Integer.class || type == Long.class || type == Short.class || type == Byte.class) {
+            return (double) number.longValue();
+        }
+        if (type == Double.class) {
+            return number.doubleValue();
+        }
+        return Double.parseDouble(number.toString());
+    }
+
+    private static SubtreeHash hashString(long seed, String value) {
+        long high = seed;
+        long low = seed ^ SECOND_LANE;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            char c = value.charAt(i);
+            high = (high ^ c) * MULTIPLIER;
+            low = (low ^ c) * 0xc2b2ae3d27d4eb4fL;
+        }
+        return new SubtreeHash(mix(high ^ value.length()), mix(low ^ value.length()), null, null);
+    }
+
+    private static SubtreeHash leaf(long value) {
+        return new SubtreeHash(mix(value), mix(value ^ SECOND_LANE), null, null);
+    }
+
+    /**
+     * The finalizer of MurmurHash3, spreading every bit of the input over the whole output.
+     */
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static final class HashTask extends RecursiveTask<SubtreeHash> {
+        private final JsonElement element;
+        private final String path;
+        private final Set<String> unorderedArrayPaths;
+
+        private HashTask(JsonElement element, String path, Set<String> unorderedArrayPaths) {
+            this.element = element;
+            this.path = path;
+            this.unorderedArrayPaths = unorderedArrayPaths;
+        }
+
+        @Override
+        protected SubtreeHash compute() {
+            return hash(element, path, unorderedArrayPaths);
+        }
+    }
+
+    /**
+     * Hashes a range of values, splitting it in halves until it is small enough to be hashed by a single thread.
+     */
+    private static final class RangeTask extends RecursiveAction {
+        private final List<JsonElement> values;
+        private final SubtreeHash[] hashes;
+        private final String path;
+        private final List<String> names;
+        private final Set<String> unorderedArrayPaths;
+        private final int from;
+        private final int to;
+
+        private RangeTask(List<JsonElement> values, SubtreeHash[] hashes, String path, List<String> names,
+                          Set<String> unorderedArrayPaths, int from, int to) {
+            this.values = values;
+            this.hashes = hashes;
+            this.path = path;
+            this.names = names;
+            this.unorderedArrayPaths = unorderedArrayPaths;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                hashRange(values, hashes, path, names, unorderedArrayPaths, from, to);
+            } else {
+                int middle = (from + to) >>> 1;
+                invokeAll(new RangeTask(values, hashes, path, names, unorderedArrayPaths, from, middle),
+                        new RangeTask(values, hashes, path, names, unorderedArrayPaths, middle, to));
+            }
+        }
+    }
+}
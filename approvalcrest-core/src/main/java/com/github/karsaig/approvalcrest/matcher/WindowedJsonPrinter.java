@@ -0,0 +1,359 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Prints a Json tree with the layout of the pretty printing of {@link Gson}, keeping only the lines around the values
+ * at the given paths. Every run of lines left out is replaced by a single {@value #ELISION} line, so the windows of the
+ * expected and the actual Json still line up in a diff viewer. The whole Json is never held in memory, only the lines
+ * kept and the lines before the next value at a path. The last lines are always kept, they close the open objects and
+ * arrays.
+ * <p>
+ * Paths are in the format of {@link JsonTreeComparator}, e.g. {@code beans[2].name}. A path missing from the tree is
+ * shown at its closest ancestor in the tree.
+ */
+final class WindowedJsonPrinter extends Writer {
+    static final String ELISION = "...";
+
+    private final int contextLines;
+    private final StringBuilder printed = new StringBuilder();
+    private final StringBuilder line = new StringBuilder();
+    private final Deque<String> linesBefore = new ArrayDeque<>();
+    private boolean lineAtPath;
+    private boolean nextLineAtPath;
+    private boolean elided;
+    private int linesAfter;
+
+    private WindowedJsonPrinter(int contextLines, boolean firstLineAtPath) {
+        this.contextLines = contextLines;
+        this.lineAtPath = firstLineAtPath;
+    }
+
+    /**
+     * @param gson         the {@link Gson} instance printing the tree
+     * @param json         the tree to print
+     * @param paths        the paths of the values to show
+     * @param contextLines the number of lines shown before and after the first line of each value
+     * @return the lines around the values, with the lines left out replaced by {@value #ELISION} lines
+     */
+    static String toJson(Gson gson, JsonElement json, Collection<String> paths, int contextLines) {
+        Set<String> shownPaths = new HashSet<>();
+        for (String path : paths) {
+            shownPaths.add(closestPath(json, path));
+        }
+        WindowedJsonPrinter printer = new WindowedJsonPrinter(contextLines, shownPaths.contains(""));
+        PathTrackingWriter writer = new PathTrackingWriter(printer, shownPaths);
+        writer.setIndent("  ");
+        writer.setLenient(true);
+        writer.setHtmlSafe(gson.htmlSafe());
+        writer.setSerializeNulls(gson.serializeNulls());
+        try {
+            gson.getAdapter(JsonElement.class).write(writer, json);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+        return printer.finish();
+    }
+
+    /**
+     * @return the longest prefix of the path present in the tree, members with null value are absent
+     */
+    private static String closestPath(JsonElement json, String path) {
+        JsonElement current = json;
+        int end = 0;
+        while (end < path.length()) {
+            if (path.charAt(end) == '[') {
+                int close = path.indexOf(']', end);
+                if (close == -1 || !current.isJsonArray()) {
+                    break;
+                }
+                int index;
+                try {
+                    index = Integer.parseInt(path.substring(end + 1, close));
+                } catch (NumberFormatException e) {
+                    break;
+                }
+                if (index < 0 || index >= current.getAsJsonArray().size()) {
+                    break;
+                }
+                current = current.getAsJsonArray().get(index);
+                end = close + 1;
+            } else {
+                int start = path.charAt(end) == '.' ? end + 1 : end;
+                int nameEnd = start;
+                while (nameEnd < path.length() && path.charAt(nameEnd) != '.' && path.charAt(nameEnd) != '[') {
+                    nameEnd++;
+                }
+                if (!current.isJsonObject()) {
+                    break;
+                }
+                JsonObject object = current.getAsJsonObject();
+                JsonElement member = object.get(path.substring(start, nameEnd));
+                if (member == null || member.isJsonNull()) {
+                    break;
+                }
+                current = member;
+                end = nameEnd;
+            }
+        }
+        return path.substring(0, end);
+    }
+
+    @Override
+    public void write(char[] buffer, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (buffer[i] == '\n') {
+                endLine();
+                lineAtPath = nextLineAtPath;
+            } else {
+                line.append(buffer[i]);
+            }
+        }
+    }
+
+    @Override
+    public void write(String text, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            char c = text.charAt(i);
+            if (c == '\n') {
+                endLine();
+                lineAtPath = nextLineAtPath;
+            } else {
+                line.append(c);
+            }
+        }
+    }
+
+    @Override
+    public void flush() {
+        // the lines are kept until the tree is printed
+    }
+
+    @Override
+    public void close() {
+        // the lines are kept until the tree is printed
+    }
+
+    private void endLine() {
+        String text = line.toString();
+        line.setLength(0);
+        if (lineAtPath) {
+            if (elided) {
+                print(ELISION);
+                elided = false;
+            }
+            while (!linesBefore.isEmpty()) {
+                print(linesBefore.removeFirst());
+            }
+            print(text);
+            linesAfter = contextLines;
+        } else if (linesAfter > 0) {
+            print(text);
+            linesAfter--;
+        } else {
+            linesBefore.addLast(text);
+            if (linesBefore.size() > contextLines) {
+                linesBefore.removeFirst();
+                elided = true;
+            }
+        }
+    }
+
+    private void print(String text) {
+        if (printed.length() != 0) {
+            printed.append('\n');
+        }
+        printed.append(text);
+    }
+
+    private String finish() {
+        endLine();
+        // the last lines close the containers of the windows
+        if (elided) {
+            print(ELISION);
+        }
+        while (!linesBefore.isEmpty()) {
+            print(linesBefore.removeFirst());
+        }
+        return printed.toString();
+    }
+
+    /**
+     * Tells the printer which lines start a value at one of the paths: a value starts on the line the writer begins
+     * while writing it.
+     */
+    private static final class PathTrackingWriter extends JsonWriter {
+        private final WindowedJsonPrinter printer;
+        private final Set<String> paths;
+        private final List<String> containerPaths = new ArrayList<>();
+        private final List<Integer> nextIndices = new ArrayList<>();
+        private String name;
+
+        private PathTrackingWriter(WindowedJsonPrinter printer, Set<String> paths) {
+            super(printer);
+            this.printer = printer;
+            this.paths = paths;
+        }
+
+        @Override
+        public JsonWriter beginArray() throws IOException {
+            String path = startValue();
+            super.beginArray();
+            endValue();
+            containerPaths.add(path);
+            nextIndices.add(0);
+            return this;
+        }
+
+        @Override
+        public JsonWriter endArray() throws IOException {
+            endContainer();
+            return super.endArray();
+        }
+
+        @Override
+        public JsonWriter beginObject() throws IOException {
+            String path = startValue();
+            super.beginObject();
+            endValue();
+            containerPaths.add(path);
+            nextIndices.add(-1);
+            return this;
+        }
+
+        @Override
+        public JsonWriter endObject() throws IOException {
+            endContainer();
+            return super.endObject();
+        }
+
+        @Override
+        public JsonWriter name(String name) throws IOException {
+            super.name(name);
+            this.name = name;
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(String value) throws IOException {
+            if (value == null) {
+                return nullValue();
+            }
+            startValue();
+            super.value(value);
+            endValue();
+            return this;
+        }
+
+        @Override
+        public JsonWriter jsonValue(String value) throws IOException {
+            if (value == null) {
+                return nullValue();
+            }
+            startValue();
+            super.jsonValue(value);
+            endValue();
+            return this;
+        }
+
+        @Override
+        public JsonWriter nullValue() throws IOException {
+            startValue();
+            super.nullValue();
+            endValue();
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(boolean value) throws IOException {
+            startValue();
+            super.value(value);
+            endValue();
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(Boolean value) throws IOException {
+            if (value == null) {
+                return nullValue();
+            }
+            startValue();
+            super.value(value);
+            endValue();
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(double value) throws IOException {
+            startValue();
+            super.value(value);
+            endValue();
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(long value) throws IOException {
+            startValue();
+            super.value(value);
+            endValue();
+            return this;
+        }
+
+        @Override
+        public JsonWriter value(Number value) throws IOException {
+            if (value == null) {
+                return nullValue();
+            }
+            startValue();
+            super.value(value);
+            endValue();
+            return this;
+        }
+
+        /**
+         * @return the path of the value written next
+         */
+        private String startValue() {
+            String path;
+            int depth = containerPaths.size();
+            if (depth == 0) {
+                path = "";
+            } else {
+                String containerPath = containerPaths.get(depth - 1);
+                int index = nextIndices.get(depth - 1);
+                if (index == -1) {
+                    path = containerPath.isEmpty() ? name : containerPath + "." + name;
+                } else {
+                    path = containerPath + "[" + index + "]";
+                    nextIndices.set(depth - 1, index + 1);
+                }
+            }
+            name = null;
+            printer.nextLineAtPath = paths.contains(path);
+            return path;
+        }
+
+        private void endValue() {
+            printer.nextLineAtPath = false;
+        }
+
+        private void endContainer() {
+            containerPaths.remove(containerPaths.size() - 1);
+            nextIndices.remove(nextIndices.size() - 1);
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.github.karsaig.approvalcrest.matcher.typeadapters;
+
+import java.io.IOException;
+import java.util.Base64;
+
+import com.github.karsaig.approvalcrest.ByteArrayEncoding;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.internal.bind.JsonTreeWriter;
+import com.google.gson.internal.bind.TypeAdapters;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+/**
+ * Writes arrays of int, long, double, float and byte values straight to the output, instead of boxing every element for
+ * the array adapter of {@link Gson}. The numbers are written the same way as by the built-in adapters of the element
+ * types, so an array is only written by this factory while those adapters are in use. Byte arrays can also be written as
+ * a single string, see {@link ByteArrayEncoding}.
+ */
+@SuppressWarnings("unchecked")
+public class PrimitiveArrayTypeAdapterFactory implements TypeAdapterFactory {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private final ByteArrayEncoding byteArrayEncoding;
+
+    public PrimitiveArrayTypeAdapterFactory(ByteArrayEncoding byteArrayEncoding) {
+        this.byteArrayEncoding = byteArrayEncoding;
+    }
+
+    @Override
+    public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+        Class<?> raw = type.getRawType();
+        if (raw == int[].class && hasBuiltInAdapter(gson, int.class, Integer.class, TypeAdapters.INTEGER)) {
+            return (TypeAdapter<T>) new IntArrayAdapter();
+        } else if (raw == long[].class && hasBuiltInAdapter(gson, long.class, Long.class, TypeAdapters.LONG)) {
+            return (TypeAdapter<T>) new LongArrayAdapter();
+        } else if (raw == double[].class && hasBuiltInFloatingPointAdapter(gson, double.class, Double.class)) {
+            return (TypeAdapter<T>) new DoubleArrayAdapter(gson.getAdapter(Double.class));
+        } else if (raw == float[].class && hasBuiltInFloatingPointAdapter(gson, float.class, Float.class)) {
+            return (TypeAdapter<T>) new FloatArrayAdapter(gson.getAdapter(Float.class));
+        } else if (raw == byte[].class) {
+            return createByteArrayAdapter(gson);
+        }
+        return null;
+    }
+
+    /**
+     * @param adapter the adapter to check
+     * @return true if the adapter was created by this factory
+     */
+    public static boolean isPrimitiveArrayAdapter(TypeAdapter<?> adapter) {
+        return adapter instanceof SerialisingAdapter;
+    }
+
+    /**
+     * @param bytes    the bytes to encode
+     * @param encoding the encoding of the bytes, other than {@link ByteArrayEncoding#NUMBERS}
+     * @return the string the bytes are written as
+     */
+    public static String encode(byte[] bytes, ByteArrayEncoding encoding) {
+        switch (encoding) {
+            case BASE64:
+                return Base64.getEncoder().encodeToString(bytes);
+            case HEX:
+                return toHex(bytes);
+            default:
+                throw new IllegalArgumentException("Byte arrays are not written as a string with " + encoding);
+        }
+    }
+
+    private <T> TypeAdapter<T> createByteArrayAdapter(Gson gson) {
+        if (byteArrayEncoding != ByteArrayEncoding.NUMBERS) {
+            return (TypeAdapter<T>) new EncodedByteArrayAdapter(byteArrayEncoding);
+        }
+        return hasBuiltInAdapter(gson, byte.class, Byte.class, TypeAdapters.BYTE) ? (TypeAdapter<T>) new ByteArrayAdapter() : null;
+    }
+
+    /**
+     * The array adapter writes the elements with the adapter of the wrapper type, as that is their runtime type, so
+     * both have to be the built-in one.
+     */
+    private static boolean hasBuiltInAdapter(Gson gson, Class<?> primitive, Class<?> wrapper, TypeAdapter<?> builtIn) {
+        return gson.getAdapter(primitive) == builtIn && gson.getAdapter(wrapper) == builtIn;
+    }
+
+    /**
+     * The built-in adapters of floating point numbers are created by {@link Gson}, rejecting NaN and infinity unless
+     * special floating point values are enabled.
+     */
+    private static boolean hasBuiltInFloatingPointAdapter(Gson gson, Class<?> primitive, Class<?> wrapper) {
+        TypeAdapter<?> adapter = gson.getAdapter(wrapper);
+        boolean builtIn = adapter == TypeAdapters.DOUBLE || adapter == TypeAdapters.FLOAT || adapter.getClass().getEnclosingClass() == Gson.class;
+        return builtIn && gson.getAdapter(primitive) == adapter;
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xf];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xf];
+        }
+        return new String(hex);
+    }
+
+    private abstract static class SerialisingAdapter<T> extends TypeAdapter<T> {
+
+        @Override
+        public void write(JsonWriter out, T value) throws IOException {
+            if (value == null) {
+                out.nullValue();
+            } else {
+                writeArray(out, value);
+            }
+        }
+
+        abstract void writeArray(JsonWriter out, T value) throws IOException;
+
+        @Override
+        public T read(JsonReader in) throws IOException {
+            throw new UnsupportedOperationException("Only for serialization!");
+        }
+    }
+
+    private static final class IntArrayAdapter extends SerialisingAdapter<int[]> {
+
+        @Override
+        void writeArray(JsonWriter out, int[] array) throws IOException {
+            out.beginArray();
+            for (int value : array) {
+                out.value(value);
+            }
+            out.endArray();
+        }
+    }
+
+    private static final class LongArrayAdapter extends SerialisingAdapter<long[]> {
+
+        @Override
+        void writeArray(JsonWriter out, long[] array) throws IOException {
+            out.beginArray();
+            for (long value : array) {
+                out.value(value);
+            }
+            out.endArray();
+        }
+    }
+
+    private static final class ByteArrayAdapter extends SerialisingAdapter<byte[]> {
+
+        @Override
+        void writeArray(JsonWriter out, byte[] array) throws IOException {
+            out.beginArray();
+            for (byte value : array) {
+                out.value(value);
+            }
+            out.endArray();
+        }
+    }
+
+    /**
+     * Values other than NaN and infinity are written by the writer, the rest are left to the element adapter, which
+     * either writes them or rejects them.
+     */
+    private static final class DoubleArrayAdapter extends SerialisingAdapter<double[]> {
+        private final TypeAdapter<Double> elementAdapter;
+
+        DoubleArrayAdapter(TypeAdapter<Double> elementAdapter) {
+            this.elementAdapter = elementAdapter;
+        }
+
+        @Override
+        void writeArray(JsonWriter out, double[] array) throws IOException {
+            out.beginArray();
+            for (double value : array) {
+                if (Double.isFinite(value)) {
+                    out.value(value);
+                } else {
+                    elementAdapter.write(out, value);
+                }
+            }
+            out.endArray();
+        }
+    }
+
+    /**
+     * Floats are written with the digits of {@link Float#toString(float)}, {@link JsonWriter#value(double)} would write
+     * the digits of the double value. A Json tree holds the numbers themselves, so they are boxed for the tree writer.
+     */
+    private static final class FloatArrayAdapter extends SerialisingAdapter<float[]> {
+        private final TypeAdapter<Float> elementAdapter;
+
+        FloatArrayAdapter(TypeAdapter<Float> elementAdapter) {
+            this.elementAdapter = elementAdapter;
+        }
+
+        @Override
+        void writeArray(JsonWriter out, float[] array) throws IOException {
+            boolean tree = out instanceof JsonTreeWriter;
+            out.beginArray();
+            for (float value : array) {
+                if (!Float.isFinite(value)) {
+                    elementAdapter.write(out, value);
+                } else if (tree) {
+                    out.value(Float.valueOf(value));
+                } else {
+                    out.jsonValue(Float.toString(value));
+                }
+            }
+            out.endArray();
+        }
+    }
+
+    private static final class EncodedByteArrayAdapter extends SerialisingAdapter<byte[]> {
+        private final ByteArrayEncoding encoding;
+
+        EncodedByteArrayAdapter(ByteArrayEncoding encoding) {
+            this.encoding = encoding;
+        }
+
+        @Override
+        void writeArray(JsonWriter out, byte[] array) throws IOException {
+            out.value(encode(array, encoding));
+        }
+    }
+}
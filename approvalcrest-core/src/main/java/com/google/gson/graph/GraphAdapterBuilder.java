@@ -17,12 +17,15 @@ package com.google.gson.graph;
 
 import java.io.IOException;
 import java.lang.reflect.Type;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.HashMap;
-import java.util.IdentityHashMap;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
 
+import com.github.karsaig.approvalcrest.IdentityMap;
+
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.InstanceCreator;
@@ -72,6 +75,11 @@ public final class GraphAdapterBuilder {
     }
 
     static class Factory implements TypeAdapterFactory, InstanceCreator {
+        /**
+         * Identity maps of graphs written earlier on the thread, cleared and reused by the next graph written.
+         */
+        private static final ThreadLocal<Deque<IdentityMap<Element<?>>>> REUSABLE_MAPS = ThreadLocal.withInitial(ArrayDeque::new);
+
         private final Map<Type, InstanceCreator<?>> instanceCreators;
         private final ThreadLocal<Graph> graphThreadLocal = new ThreadLocal<>();
 
@@ -106,15 +114,16 @@ public final class GraphAdapterBuilder {
                      */
                     if (graph == null) {
                         writeEntireGraph = true;
-                        graph = new Graph(new IdentityHashMap<>());
+                        IdentityMap<Element<?>> elements = REUSABLE_MAPS.get().poll();
+                        graph = Graph.forWriting(elements == null ? new IdentityMap<>() : elements);
                     }
 
                     @SuppressWarnings("unchecked")
-                    // graph.map guarantees consistency between value and T
-                            Element<T> element = (Element<T>) graph.map.get(value);
+                    // graph.elementsByValue guarantees consistency between value and T
+                            Element<T> element = (Element<T>) graph.elementsByValue.get(value);
                     if (element == null) {
                         element = new Element<>(value, graph.nextName(), typeAdapter, null);
-                        graph.map.put(value, element);
+                        graph.elementsByValue.put(value, element);
                         graph.queue.add(element);
                     }
 
@@ -130,6 +139,8 @@ public final class GraphAdapterBuilder {
                             out.endObject();
                         } finally {
                             graphThreadLocal.remove();
+                            graph.elementsByValue.clear();
+                            REUSABLE_MAPS.get().push(graph.elementsByValue);
                         }
                     } else {
                         out.value(element.id);
@@ -155,7 +166,7 @@ public final class GraphAdapterBuilder {
                     boolean readEntireGraph = false;
 
                     if (graph == null) {
-                        graph = new Graph(new HashMap<>());
+                        graph = Graph.forReading();
                         readEntireGraph = true;
 
                         // read the entire tree into memory
@@ -166,7 +177,7 @@ public final class GraphAdapterBuilder {
                                 currentName = name;
                             }
                             JsonElement element = elementAdapter.read(in);
-                            graph.map.put(name, new Element<>(null, name, typeAdapter, element));
+                            graph.elementsByName.put(name, new Element<>(null, name, typeAdapter, element));
                         }
                         in.endObject();
                     } else {
@@ -178,8 +189,8 @@ public final class GraphAdapterBuilder {
                     }
                     try {
                         @SuppressWarnings("unchecked")
-                        // graph.map guarantees consistency between value and T
-                                Element<T> element = (Element<T>) graph.map.get(currentName);
+                        // graph.elementsByName guarantees consistency between value and T
+                                Element<T> element = (Element<T>) graph.elementsByName.get(currentName);
                         // now that we know the typeAdapter for this name, go from JsonElement to 'T'
                         if (element.value == null) {
                             element.typeAdapter = typeAdapter;
@@ -221,10 +232,14 @@ public final class GraphAdapterBuilder {
 
     static class Graph {
         /**
-         * The graph elements. On serialization keys are objects (using an identity hash map) and on deserialization
-         * keys are the string names (using a standard hash map).
+         * The graph elements by their objects during serialization. Unused during deserialization.
          */
-        private final Map<Object, Element<?>> map;
+        private final IdentityMap<Element<?>> elementsByValue;
+
+        /**
+         * The graph elements by their names during deserialization. Unused during serialization.
+         */
+        private final Map<String, Element<?>> elementsByName;
 
         /**
          * The queue of elements to write during serialization. Unused during deserialization.
@@ -237,15 +252,24 @@ public final class GraphAdapterBuilder {
          */
         private Element nextCreate;
 
-        private Graph(Map<Object, Element<?>> map) {
-            this.map = map;
+        private Graph(IdentityMap<Element<?>> elementsByValue, Map<String, Element<?>> elementsByName) {
+            this.elementsByValue = elementsByValue;
+            this.elementsByName = elementsByName;
+        }
+
+        static Graph forWriting(IdentityMap<Element<?>> elementsByValue) {
+            return new Graph(elementsByValue, null);
+        }
+
+        static Graph forReading() {
+            return new Graph(null, new HashMap<>());
         }
 
         /**
          * Returns a unique name for an element to be inserted into the graph.
          */
         public String nextName() {
-            return "0x" + Integer.toHexString(map.size() + 1);
+            return "0x" + Integer.toHexString(elementsByValue.size() + 1);
         }
     }
 
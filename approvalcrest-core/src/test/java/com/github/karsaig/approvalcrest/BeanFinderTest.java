@@ -0,0 +1,71 @@
+package com.github.karsaig.approvalcrest;
+
+import static com.github.karsaig.approvalcrest.testdata.Bean.Builder.bean;
+import static com.github.karsaig.approvalcrest.testdata.ParentBean.Builder.parent;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.karsaig.approvalcrest.testdata.Bean;
+import com.github.karsaig.approvalcrest.testdata.ParentBean;
+
+/**
+ * Unit test for {@link BeanFinder}.
+ */
+public class BeanFinderTest {
+
+    @Test
+    public void testShouldFindNestedField() {
+        ParentBean parent = parent().childBean("child", 1).build();
+
+        assertEquals("child", BeanFinder.findBeanAt("childBean.childString", parent));
+        assertEquals(1, BeanFinder.findBeanAt("childBean.childInteger", parent));
+    }
+
+    @Test
+    public void testShouldFindElementsOfListsAndArraysByIndex() {
+        ParentBean parent = parent().addToChildBeanList("first", 1).addToChildBeanList("second", 2).build();
+        Bean bean = bean().array(bean().string("first").build(), bean().string("second").build()).build();
+
+        assertEquals("second", BeanFinder.findBeanAt("childBeanList.1.childString", parent));
+        assertEquals("second", BeanFinder.findBeanAt("array.1.string", bean));
+    }
+
+    @Test
+    public void testShouldResolveTheSameSegmentOnDifferentClasses() {
+        Bean bean = bean().string("bean").build();
+        ParentBean parent = parent().parentString("parent").build();
+
+        assertEquals("bean", BeanFinder.findBeanAt("string", bean));
+        assertThrows(IllegalArgumentException.class, () -> BeanFinder.findBeanAt("string", parent));
+        assertEquals("parent", BeanFinder.findBeanAt("parentString", parent));
+    }
+
+    @Test
+    public void testShouldReturnNullValueOfTheLastSegment() {
+        assertNull(BeanFinder.findBeanAt("childBean", parent().build()));
+    }
+
+    @Test
+    public void testShouldThrowPathNullPointerExceptionWhenParentIsNull() {
+        PathNullPointerException exception = assertThrows(PathNullPointerException.class,
+                () -> BeanFinder.findBeanAt("childBean.childString", parent().build()));
+
+        assertEquals("childString", exception.getPath());
+    }
+
+    @Test
+    public void testShouldThrowExceptionWhenPathDoesNotExist() {
+        ParentBean parent = parent().addToChildBeanList("first", 1).build();
+
+        IllegalArgumentException missingField = assertThrows(IllegalArgumentException.class,
+                () -> BeanFinder.findBeanAt("childBean.missing", parent().childBean("child", 1).build()));
+        IllegalArgumentException missingIndex = assertThrows(IllegalArgumentException.class,
+                () -> BeanFinder.findBeanAt("childBeanList.1.childString", parent));
+
+        assertEquals("childBean.missing does not exist", missingField.getMessage());
+        assertEquals("childBeanList.1.childString does not exist", missingIndex.getMessage());
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.karsaig.approvalcrest;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the circular reference detection on a linked chain of objects, closed into a cycle at its end.
+ * <p>
+ * Not part of the test suite, run it from the IDE or with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CyclicReferenceDetectorBenchmark {
+
+    @Param({"1000", "100000"})
+    private int depth;
+
+    private MatcherConfiguration matcherConfiguration;
+    private Link chain;
+
+    @Setup
+    public void setUp() {
+        matcherConfiguration = new MatcherConfiguration();
+        chain = new Link(0);
+        Link last = chain;
+        for (int i = 1; i < depth; i++) {
+            Link next = new Link(i);
+            last.next = next;
+            last = next;
+        }
+        last.next = chain;
+    }
+
+    @Benchmark
+    public Set<Class<?>> detectCycleOfDeepChain() {
+        return CyclicReferenceDetector.getClassesWithCircularReferences(chain, matcherConfiguration);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CyclicReferenceDetectorBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    static class Link {
+        private final int id;
+        private Object next;
+
+        Link(int id) {
+            this.id = id;
+        }
+    }
+}
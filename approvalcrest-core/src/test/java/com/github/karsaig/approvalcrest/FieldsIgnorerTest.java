@@ -0,0 +1,58 @@
+package com.github.karsaig.approvalcrest;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+/**
+ * Unit test for {@link FieldsIgnorer}.
+ */
+public class FieldsIgnorerTest {
+    private static final JsonParser PARSER = new JsonParser();
+    private static final String JSON = "{\"a\": {\"b\": 1, \"c\": [{\"d\": 1, \"e\": 2}, null, {\"d\": 3}]}, "
+            + "\"f\": [{\"g\": 2, \"h\": 1}, {\"g\": 1, \"h\": 2}], \"i\": 5}";
+
+    @Test
+    public void testShouldRemoveEveryPath() {
+        JsonElement json = PARSER.parse(JSON);
+
+        FieldsIgnorer.findPaths(json, paths("a.b", "a.c.d", "f.g", "i"));
+
+        assertEquals(PARSER.parse("{\"a\": {\"c\": [{\"e\": 2}, null, {}]}, \"f\": [{\"h\": 1}, {\"h\": 2}]}"), json);
+    }
+
+    @Test
+    public void testShouldNotModifyTheSourceOfTheFilteredView() {
+        JsonElement json = PARSER.parse(JSON);
+        JsonElement expected = PARSER.parse(JSON);
+        FieldsIgnorer.findPaths(expected, paths("a.c.e", "f.h"));
+
+        JsonElement view = FieldsIgnorer.filteredView(json, paths("a.c.e", "f.h"));
+
+        assertEquals(expected, view);
+        assertEquals(PARSER.parse(JSON), json);
+    }
+
+    @Test
+    public void testShouldThrowExceptionWhenParentOfPathIsNotAnObject() {
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class,
+                () -> FieldsIgnorer.findPaths(PARSER.parse(JSON), paths("i.j")));
+        IllegalArgumentException viewException = assertThrows(IllegalArgumentException.class,
+                () -> FieldsIgnorer.filteredView(PARSER.parse(JSON), paths("i.j")));
+
+        assertEquals("i.j does not exist", exception.getMessage());
+        assertEquals("i.j does not exist", viewException.getMessage());
+    }
+
+    private static Set<String> paths(String... paths) {
+        return new HashSet<>(asList(paths));
+    }
+}
@@ -0,0 +1,104 @@
+package com.github.karsaig.approvalcrest;
+
+import static java.util.Collections.newSetFromMap;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for {@link IdentitySet} and {@link IdentityMap}, checking them against {@link IdentityHashMap}.
+ */
+public class IdentityHashTableTest {
+
+    @Test
+    public void testShouldBehaveAsIdentityHashMapBackedSet() {
+        Random random = new Random(42);
+        List<Object> objects = objects(1000);
+        IdentitySet set = new IdentitySet();
+        Set<Object> reference = newSetFromMap(new IdentityHashMap<>());
+
+        for (int i = 0; i < 100000; i++) {
+            Object object = objects.get(random.nextInt(objects.size()));
+            if (random.nextBoolean()) {
+                assertEquals(reference.add(object), set.add(object));
+            } else {
+                assertEquals(reference.remove(object), set.remove(object));
+            }
+            assertEquals(reference.size(), set.size());
+        }
+        for (Object object : objects) {
+            assertEquals(reference.contains(object), set.contains(object));
+        }
+        Set<Object> iterated = newSetFromMap(new IdentityHashMap<>());
+        set.forEach(iterated::add);
+        assertEquals(reference, iterated);
+    }
+
+    @Test
+    public void testShouldBehaveAsIdentityHashMap() {
+        Random random = new Random(42);
+        List<Object> objects = objects(1000);
+        IdentityMap<Integer> map = new IdentityMap<>();
+        IdentityHashMap<Object, Integer> reference = new IdentityHashMap<>();
+
+        for (int i = 0; i < 100000; i++) {
+            Object key = objects.get(random.nextInt(objects.size()));
+            if (random.nextBoolean()) {
+                assertEquals(reference.put(key, i), map.put(key, i));
+            } else {
+                assertEquals(reference.remove(key), map.remove(key));
+            }
+            assertEquals(reference.size(), map.size());
+        }
+        for (Object key : objects) {
+            assertEquals(reference.get(key), map.get(key));
+            assertEquals(reference.containsKey(key), map.containsKey(key));
+        }
+    }
+
+    @Test
+    public void testShouldCompareByIdentity() {
+        IdentitySet set = new IdentitySet();
+        String first = new String("a");
+        String second = new String("a");
+
+        set.add(first);
+
+        assertTrue(set.contains(first));
+        assertFalse(set.contains(second));
+    }
+
+    @Test
+    public void testShouldBeReusableAfterClear() {
+        IdentityMap<String> map = new IdentityMap<>();
+        List<Object> objects = objects(100000);
+        for (Object object : objects) {
+            map.put(object, "value");
+        }
+
+        map.clear();
+
+        assertTrue(map.isEmpty());
+        assertNull(map.get(objects.get(0)));
+        map.put(objects.get(1), "other");
+        assertEquals("other", map.get(objects.get(1)));
+        assertEquals(1, map.size());
+    }
+
+    private static List<Object> objects(int count) {
+        List<Object> objects = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            objects.add(new Object());
+        }
+        return objects;
+    }
+}
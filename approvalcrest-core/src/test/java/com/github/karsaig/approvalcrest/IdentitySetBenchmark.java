@@ -0,0 +1,115 @@
+package com.github.karsaig.approvalcrest;
+
+import static java.util.Collections.newSetFromMap;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares {@link IdentitySet} and {@link IdentityMap} with the {@link IdentityHashMap} based structures they replace,
+ * on the access pattern of an object graph walk: every node is looked up, added, and later removed from the path.
+ * The identity structures are cleared and reused between invocations, the way the detector reuses them.
+ * <p>
+ * Not part of the test suite, run it from the IDE or with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class IdentitySetBenchmark {
+
+    @Param({"10000", "100000", "1000000"})
+    private int nodes;
+
+    private Object[] objects;
+    private IdentitySet identitySet;
+    private IdentityMap<Object> identityMap;
+
+    @Setup
+    public void setUp() {
+        objects = new Object[nodes];
+        for (int i = 0; i < nodes; i++) {
+            objects[i] = new Object();
+        }
+        identitySet = new IdentitySet();
+        identityMap = new IdentityMap<>();
+    }
+
+    @Benchmark
+    public int identityHashMapBackedSet() {
+        Set<Object> set = newSetFromMap(new IdentityHashMap<>());
+        for (Object object : objects) {
+            if (!set.contains(object)) {
+                set.add(object);
+            }
+        }
+        int size = set.size();
+        for (Object object : objects) {
+            set.remove(object);
+        }
+        return size;
+    }
+
+    @Benchmark
+    public int identitySet() {
+        IdentitySet set = identitySet;
+        for (Object object : objects) {
+            if (!set.contains(object)) {
+                set.add(object);
+            }
+        }
+        int size = set.size();
+        for (Object object : objects) {
+            set.remove(object);
+        }
+        set.clear();
+        return size;
+    }
+
+    @Benchmark
+    public int identityHashMap() {
+        Map<Object, Object> map = new IdentityHashMap<>();
+        for (Object object : objects) {
+            if (map.get(object) == null) {
+                map.put(object, object);
+            }
+        }
+        return map.size();
+    }
+
+    @Benchmark
+    public int identityMap() {
+        IdentityMap<Object> map = identityMap;
+        for (Object object : objects) {
+            if (map.get(object) == null) {
+                map.put(object, object);
+            }
+        }
+        int size = map.size();
+        map.clear();
+        return size;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(IdentitySetBenchmark.class.getSimpleName()).build()).run();
+    }
+}
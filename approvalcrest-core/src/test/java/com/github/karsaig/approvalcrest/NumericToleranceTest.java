@@ -0,0 +1,63 @@
+package com.github.karsaig.approvalcrest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for {@link NumericTolerance}.
+ */
+public class NumericToleranceTest {
+
+    @Test
+    public void testShouldAcceptAbsoluteDifferenceUpToTheLimit() {
+        NumericTolerance tolerance = NumericTolerance.absolute(0.5);
+
+        assertTrue(tolerance.isWithin(1.0, 1.5));
+        assertTrue(tolerance.isWithin(-1.0, -0.5));
+        assertFalse(tolerance.isWithin(1.0, 1.51));
+    }
+
+    @Test
+    public void testShouldAcceptRelativeDifferenceOfTheLargerMagnitude() {
+        NumericTolerance tolerance = NumericTolerance.relative(0.01);
+
+        assertTrue(tolerance.isWithin(1000.0, 1010.0));
+        assertTrue(tolerance.isWithin(1e-20, 1.005e-20));
+        assertFalse(tolerance.isWithin(1000.0, 1011.0));
+        assertFalse(tolerance.isWithin(0.0, 1e-300));
+    }
+
+    @Test
+    public void testShouldCountUlpsThroughZero() {
+        NumericTolerance tolerance = NumericTolerance.ulps(2);
+
+        assertTrue(tolerance.isWithin(1.0, Math.nextUp(Math.nextUp(1.0))));
+        assertFalse(tolerance.isWithin(1.0, Math.nextUp(Math.nextUp(Math.nextUp(1.0)))));
+        assertTrue(tolerance.isWithin(Double.MIN_VALUE, -Double.MIN_VALUE));
+        assertTrue(tolerance.isWithin(0.0, -0.0));
+        assertFalse(tolerance.isWithin(Double.MAX_VALUE, -Double.MAX_VALUE));
+        assertFalse(NumericTolerance.ulps(Long.MAX_VALUE).isWithin(1.0, Double.NaN));
+    }
+
+    @Test
+    public void testShouldAcceptNumbersWithinAnyOfTheLimits() {
+        NumericTolerance tolerance = NumericTolerance.relative(1e-9).orAbsolute(1e-12);
+
+        assertTrue(tolerance.isWithin(0.0, 1e-13));
+        assertTrue(tolerance.isWithin(1e6, 1e6 + 1e-4));
+        assertFalse(tolerance.isWithin(1e6, 1e6 + 1e-2));
+        assertEquals(NumericTolerance.absolute(1e-12).orRelative(1e-9), tolerance);
+    }
+
+    @Test
+    public void testShouldRejectInvalidLimits() {
+        assertThrows(IllegalArgumentException.class, () -> NumericTolerance.absolute(-1));
+        assertThrows(IllegalArgumentException.class, () -> NumericTolerance.relative(Double.NaN));
+        assertThrows(IllegalArgumentException.class, () -> NumericTolerance.absolute(Double.POSITIVE_INFINITY));
+        assertThrows(IllegalArgumentException.class, () -> NumericTolerance.ulps(-1));
+    }
+}
@@ -0,0 +1,93 @@
+package com.github.karsaig.approvalcrest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Unit test for {@link TypeMetadata}.
+ */
+public class TypeMetadataTest {
+
+    @Test
+    public void testShouldListNonStaticFieldsClassByClass() {
+        List<Field[]> fieldsByClass = TypeMetadata.of(Child.class).getFieldsByClass();
+
+        assertEquals(3, fieldsByClass.size());
+        assertEquals(2, fieldsByClass.get(0).length);
+        assertEquals(2, fieldsByClass.get(1).length);
+        assertEquals(0, fieldsByClass.get(2).length);
+    }
+
+    @Test
+    public void testShouldFindHidingFieldFirst() {
+        TypeMetadata metadata = TypeMetadata.of(Child.class);
+
+        assertEquals(Child.class, metadata.getField("name").getDeclaringClass());
+        assertEquals(Parent.class, metadata.getField("parentOnly").getDeclaringClass());
+        assertNull(metadata.getField("missing"));
+    }
+
+    @Test
+    public void testShouldReadFieldsWithGetters() throws Throwable {
+        TypeMetadata metadata = TypeMetadata.of(Child.class);
+        Child child = new Child();
+
+        assertEquals("child", invoke(metadata.getGetter("name"), child));
+        assertEquals("parent", invoke(metadata.getGetter("parentOnly"), child));
+        assertEquals("constant", invoke(metadata.getGetter("CONSTANT"), child));
+        assertNull(metadata.getGetter("missing"));
+    }
+
+    @Test
+    public void testShouldClassifyTypes() {
+        assertTrue(TypeMetadata.of(String.class).isValue());
+        assertTrue(TypeMetadata.of(Thread.State.class).isValue());
+        assertTrue(TypeMetadata.of(ArrayList.class).isIterable());
+        assertFalse(TypeMetadata.of(Child.class).isValue());
+    }
+
+    @Test
+    public void testShouldComputeMetadataOnceAndCountIt() {
+        TypeMetadata.Stats before = TypeMetadata.stats();
+
+        TypeMetadata first = TypeMetadata.of(Registered.class);
+        TypeMetadata second = TypeMetadata.of(Registered.class);
+        TypeMetadata.Stats after = TypeMetadata.stats();
+
+        assertSame(first, second);
+        assertEquals(before.getRegisteredClasses() + 1, after.getRegisteredClasses());
+        assertTrue(after.getRetainedBytes() > before.getRetainedBytes());
+    }
+
+    private static Object invoke(MethodHandle getter, Object object) throws Throwable {
+        return (Object) getter.invokeExact(object);
+    }
+
+    @SuppressWarnings("unused")
+    static class Parent {
+        private String name = "parent name";
+        private String parentOnly = "parent";
+    }
+
+    @SuppressWarnings("unused")
+    static class Child extends Parent {
+        private static final String CONSTANT = "constant";
+        private String name = "child";
+        private int number;
+    }
+
+    @SuppressWarnings("unused")
+    static class Registered {
+        private String field;
+    }
+}
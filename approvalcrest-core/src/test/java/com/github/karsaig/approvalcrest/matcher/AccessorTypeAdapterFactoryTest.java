@@ -0,0 +1,190 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import static com.github.karsaig.approvalcrest.testdata.Bean.Builder.bean;
+import static com.github.karsaig.approvalcrest.testdata.BeanWithPrimitives.Builder.beanWithPrimitives;
+import static com.github.karsaig.approvalcrest.testdata.ChildBean.Builder.child;
+import static com.github.karsaig.approvalcrest.testdata.ParentBean.Builder.parent;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.karsaig.approvalcrest.MatcherConfiguration;
+import com.github.karsaig.approvalcrest.processor.ApprovalSerializable;
+import com.github.karsaig.approvalcrest.testdata.Bean;
+import com.github.karsaig.approvalcrest.testdata.BeanWithGeneric;
+import com.github.karsaig.approvalcrest.testdata.ParentBean;
+import com.github.karsaig.approvalcrest.testdata.cyclic.One;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonPrimitive;
+import com.google.gson.JsonSerializer;
+import com.google.gson.annotations.SerializedName;
+
+/**
+ * Unit test for {@link AccessorTypeAdapterFactory}, checking it writes the same Json as the reflective adapter of
+ * {@link Gson}.
+ */
+public class AccessorTypeAdapterFactoryTest {
+
+    @Test
+    public void testShouldWriteTheSameJsonAsTheReflectiveAdapter() {
+        Set<Bean> set = new HashSet<>(Arrays.asList(bean().string("b").build(), bean().string("a").integer(2).build()));
+        Map<Bean, Bean> map = new HashMap<>();
+        map.put(bean().string("key").build(), bean().string("value").build());
+        List<Object> objects = new ArrayList<>();
+        objects.add(bean().string("bean").integer(1).set(set).map(map).array(bean().build(), null).build());
+        objects.add(beanWithPrimitives().beanInt(-1).beanByte((byte) 2).beanChar('"').beanShort((short) 3).beanLong(Long.MAX_VALUE)
+                .beanFloat(1.1f).beanDouble(0.1).beanBoolean(true).build());
+        objects.add(parent().parentString("parent").childBean("child", 1).addToChildBeanList("first", 2).build());
+        objects.add(BeanWithGeneric.of("generic", bean().string("value").build()));
+        objects.add(BeanWithGeneric.of("generic", 5L));
+        objects.add(new Holder(new Sub("base", "sub"), new Sub("declared", "object")));
+        objects.add(new Throwable("message", new IllegalStateException("cause")));
+        objects.add(new Named());
+
+        for (Object object : objects) {
+            assertSameJson(new MatcherConfiguration(), object);
+        }
+    }
+
+    @Test
+    public void testShouldPreferAdaptersRegisteredForTheDeclaredType() {
+        GsonConfiguration configuration = new GsonConfiguration();
+        configuration.addTypeAdapter(Base.class, (JsonSerializer<Base>) (src, type, context) -> new JsonPrimitive("custom base"));
+        configuration.addTypeAdapter(Integer.class, (JsonSerializer<Integer>) (src, type, context) -> new JsonPrimitive("custom integer"));
+        Holder holder = new Holder(new Sub("base", "sub"), new Sub("declared", "object"));
+
+        Gson reflective = GsonProvider.gson(new MatcherConfiguration(), emptySet(), configuration);
+        Gson accessors = GsonProvider.gson(new MatcherConfiguration().serialiseBeansWithAccessors(), emptySet(), configuration);
+
+        assertEquals(reflective.toJson(holder), accessors.toJson(holder));
+        assertEquals(reflective.toJson(beanWithPrimitives().beanInt(1).build()), accessors.toJson(beanWithPrimitives().beanInt(1).build()));
+    }
+
+    @Test
+    public void testShouldWriteCircularReferencesTheSameWay() {
+        One parent = new One();
+        One child = new One();
+        parent.setGenericObject(child);
+        child.setGenericObject(parent);
+
+        Gson reflective = GsonProvider.gson(new MatcherConfiguration(), singleton(One.class));
+        Gson accessors = GsonProvider.gson(new MatcherConfiguration().serialiseBeansWithAccessors(), singleton(One.class));
+
+        assertEquals(reflective.toJson(parent), accessors.toJson(parent));
+    }
+
+    @Test
+    public void testShouldWriteAnnotatedBeansWithTheGeneratedReaders() throws NoSuchFieldException {
+        Gson reflective = new Gson();
+        Gson generated = new GsonBuilder().registerTypeAdapterFactory(AccessorTypeAdapterFactory.forGeneratedBeans()).create();
+        Set<Bean> set = new HashSet<>(Arrays.asList(bean().string("b").build(), bean().string("a").integer(2).build()));
+        List<Object> objects = new ArrayList<>();
+        objects.add(bean().string("bean").integer(1).set(set).array(bean().build(), null).build());
+        objects.add(child().childString("child").childInteger(3).build());
+        objects.add(beanWithPrimitives().beanInt(-1).beanByte((byte) 2).beanChar('"').beanShort((short) 3).beanLong(Long.MAX_VALUE)
+                .beanFloat(1.1f).beanDouble(0.1).beanBoolean(true).build());
+        objects.add(parent().parentString("parent").childBean("child", 1).addToChildBeanList("first", 2).build());
+        objects.add(new Annotated());
+
+        assertTrue(GeneratedFieldReaders.getter(Bean.class.getDeclaredField("integer"), int.class) != null);
+        assertTrue(GeneratedFieldReaders.getter(Annotated.class.getDeclaredField("small"), int.class) != null);
+        assertTrue(GeneratedFieldReaders.getter(Annotated.class.getDeclaredField("hidden"), Object.class) != null);
+        assertTrue(generated.getAdapter(ParentBean.class) instanceof AccessorTypeAdapterFactory.Adapter);
+        assertFalse(generated.getAdapter(BeanWithGeneric.class) instanceof AccessorTypeAdapterFactory.Adapter);
+        for (Object object : objects) {
+            assertEquals(reflective.toJson(object), generated.toJson(object));
+        }
+    }
+
+    @Test
+    public void testShouldWriteTheStaticFieldsTheExcluderKeeps() {
+        Gson reflective = new GsonBuilder().excludeFieldsWithModifiers(Modifier.TRANSIENT).create();
+        Gson accessors = new GsonBuilder().excludeFieldsWithModifiers(Modifier.TRANSIENT)
+                .registerTypeAdapterFactory(new AccessorTypeAdapterFactory()).create();
+
+        assertTrue(accessors.getAdapter(WithStatic.class) instanceof AccessorTypeAdapterFactory.Adapter);
+        assertEquals(reflective.toJson(new WithStatic()), accessors.toJson(new WithStatic()));
+        assertEquals("{\"counter\":5,\"label\":\"static\",\"field\":\"instance\"}", accessors.toJson(new WithStatic()));
+    }
+
+    private static void assertSameJson(MatcherConfiguration configuration, Object object) {
+        Gson reflective = GsonProvider.gson(configuration, emptySet());
+        Gson accessors = GsonProvider.gson(new MatcherConfiguration().serialiseBeansWithAccessors(), emptySet());
+
+        assertEquals(reflective.toJson(object), accessors.toJson(object));
+    }
+
+    @SuppressWarnings("unused")
+    static class Base {
+        private final String baseField;
+
+        Base(String baseField) {
+            this.baseField = baseField;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    static class Sub extends Base {
+        private final String subField;
+        private transient String transientField = "transient";
+
+        Sub(String baseField, String subField) {
+            super(baseField);
+            this.subField = subField;
+        }
+    }
+
+    @SuppressWarnings("unused")
+    static class Holder {
+        private final Base declaredBase;
+        private final Object declaredObject;
+        private final Integer boxed = 7;
+        private final char[] chars = {'a', 'b'};
+
+        Holder(Base declaredBase, Object declaredObject) {
+            this.declaredBase = declaredBase;
+            this.declaredObject = declaredObject;
+        }
+    }
+
+    @ApprovalSerializable
+    @SuppressWarnings("unused")
+    static class Annotated {
+        String string = "generated";
+        short small = 3;
+        long large = Long.MIN_VALUE;
+        boolean flag = true;
+        char character = '<';
+        private String hidden = "private";
+    }
+
+    @SuppressWarnings("unused")
+    static class WithStatic {
+        private static int counter = 5;
+        private static final String label = "static";
+        private String field = "instance";
+    }
+
+    @SuppressWarnings("unused")
+    static class Named {
+        @SerializedName(value = "renamed", alternate = {"other"})
+        private String field = "value";
+        private String nullField;
+        private double notANumberFree = 1e20;
+    }
+}
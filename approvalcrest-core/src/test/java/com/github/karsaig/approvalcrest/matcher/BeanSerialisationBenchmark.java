@@ -0,0 +1,99 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import static java.util.Collections.emptySet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.github.karsaig.approvalcrest.MatcherConfiguration;
+
+import com.google.gson.Gson;
+
+/**
+ * Compares the serialisation of a list of beans with primitive, string and nested bean fields by the reflective
+ * adapters of {@link Gson} and by {@link AccessorTypeAdapterFactory}.
+ * <p>
+ * Not part of the test suite, run it from the IDE or with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BeanSerialisationBenchmark {
+
+    @Param({"1000", "10000"})
+    private int size;
+
+    private Gson reflective;
+    private Gson accessors;
+    private Container container;
+
+    @Setup
+    public void setUp() {
+        reflective = GsonProvider.gson(new MatcherConfiguration(), emptySet());
+        accessors = GsonProvider.gson(new MatcherConfiguration().serialiseBeansWithAccessors(), emptySet());
+        container = new Container();
+        for (int i = 0; i < size; i++) {
+            Item item = new Item();
+            item.id = i;
+            item.quantity = i % 7;
+            item.timestamp = 1_000_000L * i;
+            item.active = i % 2 == 0;
+            item.name = "item" + i;
+            item.price = new Price();
+            item.price.amount = i * 100;
+            item.price.currency = "EUR";
+            container.items.add(item);
+        }
+    }
+
+    @Benchmark
+    public String serialiseReflectively() {
+        return reflective.toJson(container);
+    }
+
+    @Benchmark
+    public String serialiseWithAccessors() {
+        return accessors.toJson(container);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(BeanSerialisationBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    static class Container {
+        private final List<Item> items = new ArrayList<>();
+    }
+
+    static class Item {
+        private int id;
+        private int quantity;
+        private long timestamp;
+        private boolean active;
+        private String name;
+        private Price price;
+    }
+
+    static class Price {
+        private long amount;
+        private String currency;
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.karsaig.approvalcrest.testdata.BeanWithPrimitives;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Unit test for the {@link CanonicalJsonWriter}.
+ */
+public class CanonicalJsonWriterTest {
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+    private final Gson gsonWithoutHtmlEscaping = new GsonBuilder().setPrettyPrinting().disableHtmlEscaping().create();
+
+    @Test
+    public void testShouldWriteTheJsonOfGsonWithAndWithoutHtmlEscaping() {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("text", "a=b <c> & 'd' \"e\" \\ \t\b\n\r\f \u0001 \u007f \u00e9 \u20ac \u2028\u2029 \ud83d\ude00");
+        values.put("na\"me", "");
+        values.put("integers", Arrays.asList(0, -1, 42, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE, (short) -7, (byte) 8));
+        values.put("decimals", Arrays.asList(0.0, -0.0, 1.5, 1e-7, 1e21, Double.MAX_VALUE, 3.1f, new BigDecimal("1.10")));
+        values.put("booleans", Arrays.asList(true, false));
+        values.put("nulls", Arrays.asList(null, null));
+        values.put("missing", null);
+        values.put("emptyArray", Collections.emptyList());
+        values.put("emptyObject", Collections.emptyMap());
+        values.put("nested", Collections.singletonMap("deeper", Collections.singletonList(Collections.singletonMap("deepest", 'c'))));
+        values.put("bean", BeanWithPrimitives.Builder.beanWithPrimitives().beanInt(4).beanDouble(5.0).beanFloat(3.0f).beanChar('<').build());
+
+        assertEquals(gson.toJson(values), write(gson, values));
+        assertEquals(gsonWithoutHtmlEscaping.toJson(values), write(gsonWithoutHtmlEscaping, values));
+    }
+
+    @Test
+    public void testShouldWriteTopLevelValuesLikeGson() {
+        for (Object value : Arrays.asList(null, "text", 12L, 1.25, true, new int[0], new long[]{1, -2})) {
+            assertEquals(gson.toJson(value), write(gson, value));
+        }
+        assertEquals(gson.toJson(gson.toJsonTree(Collections.singletonMap("key", "value"))),
+                write(gson, gson.toJsonTree(Collections.singletonMap("key", "value"))));
+    }
+
+    @Test
+    public void testShouldReuseTheWriterOfTheThreadOnceReleased() {
+        CanonicalJsonWriter first = CanonicalJsonWriter.acquire();
+        CanonicalJsonWriter nested = CanonicalJsonWriter.acquire();
+        assertNotSame(first, nested);
+        nested.release();
+        first.write(gson, "first");
+        first.release();
+
+        CanonicalJsonWriter second = CanonicalJsonWriter.acquire();
+        try {
+            assertSame(first, second);
+            assertEquals(0, second.size());
+            assertEquals("\"second\"", new String(second.write(gson, "second").buffer(), 0, second.size(), UTF_8));
+        } finally {
+            second.release();
+        }
+    }
+
+    private String write(Gson gson, Object value) {
+        CanonicalJsonWriter writer = CanonicalJsonWriter.acquire();
+        try {
+            writer.write(gson, value);
+            return new String(writer.buffer(), 0, writer.size(), UTF_8);
+        } finally {
+            writer.release();
+        }
+    }
+}
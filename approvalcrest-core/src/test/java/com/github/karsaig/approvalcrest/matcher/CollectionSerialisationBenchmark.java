@@ -0,0 +1,84 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import static java.util.Collections.emptySet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.github.karsaig.approvalcrest.MatcherConfiguration;
+
+import com.google.gson.Gson;
+
+/**
+ * Measures the serialisation of a bean holding a list of beans, each with a {@link Set} and a {@link Map} field.
+ * <p>
+ * Not part of the test suite, run it from the IDE or with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollectionSerialisationBenchmark {
+
+    @Param({"1000", "10000"})
+    private int size;
+
+    private Gson gson;
+    private Container container;
+
+    @Setup
+    public void setUp() {
+        gson = GsonProvider.gson(new MatcherConfiguration(), emptySet());
+        container = new Container();
+        for (int i = 0; i < size; i++) {
+            Item item = new Item();
+            item.id = i;
+            for (int j = 0; j < 5; j++) {
+                item.tags.add("tag" + (i + j) % 17);
+                item.counters.put("counter" + j, i * j);
+            }
+            container.items.add(item);
+        }
+    }
+
+    @Benchmark
+    public String serialiseCollectionHeavyBean() {
+        return gson.toJson(container);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(CollectionSerialisationBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    static class Container {
+        private final List<Item> items = new ArrayList<>();
+    }
+
+    static class Item {
+        private int id;
+        private final Set<String> tags = new HashSet<>();
+        private final Map<String, Integer> counters = new HashMap<>();
+    }
+}
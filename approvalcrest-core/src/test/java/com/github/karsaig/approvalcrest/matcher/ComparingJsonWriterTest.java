@@ -0,0 +1,97 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import static java.util.Collections.emptySet;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.github.karsaig.approvalcrest.MatcherConfiguration;
+import com.github.karsaig.approvalcrest.NumericTolerance;
+import com.github.karsaig.approvalcrest.testdata.BeanWithPrimitives;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParser;
+
+/**
+ * Unit test for the {@link ComparingJsonWriter}.
+ */
+public class ComparingJsonWriterTest {
+    private final Gson gson = new GsonBuilder().setPrettyPrinting().create();
+
+    @Test
+    public void testShouldFindTheJsonOfGsonTheSame() throws IOException {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("text", "a=b <c> \u2028 \ud83d\ude00");
+        values.put("numbers", Arrays.asList(0, -1, Long.MAX_VALUE, 1.5, 3.1f, -0.0));
+        values.put("nested", Arrays.asList(null, true, new LinkedHashMap<>()));
+        values.put("missing", null);
+        BeanWithPrimitives bean = BeanWithPrimitives.Builder.beanWithPrimitives().beanInt(4).beanDouble(5.0).build();
+
+        assertTrue(isSame(values, "/*comment*/\n" + gson.toJson(values)));
+        assertTrue(isSame(bean, gson.toJson(bean)));
+        assertTrue(isSame(new JsonParser().parse("{\"a\": [1, 2]}"), "{\"a\":[1.0,2E0]}"));
+    }
+
+    @Test
+    public void testShouldFindDifferentTokensDifferent() throws IOException {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("a", 1);
+        values.put("b", Arrays.asList("x", "y"));
+
+        assertFalse(isSame(values, "{\"a\": 2, \"b\": [\"x\", \"y\"]}"));
+        assertFalse(isSame(values, "{\"a\": 1, \"b\": [\"x\", \"z\"]}"));
+        assertFalse(isSame(values, "{\"a\": 1, \"b\": [\"x\"]}"));
+        assertFalse(isSame(values, "{\"a\": 1, \"b\": [\"x\", \"y\"], \"c\": 3}"));
+        assertFalse(isSame(values, "{\"a\": \"1\", \"b\": [\"x\", \"y\"]}"));
+        assertFalse(isSame(values, "{\"a\": 1, \"b\": [\"x\", \"y\"]} []"));
+    }
+
+    @Test
+    public void testShouldLeaveDifferentOrderAndTopLevelValuesToTheTrees() throws IOException {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("a", 1);
+        values.put("b", 2);
+
+        assertFalse(isSame(values, "{\"b\": 2, \"a\": 1}"));
+        assertFalse(isSame(1, "1"));
+        assertFalse(isSame("text", "\"text\""));
+    }
+
+    @Test
+    public void testShouldCompareNumbersWithinTheTolerance() throws IOException {
+        NumericTolerance tolerance = NumericTolerance.absolute(0.01);
+
+        assertTrue(ComparingJsonWriter.isSame(gson, Arrays.asList(1, 2.5), new StringReader("[1.005, 2.5]"), tolerance));
+        assertFalse(ComparingJsonWriter.isSame(gson, Arrays.asList(1, 2.5), new StringReader("[1.02, 2.5]"), tolerance));
+    }
+
+    @Test
+    public void testShouldCompareTheElementsOfFloatArraysAsNumbers() throws IOException {
+        Gson gson = GsonProvider.gson(new MatcherConfiguration(), emptySet());
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("floats", new float[] {0.1f, -2.5f, 1024f, 0f});
+
+        assertTrue(ComparingJsonWriter.isSame(gson, values, new StringReader(gson.toJson(values))));
+        assertTrue(ComparingJsonWriter.isSame(gson, values, new StringReader("[{\"floats\": [0.1, -2.5, 1.024E3, 0]}]")));
+        assertFalse(ComparingJsonWriter.isSame(gson, values, new StringReader("[{\"floats\": [0.1, -2.5, 1.024E3, 1]}]")));
+        assertFalse(ComparingJsonWriter.isSame(gson, values, new StringReader("[{\"floats\": [0.1, -2.5, 1.024E3, \"0\"]}]")));
+    }
+
+    @Test
+    public void testShouldFailOnMalformedJson() {
+        assertThrows(IOException.class, () -> isSame(Arrays.asList(1, 2), "[1, 2"));
+    }
+
+    private boolean isSame(Object value, String json) throws IOException {
+        return ComparingJsonWriter.isSame(gson, value, new StringReader(json));
+    }
+}
@@ -0,0 +1,329 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import static com.github.karsaig.approvalcrest.testdata.Bean.Builder.bean;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hamcrest.Description;
+import org.hamcrest.Matcher;
+import org.hamcrest.TypeSafeMatcher;
+import org.junit.jupiter.api.Test;
+
+import com.github.karsaig.approvalcrest.ByteArrayEncoding;
+import com.github.karsaig.approvalcrest.FieldsIgnorer;
+import com.github.karsaig.approvalcrest.MatcherConfiguration;
+import com.github.karsaig.approvalcrest.matcher.CircularReferenceTrackingTypeAdapterFactory.CircularReferenceFoundException;
+import com.github.karsaig.approvalcrest.testdata.Bean;
+import com.github.karsaig.approvalcrest.testdata.ChildBean;
+import com.github.karsaig.approvalcrest.testdata.cyclic.One;
+
+import com.google.common.cache.CacheStats;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSerializer;
+
+/**
+ * Unit test for the {@link Gson} instances of {@link GsonProvider}.
+ */
+public class GsonProviderTest {
+    private static final JsonParser PARSER = new JsonParser();
+
+    @Test
+    public void testShouldReturnCachedInstanceForEqualConfiguration() {
+        Matcher<String> version = is("version");
+        MatcherConfiguration first = new MatcherConfiguration().addTypeToIgnore(Bean.class).addPatternToIgnore(version);
+        MatcherConfiguration second = new MatcherConfiguration().addTypeToIgnore(Bean.class).addPatternToIgnore(version);
+
+        CacheStats before = GsonProvider.cacheStats();
+        Gson firstGson = GsonProvider.gson(first, emptySet());
+        Gson secondGson = GsonProvider.gson(second, emptySet());
+        CacheStats difference = GsonProvider.cacheStats().minus(before);
+
+        assertSame(firstGson, secondGson);
+        assertEquals(1L, difference.hitCount());
+    }
+
+    @Test
+    public void testShouldNotShareInstanceBetweenDifferentPatterns() {
+        MatcherConfiguration first = new MatcherConfiguration().addPatternToIgnore(containsString("first"));
+        MatcherConfiguration second = new MatcherConfiguration().addPatternToIgnore(containsString("second"));
+
+        assertNotSame(GsonProvider.gson(first, emptySet()), GsonProvider.gson(second, emptySet()));
+    }
+
+    @Test
+    public void testShouldNotShareInstanceBetweenPatternsWithTheSameDescription() {
+        Gson ignoringString = GsonProvider.gson(new MatcherConfiguration().addPatternToIgnore(new FieldName("string")), emptySet());
+        Gson ignoringInteger = GsonProvider.gson(new MatcherConfiguration().addPatternToIgnore(new FieldName("integer")), emptySet());
+        Bean bean = bean().string("text").integer(1).build();
+
+        assertNotSame(ignoringString, ignoringInteger);
+        assertFalse(ignoringString.toJsonTree(bean).getAsJsonObject().has("string"));
+        assertTrue(ignoringString.toJsonTree(bean).getAsJsonObject().has("integer"));
+        assertTrue(ignoringInteger.toJsonTree(bean).getAsJsonObject().has("string"));
+        assertFalse(ignoringInteger.toJsonTree(bean).getAsJsonObject().has("integer"));
+    }
+
+    @Test
+    public void testShouldNotCacheInstanceForPatternWithInconsistentEquality() {
+        MatcherConfiguration configuration = new MatcherConfiguration().addPatternToIgnore(new EqualFieldName("version"));
+
+        CacheStats before = GsonProvider.cacheStats();
+        Gson first = GsonProvider.gson(configuration, emptySet());
+        Gson second = GsonProvider.gson(configuration, emptySet());
+        CacheStats difference = GsonProvider.cacheStats().minus(before);
+
+        assertNotSame(first, second);
+        assertEquals(0L, difference.requestCount());
+    }
+
+    @Test
+    public void testShouldNotShareInstanceBetweenDifferentCircularReferenceTypes() {
+        MatcherConfiguration configuration = new MatcherConfiguration();
+
+        assertNotSame(GsonProvider.gson(configuration, emptySet()), GsonProvider.gson(configuration, singleton(ChildBean.class)));
+    }
+
+    @Test
+    public void testShouldNotBeAffectedByLaterChangesOfTheConfiguration() {
+        MatcherConfiguration configuration = new MatcherConfiguration();
+        Gson gson = GsonProvider.gson(configuration, emptySet());
+
+        configuration.addTypeToIgnore(ChildBean.class);
+
+        assertNotSame(gson, GsonProvider.gson(configuration, emptySet()));
+    }
+
+    @Test
+    public void testShouldNotShareInstanceBetweenDifferentGsonConfigurations() {
+        GsonConfiguration first = new GsonConfiguration();
+        first.addTypeAdapter(Bean.class, (JsonSerializer<Bean>) (bean, type, context) -> JsonNull.INSTANCE);
+        GsonConfiguration second = new GsonConfiguration();
+        second.addTypeAdapter(Bean.class, (JsonSerializer<Bean>) (bean, type, context) -> JsonNull.INSTANCE);
+        MatcherConfiguration configuration = new MatcherConfiguration();
+
+        assertNotSame(GsonProvider.gson(configuration, emptySet(), first), GsonProvider.gson(configuration, emptySet(), second));
+        assertSame(GsonProvider.gson(configuration, emptySet(), first), GsonProvider.gson(configuration, emptySet(), first));
+    }
+
+    @Test
+    public void testShouldKeepSetElementsWithEqualJsonRepresentation() {
+        Gson gson = GsonProvider.gson(new MatcherConfiguration(), emptySet());
+        Set<Bean> set = new HashSet<>(asList(bean().string("b").build(), bean().string("a").build(), bean().string("a").build()));
+
+        JsonArray json = gson.toJsonTree(set).getAsJsonArray();
+
+        assertEquals(3, json.size());
+        assertEquals("a", json.get(0).getAsJsonObject().get("string").getAsString());
+        assertEquals("a", json.get(1).getAsJsonObject().get("string").getAsString());
+        assertEquals("b", json.get(2).getAsJsonObject().get("string").getAsString());
+    }
+
+    @Test
+    public void testShouldOrderMapEntriesByTheirKeyAndValueJsonRepresentation() {
+        Gson gson = GsonProvider.gson(new MatcherConfiguration(), emptySet());
+        Map<Object, Object> map = new HashMap<>();
+        map.put(1, 5);
+        map.put(10, "ten");
+        map.put(12, bean().string("twelve").build());
+        map.put(2L, 0);
+        map.put(-1, 3);
+        map.put(-12, 4);
+        map.put(1.5, true);
+        List<String> expectedOrder = new ArrayList<>();
+        map.entrySet().stream()
+                .sorted(Comparator.comparing(entry -> gson.toJson(entry.getKey()).concat(gson.toJson(entry.getValue()))))
+                .forEach(entry -> expectedOrder.add(String.valueOf(entry.getKey())));
+
+        JsonArray json = gson.toJsonTree(map).getAsJsonArray();
+
+        List<String> actualOrder = new ArrayList<>();
+        json.forEach(element -> actualOrder.addAll(element.getAsJsonObject().keySet()));
+        assertEquals(expectedOrder, actualOrder);
+    }
+
+    @Test
+    public void testShouldNotSerialiseIgnoredPaths() {
+        Set<String> paths = new HashSet<>(asList("string", "set.integer", "array.string", "map.integer"));
+        Map<Bean, Bean> map = new HashMap<>();
+        map.put(bean().string("key").integer(1).build(), bean().string("value").integer(2).build());
+        Bean bean = bean().string("ignored").integer(3)
+                .set(new HashSet<>(asList(bean().string("b").integer(1).build(), bean().string("a").integer(2).build())))
+                .array(bean().string("first").integer(4).build(), null)
+                .map(map)
+                .build();
+        List<MatcherConfiguration> configurations = asList(new MatcherConfiguration(),
+                new MatcherConfiguration().detectCircularReferencesWhileSerialising(),
+                new MatcherConfiguration().serialiseBeansWithAccessors());
+
+        for (MatcherConfiguration configuration : configurations) {
+            JsonElement json = GsonProvider.toJsonTree(GsonProvider.gson(configuration, emptySet()), bean, paths);
+
+            assertEquals("{\"integer\":3,\"set\":[{\"string\":\"a\"},{\"string\":\"b\"}],"
+                    + "\"map\":[[{\"string\":\"key\"},{\"string\":\"value\"}]],\"array\":[{\"integer\":4},null]}", json.toString());
+            assertEquals(json.toString(), FieldsIgnorer.findPaths(PARSER.parse(json.toString()), paths).toString());
+        }
+    }
+
+    @Test
+    public void testShouldOrderSetElementsByTheirJsonWithMarkedSetAndMapFieldNames() {
+        Set<SortedFields> set = new HashSet<>(asList(new SortedFields(null, "a"), new SortedFields(singleton("x"), "b"),
+                new SortedFields(null, "c")));
+        List<MatcherConfiguration> configurations = asList(new MatcherConfiguration(),
+                new MatcherConfiguration().detectCircularReferencesWhileSerialising(),
+                new MatcherConfiguration().serialiseBeansWithAccessors());
+
+        for (MatcherConfiguration configuration : configurations) {
+            Gson gson = GsonProvider.gson(configuration, emptySet());
+
+            // the order approved while the marked field names were written to the Json
+            assertEquals("[{\"zset\":[\"x\"],\"alpha\":\"b\"},{\"alpha\":\"a\"},{\"alpha\":\"c\"}]",
+                    gson.toJsonTree(set).toString());
+            assertEquals("[{\"zset\":[\"x\"]},{},{}]", GsonProvider.toJsonTree(gson, set, singleton("alpha")).toString());
+            assertEquals("[{\"zset\":[\"x\"]},{},{}]", GsonProvider.toReorderedJsonTree(gson, set, singleton("alpha")).toString());
+        }
+    }
+
+    @Test
+    public void testShouldKeepTheOrderOfTheFullySerialisedElementsOfOtherSets() {
+        Gson gson = GsonProvider.gson(new MatcherConfiguration(), emptySet());
+        Set<Bean> set = new HashSet<>(asList(bean().string("b").integer(1).build(), bean().string("a").integer(2).build()));
+
+        JsonElement json = GsonProvider.toJsonTree(gson, set, singleton("string"));
+
+        assertEquals(PARSER.parse("[{\"integer\": 2}, {\"integer\": 1}]"), json);
+    }
+
+    @Test
+    public void testShouldThrowOnCircularReferenceWhenDetectingWhileSerialising() {
+        MatcherConfiguration configuration = new MatcherConfiguration().detectCircularReferencesWhileSerialising();
+        One parent = new One();
+        One child = new One();
+        parent.setGenericObject(child);
+        child.setGenericObject(parent);
+        Gson gson = GsonProvider.gson(configuration, emptySet());
+
+        assertThrows(CircularReferenceFoundException.class, () -> gson.toJson(parent));
+    }
+
+    @Test
+    public void testShouldSerialiseSharedObjectsWhenDetectingWhileSerialising() {
+        MatcherConfiguration configuration = new MatcherConfiguration().detectCircularReferencesWhileSerialising();
+        One shared = new One();
+        List<One> list = asList(shared, shared);
+
+        assertEquals(GsonProvider.gson(new MatcherConfiguration(), emptySet()).toJson(list),
+                GsonProvider.gson(configuration, emptySet()).toJson(list));
+    }
+
+    @Test
+    public void testShouldNotTrackWhenCircularReferenceTypesAreKnown() {
+        MatcherConfiguration configuration = new MatcherConfiguration().detectCircularReferencesWhileSerialising();
+        One parent = new One();
+        One child = new One();
+        parent.setGenericObject(child);
+        child.setGenericObject(parent);
+
+        GsonProvider.gson(configuration, singleton(One.class)).toJson(parent);
+    }
+
+    @Test
+    public void testShouldWritePrimitiveArraysLikeGson() {
+        Gson gson = GsonProvider.gson(new MatcherConfiguration(), emptySet());
+        Gson plainGson = new GsonBuilder().setPrettyPrinting().create();
+        PrimitiveArrays arrays = new PrimitiveArrays();
+
+        assertEquals(plainGson.toJson(arrays), gson.toJson(arrays));
+        assertEquals(plainGson.toJsonTree(arrays), gson.toJsonTree(arrays));
+        assertThrows(IllegalArgumentException.class, () -> gson.toJson(new double[]{1.0, Double.NaN}));
+    }
+
+    @Test
+    public void testShouldEncodeByteArrays() {
+        byte[] bytes = {0, 1, -1, 127, -128};
+
+        assertEquals("\"AAH/f4A\\u003d\"", GsonProvider.gson(new MatcherConfiguration().encodeByteArraysAs(ByteArrayEncoding.BASE64), emptySet()).toJson(bytes));
+        assertEquals("\"0001ff7f80\"", GsonProvider.gson(new MatcherConfiguration().encodeByteArraysAs(ByteArrayEncoding.HEX), emptySet()).toJson(bytes));
+    }
+
+    @SuppressWarnings("unused")
+    private static class PrimitiveArrays {
+        private final int[] ints = {0, -1, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        private final long[] longs = {0L, Long.MAX_VALUE, Long.MIN_VALUE};
+        private final double[] doubles = {0.0, -0.0, 0.1, 1e20, Double.MIN_VALUE, Double.MAX_VALUE};
+        private final float[] floats = {0.0f, 1.1f, 3.4e38f, Float.MIN_VALUE};
+        private final byte[] bytes = {0, 1, -1, Byte.MAX_VALUE, Byte.MIN_VALUE};
+        private final Object arrayAsObject = new double[]{2.5};
+        private final int[] nullArray = null;
+    }
+
+    /**
+     * Matches a single field name, every instance has the same description.
+     */
+    private static class FieldName extends TypeSafeMatcher<String> {
+        private final String name;
+
+        FieldName(String name) {
+            this.name = name;
+        }
+
+        @Override
+        protected boolean matchesSafely(String item) {
+            return name.equals(item);
+        }
+
+        @Override
+        public void describeTo(Description description) {
+            description.appendText("a field name");
+        }
+    }
+
+    /**
+     * Overrides equals without hashCode.
+     */
+    private static final class EqualFieldName extends FieldName {
+        EqualFieldName(String name) {
+            super(name);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof EqualFieldName;
+        }
+    }
+
+    /**
+     * Declares a set field, whose name sorts after the other field unless it is marked.
+     */
+    @SuppressWarnings("unused")
+    private static final class SortedFields {
+        private final Set<String> zset;
+        private final String alpha;
+
+        SortedFields(Set<String> zset, String alpha) {
+            this.zset = zset;
+            this.alpha = alpha;
+        }
+    }
+}
@@ -5,7 +5,12 @@ import static org.junit.jupiter.api.Assertions.assertIterableEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Stream;
 
 import org.hamcrest.MatcherAssert;
 import org.junit.jupiter.api.Assertions;
@@ -15,6 +20,7 @@ import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 
+import com.github.karsaig.approvalcrest.ComparisonDescription;
 import com.github.karsaig.approvalcrest.testdata.BeanWithPrimitives;
 
 /**
@@ -80,5 +86,98 @@ public class JsonMatcherTest extends AbstractFileMatcherTest {
         });
     }
 
+    @Test
+    public void testRunShouldCreateNotApprovedFileWithHtmlEscapingOfGson() throws IOException {
+        String actual = "{ \"text\": \"a=b <c> & 'd' \\u2028\\t\" }";
+        inMemoryFs((fs, path) -> {
+            DummyInformation dummyTestInfo = new DummyInformation(path, "JsonMatcherTest", "testRunShouldCreateNotApprovedFileWithHtmlEscapingOfGson");
+            JsonMatcher<String> underTest = new JsonMatcher<>(dummyTestInfo);
+
+            assertThrows(AssertionError.class, () -> MatcherAssert.assertThat(actual, underTest));
+
+            List<InMemoryFiles> files = getFiles(fs);
+            InMemoryFiles expected = new InMemoryFiles("8c5498/981fc6-not-approved.json", "/*JsonMatcherTest.testRunShouldCreateNotApprovedFileWithHtmlEscapingOfGson*/\n" +
+                    "{\n" +
+                    "  \"text\": \"a\\u003db \\u003cc\\u003e \\u0026 \\u0027d\\u0027 \\u2028\\t\"\n" +
+                    "}");
+
+            assertIterableEquals(files, singletonList(expected));
+        });
+    }
 
+    @Test
+    public void testRunShouldMatchTheApprovedFileAsItWasWritten() throws IOException {
+        BeanWithPrimitives actual = getBeanWithPrimitives();
+        inMemoryFs((fs, path) -> {
+            DummyInformation dummyTestInfo = new DummyInformation(path, "JsonMatcherTest", "testRunShouldMatchTheApprovedFileAsItWasWritten");
+            assertThrows(AssertionError.class, () -> MatcherAssert.assertThat(actual, new JsonMatcher<>(dummyTestInfo)));
+            try {
+                Path directory = path.resolve("8c5498");
+                try (Stream<Path> created = Files.list(directory)) {
+                    Path notApproved = created.findFirst().get();
+                    Files.move(notApproved, directory.resolve(notApproved.getFileName().toString().replace("not-approved", "approved")));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+
+            Assertions.assertTrue(new JsonMatcher<>(dummyTestInfo).matches(actual));
+            Assertions.assertTrue(new JsonMatcher<>(dummyTestInfo).matches(getBeanWithPrimitives()));
+            Assertions.assertFalse(new JsonMatcher<>(dummyTestInfo).matches(BeanWithPrimitives.Builder.beanWithPrimitives().build()));
+        });
+    }
+
+    @Test
+    public void testRunShouldLimitTheDiagnosticsAndWriteTheReceivedFile() throws IOException {
+        String approved = "{\"a\": 1, \"b\": [1, 2, 3, 4, 5], \"c\": \"x\"}";
+        String actual = "{\"a\": 7, \"b\": [1, 2, 9, 4, 5], \"c\": \"y\"}";
+        inMemoryFs((fs, path) -> {
+            DummyInformation dummyTestInfo = new DummyInformation(path, "JsonMatcherTest", "testRunShouldLimitTheDiagnosticsAndWriteTheReceivedFile");
+            assertThrows(AssertionError.class, () -> MatcherAssert.assertThat(approved, new JsonMatcher<>(dummyTestInfo)));
+            Path directory = path.resolve("8c5498");
+            try {
+                try (Stream<Path> created = Files.list(directory)) {
+                    Path notApproved = created.findFirst().get();
+                    Files.move(notApproved, directory.resolve(notApproved.getFileName().toString().replace("not-approved", "approved")));
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            ComparisonDescription description = new ComparisonDescription();
+
+            Assertions.assertFalse(new JsonMatcher<String>(dummyTestInfo).ignoring("a").limitDiagnostics(1, 1).matches(actual, description));
+
+            Assertions.assertEquals("...\n    2,\n    3,\n    4,\n...\n}", description.getExpected());
+            Assertions.assertEquals("...\n    2,\n    9,\n    4,\n...\n}", description.getActual());
+            Assertions.assertTrue(description.getDifferencesMessage().contains("b[2]\nExpected: 3\n     got: 9\n ; ... and more differences\n"));
+            List<InMemoryFiles> received = new ArrayList<>();
+            for (InMemoryFiles file : getFiles(fs)) {
+                if (file.getPath().endsWith("-received.json")) {
+                    received.add(file);
+                }
+            }
+            Assertions.assertEquals(1, received.size());
+            Assertions.assertTrue(description.getDifferencesMessage().endsWith("Full actual Json written to '" + received.get(0).getPath() + "'"));
+            Assertions.assertEquals("/*JsonMatcherTest.testRunShouldLimitTheDiagnosticsAndWriteTheReceivedFile*/\n" +
+                    "{\n" +
+                    "  \"a\": 7,\n" +
+                    "  \"b\": [\n" +
+                    "    1,\n" +
+                    "    2,\n" +
+                    "    9,\n" +
+                    "    4,\n" +
+                    "    5\n" +
+                    "  ],\n" +
+                    "  \"c\": \"y\"\n" +
+                    "}", received.get(0).getContent());
+
+            Assertions.assertTrue(new JsonMatcher<String>(dummyTestInfo).matches(approved));
+            Assertions.assertTrue(getFiles(fs).contains(received.get(0)));
+
+            Assertions.assertTrue(new JsonMatcher<String>(dummyTestInfo).limitDiagnostics(1, 1).matches(approved));
+            for (InMemoryFiles file : getFiles(fs)) {
+                Assertions.assertFalse(file.getPath().endsWith("-received.json"), file.getPath());
+            }
+        });
+    }
 }
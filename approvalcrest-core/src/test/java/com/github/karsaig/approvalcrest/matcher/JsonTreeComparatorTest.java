@@ -0,0 +1,291 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.json.JSONException;
+import org.junit.jupiter.api.Test;
+import org.skyscreamer.jsonassert.JSONAssert;
+
+import com.github.karsaig.approvalcrest.MatcherConfiguration;
+import com.github.karsaig.approvalcrest.NumericTolerance;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+/**
+ * Unit test for {@link JsonTreeComparator}, checking it against JSONAssert in strict mode.
+ */
+public class JsonTreeComparatorTest {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final JsonParser PARSER = new JsonParser();
+    private static final List<String> DOCUMENTS = asList(
+            "{}",
+            "[]",
+            "{\"a\": 1}",
+            "{\"a\": 1.0}",
+            "{\"a\": 2}",
+            "{\"a\": \"1\"}",
+            "{\"a\": null}",
+            "{\"a\": true}",
+            "{\"a\": 1, \"b\": [1, 2]}",
+            "{\"b\": [1, 2], \"a\": 1}",
+            "{\"a\": 1, \"b\": [2, 1]}",
+            "{\"a\": 1, \"b\": [1, 2, 3]}",
+            "{\"a\": 1, \"b\": {\"c\": [null, {}]}}",
+            "{\"a\": 1, \"b\": {\"c\": [null, []]}}",
+            "{\"a\": 1, \"b\": {\"c\": [1, {}]}}",
+            "[{\"a\": 1}, {\"a\": 2}]",
+            "[{\"a\": 2}, {\"a\": 1}]",
+            "[null]",
+            "[\"null\"]",
+            "[9007199254740993]",
+            "[9007199254740992]",
+            "[1E+3]",
+            "[1000]",
+            "\"text\"",
+            "\"other\"",
+            "1",
+            "1.0",
+            "true",
+            "null");
+
+    @Test
+    public void testShouldGiveTheSameVerdictAsJsonAssert() {
+        for (String expected : DOCUMENTS) {
+            for (String actual : DOCUMENTS) {
+                JsonElement expectedTree = PARSER.parse(expected);
+                JsonElement actualTree = PARSER.parse(actual);
+                String jsonAssertMessage = jsonAssertMessage(GSON.toJson(expectedTree), GSON.toJson(actualTree));
+
+                JsonTreeComparator.Result result = JsonTreeComparator.compare(expectedTree, actualTree);
+
+                String comparison = expected + " <-> " + actual;
+                assertEquals(jsonAssertMessage == null, JsonTreeComparator.areEqual(expectedTree, actualTree), comparison);
+                assertEquals(jsonAssertMessage == null, result.passed(), comparison);
+                if (jsonAssertMessage != null && !expectedTree.isJsonPrimitive() && !actualTree.isJsonPrimitive()) {
+                    assertEquals(jsonAssertMessage, result.getMessage(), comparison);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testShouldCollectThePathsOfTheDifferences() {
+        JsonElement expected = PARSER.parse("{\"a\": 1, \"b\": {\"c\": [1, 2]}, \"d\": 1}");
+        JsonElement actual = PARSER.parse("{\"a\": 2, \"b\": {\"c\": [1, 3]}, \"e\": 1}");
+
+        JsonTreeComparator.Result result = JsonTreeComparator.compare(expected, actual);
+
+        assertFalse(result.passed());
+        assertEquals(asList("a", "b.c[1]", "d", "e"), result.getDifferencePaths());
+    }
+
+    @Test
+    public void testShouldFindTheSameDifferencesBySubtreeHashes() {
+        for (String expected : DOCUMENTS) {
+            for (String actual : DOCUMENTS) {
+                JsonElement expectedTree = PARSER.parse(expected);
+                JsonElement actualTree = PARSER.parse(actual);
+
+                JsonTreeComparator.Result result = JsonTreeComparator.compare(expectedTree, actualTree);
+                JsonTreeComparator.Result resultByHashes = JsonTreeComparator.compareBySubtreeHashes(expectedTree, actualTree);
+
+                String comparison = expected + " <-> " + actual;
+                assertEquals(result.passed(), resultByHashes.passed(), comparison);
+                assertEquals(result.getMessage(), resultByHashes.getMessage(), comparison);
+                assertEquals(result.getDifferencePaths(), resultByHashes.getDifferencePaths(), comparison);
+            }
+        }
+    }
+
+    @Test
+    public void testShouldFindTheDifferencesOfLargeArraysBySubtreeHashes() {
+        JsonArray expected = new JsonArray();
+        JsonArray actual = new JsonArray();
+        for (int i = 0; i < 10_000; i++) {
+            expected.add(PARSER.parse("{\"id\": " + i + ", \"values\": [1, 2.5, \"three\"], \"empty\": null}"));
+            actual.add(PARSER.parse("{\"values\": [1, 2.5, \"three\"], \"id\": " + (i == 4321 ? -1 : i) + ".0}"));
+        }
+
+        JsonTreeComparator.Result result = JsonTreeComparator.compareBySubtreeHashes(expected, actual);
+
+        assertFalse(result.passed());
+        assertEquals(asList("[4321].id"), result.getDifferencePaths());
+    }
+
+    @Test
+    public void testShouldCompareUnorderedArraysRegardlessOfTheOrder() {
+        MatcherConfiguration configuration = new MatcherConfiguration().addUnorderedArrayPath("orders.lines");
+        JsonElement expected = PARSER.parse("{\"orders\": [{\"lines\": [1, {\"a\": [1, 2]}, 1, \"x\"]}, {\"lines\": [2, 3]}]}");
+        JsonElement actual = PARSER.parse("{\"orders\": [{\"lines\": [\"x\", 1.0, {\"a\": [1, 2]}, 1]}, {\"lines\": [3, 2]}]}");
+
+        assertTrue(JsonTreeComparator.areEqual(expected, actual, configuration));
+        assertTrue(JsonTreeComparator.compare(expected, actual, configuration).passed());
+        assertTrue(JsonTreeComparator.compareBySubtreeHashes(expected, actual, configuration).passed());
+        assertFalse(JsonTreeComparator.areEqual(expected, actual));
+    }
+
+    @Test
+    public void testShouldReportTheUnmatchedElementsOfUnorderedArrays() {
+        MatcherConfiguration configuration = new MatcherConfiguration().addUnorderedArrayPath("lines");
+        JsonElement expected = PARSER.parse("{\"lines\": [1, {\"a\": [1, 2]}, 1, 4]}");
+        JsonElement actual = PARSER.parse("{\"lines\": [{\"a\": [2, 1]}, 1, 4, 5, 1]}");
+
+        JsonTreeComparator.Result result = JsonTreeComparator.compare(expected, actual, configuration);
+
+        assertFalse(JsonTreeComparator.areEqual(expected, actual, configuration));
+        assertFalse(result.passed());
+        assertEquals(asList("lines[1]", "lines[0]", "lines[3]"), result.getDifferencePaths());
+        assertEquals("lines[]\nExpected: {\"a\":[1,2]}\n     but none found\n ; "
+                + "lines[]\nUnexpected: {\"a\":[2,1]}\n ; "
+                + "lines[]\nUnexpected: 5\n", result.getMessage());
+        assertEquals(result.getDifferencePaths(), JsonTreeComparator.compareBySubtreeHashes(expected, actual, configuration).getDifferencePaths());
+    }
+
+    @Test
+    public void testShouldReportTheDifferencesOfArraysAlignedByKey() {
+        MatcherConfiguration configuration = new MatcherConfiguration().alignArraysBy("items", "id");
+        JsonElement expected = PARSER.parse("{\"items\": [{\"id\": 1, \"v\": \"a\"}, {\"id\": 2, \"v\": \"b\"}, {\"id\": 3, \"v\": \"c\"}]}");
+        JsonElement actual = PARSER.parse("{\"items\": [{\"id\": 0, \"v\": \"new\"}, {\"id\": 1, \"v\": \"a\"}, {\"id\": 3, \"v\": \"changed\"}]}");
+
+        JsonTreeComparator.Result result = JsonTreeComparator.compare(expected, actual, configuration);
+
+        assertFalse(result.passed());
+        assertEquals(asList("items[1]", "items[2].v", "items[0]"), result.getDifferencePaths());
+        assertEquals("items[1]\nExpected: {\"id\":2,\"v\":\"b\"}\n     but none found\n ; "
+                + "items[2].v\nExpected: c\n     got: changed\n ; "
+                + "items[0]\nUnexpected: {\"id\":0,\"v\":\"new\"}\n", result.getMessage());
+    }
+
+    @Test
+    public void testShouldReportTheOrderOfArraysAlignedByKey() {
+        MatcherConfiguration configuration = new MatcherConfiguration().alignArraysBy("items", "id");
+        JsonElement expected = PARSER.parse("{\"items\": [{\"id\": 1}, {\"id\": 2}]}");
+        JsonElement actual = PARSER.parse("{\"items\": [{\"id\": 2}, {\"id\": 1}]}");
+
+        JsonTreeComparator.Result result = JsonTreeComparator.compare(expected, actual, configuration);
+
+        assertFalse(result.passed());
+        assertEquals(asList("items"), result.getDifferencePaths());
+        assertTrue(JsonTreeComparator.compare(expected, expected, configuration).passed());
+    }
+
+    @Test
+    public void testShouldReportTheDifferencesOfArraysAlignedByTheirCommonSubsequence() {
+        MatcherConfiguration configuration = new MatcherConfiguration().alignArrays();
+        JsonArray expected = new JsonArray();
+        JsonArray actual = new JsonArray();
+        actual.add(PARSER.parse("{\"id\": -1}"));
+        for (int i = 0; i < 50_000; i++) {
+            expected.add(PARSER.parse("{\"id\": " + i + "}"));
+            actual.add(PARSER.parse("{\"id\": " + (i == 30_000 ? -2 : i) + "}"));
+        }
+
+        JsonTreeComparator.Result result = JsonTreeComparator.compare(expected, actual, configuration);
+
+        assertFalse(result.passed());
+        assertEquals(asList("[0]", "[30000].id"), result.getDifferencePaths());
+        assertEquals(asList(""), JsonTreeComparator.compare(expected, actual).getDifferencePaths());
+    }
+
+    @Test
+    public void testShouldTreatNullMembersAsAbsent() {
+        JsonElement expected = PARSER.parse("{\"a\": 1, \"b\": null}");
+        JsonElement actual = PARSER.parse("{\"a\": 1}");
+
+        assertTrue(JsonTreeComparator.areEqual(expected, actual));
+    }
+
+    @Test
+    public void testShouldCompareBoxedNumbersLikeTheirText() {
+        List<Number> numbers = asList(1, 1L, 2L, (short) 1, (byte) 1, 1.0, 1.1, 1.1f, 1.5f, 1.5, 9007199254740993L, 9007199254740992L, -0.0, 0.0f);
+        for (Number expected : numbers) {
+            for (Number actual : numbers) {
+                boolean textsAreEqual = JsonTreeComparator.areEqual(PARSER.parse("[" + expected + "]"), PARSER.parse("[" + actual + "]"));
+
+                boolean equal = JsonTreeComparator.areEqual(array(new JsonPrimitive(expected)), array(new JsonPrimitive(actual)));
+
+                assertEquals(textsAreEqual, equal, expected + " <-> " + actual);
+            }
+        }
+    }
+
+    @Test
+    public void testShouldCompareNumbersWithinTheToleranceOfTheirPath() {
+        MatcherConfiguration configuration = new MatcherConfiguration()
+                .withNumericTolerance(NumericTolerance.absolute(0.01))
+                .withNumericTolerance("lines.price", NumericTolerance.relative(1e-3))
+                .withNumericTolerance("weights", NumericTolerance.ulps(1));
+        JsonElement expected = PARSER.parse("{\"total\": 10.0, \"lines\": [{\"price\": 1000.0}, {\"price\": 2000}], \"weights\": [0.1, 0.2]}");
+        JsonElement actual = PARSER.parse("{\"total\": 10.005, \"lines\": [{\"price\": 1000.5}, {\"price\": 2003}], \"weights\": [0.1, 0.20000000000000004]}");
+
+        JsonTreeComparator.Result result = JsonTreeComparator.compare(expected, actual, configuration);
+
+        assertEquals(asList("lines[1].price"), result.getDifferencePaths());
+        assertEquals("lines[1].price\nExpected: 2000\n     got: 2003\n", result.getMessage());
+        assertFalse(JsonTreeComparator.areEqual(expected, actual, configuration));
+        assertEquals(asList("lines[1].price"), JsonTreeComparator.compareBySubtreeHashes(expected, actual, configuration).getDifferencePaths());
+    }
+
+    @Test
+    public void testShouldCompareTopLevelNumbersWithinTheTolerance() {
+        MatcherConfiguration configuration = new MatcherConfiguration().withNumericTolerance(NumericTolerance.absolute(0.5));
+
+        assertTrue(JsonTreeComparator.areEqual(PARSER.parse("1"), PARSER.parse("1.25"), configuration));
+        assertFalse(JsonTreeComparator.areEqual(PARSER.parse("1"), PARSER.parse("2"), configuration));
+        assertFalse(JsonTreeComparator.areEqual(PARSER.parse("1"), PARSER.parse("1.25")));
+    }
+
+    @Test
+    public void testShouldKeepThePositionalVerdictOfAlignedArraysWithinTheTolerance() {
+        MatcherConfiguration configuration = new MatcherConfiguration().withNumericTolerance(NumericTolerance.absolute(0.1)).alignArrays();
+        JsonElement expected = PARSER.parse("[1.0, 1.05]");
+        JsonElement actual = PARSER.parse("[1.05, 1.1]");
+
+        assertTrue(JsonTreeComparator.compare(expected, actual, configuration).passed());
+    }
+
+    @Test
+    public void testShouldDescribeTheFirstDifferences() {
+        JsonElement expected = PARSER.parse("{\"a\": 1, \"b\": 2, \"c\": 3}");
+        JsonElement actual = PARSER.parse("{\"a\": 4, \"b\": 5, \"c\": 6}");
+
+        JsonTreeComparator.Result first = JsonTreeComparator.compare(expected, actual, new MatcherConfiguration().limitDiagnostics(1, 0));
+        JsonTreeComparator.Result firstTwo = JsonTreeComparator.compareBySubtreeHashes(expected, actual, new MatcherConfiguration().limitDiagnostics(2, 0));
+        JsonTreeComparator.Result all = JsonTreeComparator.compare(expected, actual, new MatcherConfiguration().limitDiagnostics(3, 0));
+
+        assertFalse(first.passed());
+        assertTrue(first.hasMoreDifferences());
+        assertEquals("a\nExpected: 1\n     got: 4\n ; ... and more differences", first.getMessage());
+        assertEquals(asList("a"), first.getDifferencePaths());
+        assertTrue(firstTwo.hasMoreDifferences());
+        assertEquals(asList("a", "b"), firstTwo.getDifferencePaths());
+        assertFalse(all.hasMoreDifferences());
+        assertEquals(JsonTreeComparator.compare(expected, actual).getMessage(), all.getMessage());
+        assertEquals(asList("a", "b", "c"), all.getDifferencePaths());
+    }
+
+    private static JsonArray array(JsonElement element) {
+        JsonArray array = new JsonArray();
+        array.add(element);
+        return array;
+    }
+
+    private static String jsonAssertMessage(String expected, String actual) {
+        try {
+            JSONAssert.assertEquals(expected, actual, true);
+            return null;
+        } catch (AssertionError | JSONException e) {
+            return e.getMessage();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import static java.util.Collections.emptySet;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import com.github.karsaig.approvalcrest.MatcherConfiguration;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+/**
+ * Measures the serialisation and the comparison of a large double array, against the array adapter of {@link Gson} and
+ * the comparison of the Json trees.
+ * <p>
+ * Not part of the test suite, run it from the IDE or with the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PrimitiveArrayBenchmark {
+
+    @Param({"1000000"})
+    private int size;
+
+    private Gson gson;
+    private Gson plainGson;
+    private double[] expected;
+    private double[] actual;
+
+    @Setup
+    public void setUp() {
+        gson = GsonProvider.gson(new MatcherConfiguration(), emptySet());
+        plainGson = new GsonBuilder().setPrettyPrinting().create();
+        Random random = new Random(42);
+        expected = new double[size];
+        for (int i = 0; i < size; i++) {
+            expected[i] = random.nextDouble();
+        }
+        actual = expected.clone();
+    }
+
+    @Benchmark
+    public String serialiseWithArrayAdapter() {
+        return plainGson.toJson(expected);
+    }
+
+    @Benchmark
+    public String serialiseWithPrimitiveArrayAdapter() {
+        return gson.toJson(expected);
+    }
+
+    @Benchmark
+    public boolean compareJsonTrees() {
+        return JsonTreeComparator.areEqual(plainGson.toJsonTree(expected), plainGson.toJsonTree(actual));
+    }
+
+    @Benchmark
+    public boolean matchPrimitiveArrays() {
+        return new DiagnosingCustomisableMatcher<>(expected).matches(actual);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(PrimitiveArrayBenchmark.class.getSimpleName()).build()).run();
+    }
+}
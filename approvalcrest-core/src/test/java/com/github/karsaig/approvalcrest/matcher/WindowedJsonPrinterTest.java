@@ -0,0 +1,75 @@
+package com.github.karsaig.approvalcrest.matcher;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+/**
+ * Unit test for the {@link WindowedJsonPrinter}.
+ */
+public class WindowedJsonPrinterTest {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final JsonParser PARSER = new JsonParser();
+
+    @Test
+    public void testShouldPrintTheWholeJsonWithinTheWindow() {
+        JsonElement json = PARSER.parse("{\"a\": [1, 2, {\"b\": null}], \"c\": {}, \"d\": \"<e>\"}");
+
+        assertEquals(GSON.toJson(json), WindowedJsonPrinter.toJson(GSON, json, singletonList(""), 100));
+    }
+
+    @Test
+    public void testShouldPrintTheLinesAroundThePaths() {
+        JsonElement json = PARSER.parse("{\"a\": 1, \"b\": [1, 2, 3, 4, 5, 6, 7, 8], \"c\": \"x\"}");
+
+        String printed = WindowedJsonPrinter.toJson(GSON, json, asList("b[2]", "b[6]"), 1);
+
+        assertEquals("...\n" +
+                "    2,\n" +
+                "    3,\n" +
+                "    4,\n" +
+                "...\n" +
+                "    6,\n" +
+                "    7,\n" +
+                "    8\n" +
+                "...\n" +
+                "}", printed);
+    }
+
+    @Test
+    public void testShouldPrintMissingPathsAtTheirClosestAncestor() {
+        JsonArray items = new JsonArray();
+        for (int i = 0; i < 100; i++) {
+            JsonObject item = new JsonObject();
+            item.addProperty("id", i);
+            items.add(item);
+        }
+        JsonObject json = new JsonObject();
+        json.add("items", items);
+
+        String printed = WindowedJsonPrinter.toJson(GSON, json, singletonList("items[50].name"), 1);
+
+        assertEquals("...\n" +
+                "    },\n" +
+                "    {\n" +
+                "      \"id\": 50\n" +
+                "...\n" +
+                "}", printed);
+    }
+
+    @Test
+    public void testShouldPrintTopLevelValues() {
+        assertEquals("null", WindowedJsonPrinter.toJson(GSON, JsonNull.INSTANCE, singletonList(""), 0));
+        assertEquals("5", WindowedJsonPrinter.toJson(GSON, PARSER.parse("5"), singletonList("[3].x"), 0));
+    }
+}
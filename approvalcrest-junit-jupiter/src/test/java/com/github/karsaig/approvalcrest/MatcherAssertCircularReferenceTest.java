@@ -169,4 +169,39 @@ public class MatcherAssertCircularReferenceTest {
 			assertThat(e.getActual().getValue().toString(), not(containsString("0x1")));
 		}
 	}
-}
\ No newline at end of file
+
+	@Test
+	public void shouldMatchCircularReferencesWhenDetectingThemWhileSerialising() {
+		Four root = new Four();
+		Four child = new Four();
+		root.setGenericObject(child);
+		child.setGenericObject(root); // circular
+
+		assertThat(root, sameBeanAs(root).detectCircularReferencesWhileSerialising());
+	}
+
+	@Test
+	public void shouldReportDifferentCircularReferencesWhenDetectingThemWhileSerialising() {
+		One expected = new One();
+		One expectedChild = new One();
+		expected.setGenericObject(expectedChild);
+		expectedChild.setGenericObject(expected);
+
+		Two actual = new Two();
+		Two actualChild = new Two();
+		actual.setGenericObject(actualChild);
+		actualChild.setGenericObject(actual);
+
+		assertThrows(AssertionFailedError.class, () -> {
+			assertThat(actual, sameBeanAs((Object) expected).detectCircularReferencesWhileSerialising());
+		});
+	}
+
+	@Test
+	public void shouldMatchBeansWithoutCircularReferencesWhenDetectingThemWhileSerialising() {
+		CircularReferenceBean expected = circularReferenceBean("parent", "child1", "child2").build();
+		CircularReferenceBean actual = circularReferenceBean("parent", "child1", "child2").build();
+
+		assertThat(actual, sameBeanAs(expected).detectCircularReferencesWhileSerialising());
+	}
+}
@@ -0,0 +1,87 @@
+package com.github.karsaig.approvalcrest;
+
+import static com.github.karsaig.approvalcrest.MatcherAssert.assertThat;
+import static com.github.karsaig.approvalcrest.matcher.Matchers.sameBeanAs;
+import static com.github.karsaig.approvalcrest.matchers.ComparisonFailureMatchers.actual;
+import static com.github.karsaig.approvalcrest.matchers.ComparisonFailureMatchers.checkThat;
+import static com.github.karsaig.approvalcrest.matchers.ComparisonFailureMatchers.expected;
+import static com.github.karsaig.approvalcrest.matchers.ComparisonFailureMatchers.message;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import org.junit.jupiter.api.Test;
+import org.opentest4j.AssertionFailedError;
+
+/**
+ * MatcherAssert tests checking the comparison of primitive arrays
+ */
+public class MatcherAssertPrimitiveArraysTest {
+
+	@Test
+	public void matchesEqualPrimitiveArrays() {
+		assertThat(new int[]{1, 2, 3}, sameBeanAs(new int[]{1, 2, 3}));
+		assertThat(new long[]{1L, Long.MAX_VALUE}, sameBeanAs(new long[]{1L, Long.MAX_VALUE}));
+		assertThat(new double[]{0.1, -0.0}, sameBeanAs(new double[]{0.1, 0.0}));
+		assertThat(new float[]{1.1f}, sameBeanAs(new float[]{1.1f}));
+		assertThat(new byte[]{1, -1}, sameBeanAs(new byte[]{1, -1}));
+	}
+
+	@Test
+	public void matchesPrimitiveArraysInAnyOrderWhenTheRootIsUnordered() {
+		assertThat(new int[]{3, 1, 2}, sameBeanAs(new int[]{1, 2, 3}).withUnorderedArrays(""));
+		assertThat(new double[]{2.5, 0.1}, sameBeanAs(new double[]{0.1, 2.5}).withUnorderedArrays(""));
+	}
+
+	@Test
+	public void reportsTheUnmatchedElementsOfUnorderedPrimitiveArrays() {
+		try {
+			assertThat(new int[]{3, 1, 4}, sameBeanAs(new int[]{1, 2, 3}).withUnorderedArrays(""));
+			fail("Exception expected");
+		} catch (AssertionFailedError e) {
+			checkThat(e, message(startsWith("[]\nExpected: 2\n     but none found\n ; []\nUnexpected: 4\n")));
+		}
+	}
+
+	@Test
+	public void reportsTheFirstDifferingIndex() {
+		try {
+			assertThat(new double[]{1.0, 2.5, 3.5}, sameBeanAs(new double[]{1.0, 2.0, 3.0}));
+			fail("Exception expected");
+		} catch (AssertionFailedError e) {
+			checkThat(e, message(startsWith("[1]\nExpected: 2.0\n     got: 2.5\n")),
+					expected(is(equalTo("[\n  1.0,\n  2.0,\n  3.0\n]"))), actual(is(equalTo("[\n  1.0,\n  2.5,\n  3.5\n]"))));
+		}
+	}
+
+	@Test
+	public void reportsDifferentLengths() {
+		try {
+			assertThat(new int[]{1, 2, 3}, sameBeanAs(new int[]{1, 2}));
+			fail("Exception expected");
+		} catch (AssertionFailedError e) {
+			checkThat(e, message(startsWith("[]: Expected 2 values but got 3")));
+		}
+	}
+
+	@Test
+	public void comparesEncodedByteArrays() {
+		try {
+			assertThat(new byte[]{1, 3}, sameBeanAs(new byte[]{1, 2}).encodeByteArraysAs(ByteArrayEncoding.BASE64));
+			fail("Exception expected");
+		} catch (AssertionFailedError e) {
+			checkThat(e, message(startsWith("\nExpected: AQI=\n     got: AQM=\n")), expected(is(equalTo("\"AQI\\u003d\""))), actual(is(equalTo("\"AQM\\u003d\""))));
+		}
+	}
+
+	@Test
+	public void reportsTheDifferenceOfEncodedByteArraysOnTheStrings() {
+		try {
+			assertThat(new byte[]{1, 2, 3}, sameBeanAs(new byte[]{1, 2}).encodeByteArraysAs(ByteArrayEncoding.HEX));
+			fail("Exception expected");
+		} catch (AssertionFailedError e) {
+			checkThat(e, message(startsWith("\nExpected: 0102\n     got: 010203\n")), expected(is(equalTo("\"0102\""))), actual(is(equalTo("\"010203\""))));
+		}
+	}
+}
@@ -0,0 +1,26 @@
+package com.github.karsaig.approvalcrest.processor;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a bean to have its fields read by code generated at compile time, instead of reflection, when it is serialised
+ * to Json by the matchers. The {@code ApprovalSerializableProcessor} generates a {@link GeneratedFields} subclass next to
+ * the bean and registers it in {@code META-INF/services}, where the matchers discover it.
+ * <p>
+ * The processor is in the approvalcrest-processor artifact, which is only needed by the compiler, e.g. in the
+ * {@code annotationProcessorPaths} of the maven-compiler-plugin. This annotation and the types the generated code uses
+ * are in approvalcrest-processor-api.
+ * <p>
+ * The generated code can only read the fields visible from the package of the bean. Private fields are read with a
+ * private lookup of the bean on Java 9 and later, and reflectively on Java 8. The Json written is the same either way.
+ */
+@Documented
+@Retention(CLASS)
+@Target(TYPE)
+public @interface ApprovalSerializable {
+}
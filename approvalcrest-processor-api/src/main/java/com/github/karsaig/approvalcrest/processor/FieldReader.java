@@ -0,0 +1,67 @@
+package com.github.karsaig.approvalcrest.processor;
+
+/**
+ * Reads a field of a bean, generated by the {@code ApprovalSerializableProcessor}. Fields of primitive types written as
+ * numbers, booleans or characters have readers returning the primitive value without boxing.
+ */
+@FunctionalInterface
+public interface FieldReader {
+
+    /**
+     * @param bean the bean declaring the field
+     * @return the value of the field
+     */
+    Object get(Object bean);
+
+    /**
+     * Reads an int, short or byte field.
+     */
+    @FunctionalInterface
+    interface OfInt extends FieldReader {
+        int getInt(Object bean);
+
+        @Override
+        default Object get(Object bean) {
+            return getInt(bean);
+        }
+    }
+
+    /**
+     * Reads a long field.
+     */
+    @FunctionalInterface
+    interface OfLong extends FieldReader {
+        long getLong(Object bean);
+
+        @Override
+        default Object get(Object bean) {
+            return getLong(bean);
+        }
+    }
+
+    /**
+     * Reads a boolean field.
+     */
+    @FunctionalInterface
+    interface OfBoolean extends FieldReader {
+        boolean getBoolean(Object bean);
+
+        @Override
+        default Object get(Object bean) {
+            return getBoolean(bean);
+        }
+    }
+
+    /**
+     * Reads a char field.
+     */
+    @FunctionalInterface
+    interface OfChar extends FieldReader {
+        char getChar(Object bean);
+
+        @Override
+        default Object get(Object bean) {
+            return getChar(bean);
+        }
+    }
+}
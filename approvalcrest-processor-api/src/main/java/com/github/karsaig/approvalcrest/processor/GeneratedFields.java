@@ -0,0 +1,64 @@
+package com.github.karsaig.approvalcrest.processor;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The readers of the fields a bean annotated with {@link ApprovalSerializable} declares, generated by the
+ * {@code ApprovalSerializableProcessor} and registered as a service of this class, so the matchers find them with
+ * {@link java.util.ServiceLoader}. Private fields can't be read by the generated code, they are only listed, and read
+ * by the matchers with a private lookup of the bean.
+ */
+public abstract class GeneratedFields {
+    private final Class<?> beanClass;
+    private final Map<String, FieldReader> readers = new HashMap<>();
+    private final Set<String> privateFields = new HashSet<>();
+
+    protected GeneratedFields(Class<?> beanClass) {
+        this.beanClass = beanClass;
+    }
+
+    /**
+     * Registers the reader of a field, called by the constructors of the generated subclasses.
+     *
+     * @param fieldName the name of the field
+     * @param reader    the reader of the field
+     */
+    protected final void add(String fieldName, FieldReader reader) {
+        readers.put(fieldName, reader);
+    }
+
+    /**
+     * Registers a private field, called by the constructors of the generated subclasses.
+     *
+     * @param fieldName the name of the field
+     */
+    protected final void addPrivate(String fieldName) {
+        privateFields.add(fieldName);
+    }
+
+    /**
+     * @return the bean declaring the fields
+     */
+    public final Class<?> getBeanClass() {
+        return beanClass;
+    }
+
+    /**
+     * @param fieldName the name of a field declared by the bean
+     * @return the reader of the field, or null if the field is private or has to be read reflectively
+     */
+    public final FieldReader getReader(String fieldName) {
+        return readers.get(fieldName);
+    }
+
+    /**
+     * @param fieldName the name of a field declared by the bean
+     * @return true if the field is private, and has no reader
+     */
+    public final boolean isPrivate(String fieldName) {
+        return privateFields.contains(fieldName);
+    }
+}
@@ -0,0 +1,180 @@
+package com.github.karsaig.approvalcrest.processor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static javax.tools.Diagnostic.Kind.ERROR;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates the {@link GeneratedFields} of the classes annotated with {@link ApprovalSerializable}, and lists them in
+ * {@code META-INF/services}. For a bean {@code Bean} the generated class is {@code Bean_ApprovalFields}, in the same
+ * package, reading every non-static field of the bean which is not private. The private fields are listed, to be read
+ * with a private lookup of the bean.
+ */
+public class ApprovalSerializableProcessor extends AbstractProcessor {
+    private static final String SUFFIX = "_ApprovalFields";
+    private static final String SERVICE_FILE = "META-INF/services/" + GeneratedFields.class.getName();
+
+    private final Set<String> generatedClasses = new TreeSet<>();
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(ApprovalSerializable.class.getName());
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        for (Element element : roundEnv.getElementsAnnotatedWith(ApprovalSerializable.class)) {
+            if (isSupported(element)) {
+                generate((TypeElement) element);
+            }
+        }
+        if (roundEnv.processingOver() && !generatedClasses.isEmpty()) {
+            writeServiceFile();
+        }
+        return true;
+    }
+
+    private boolean isSupported(Element element) {
+        if (element.getKind() != ElementKind.CLASS) {
+            error(element, "@ApprovalSerializable can only be applied to classes");
+            return false;
+        }
+        for (Element type = element; type instanceof TypeElement; type = type.getEnclosingElement()) {
+            NestingKind nesting = ((TypeElement) type).getNestingKind();
+            if (nesting != NestingKind.TOP_LEVEL && nesting != NestingKind.MEMBER || type.getModifiers().contains(Modifier.PRIVATE)) {
+                error(element, "@ApprovalSerializable classes must be visible from their package");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void generate(TypeElement bean) {
+        String packageName = processingEnv.getElementUtils().getPackageOf(bean).getQualifiedName().toString();
+        String beanName = processingEnv.getTypeUtils().erasure(bean.asType()).toString();
+        String simpleName = flatName(bean) + SUFFIX;
+        String className = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+
+        try (PrintWriter out = new PrintWriter(processingEnv.getFiler().createSourceFile(className, bean).openWriter())) {
+            if (!packageName.isEmpty()) {
+                out.println("package " + packageName + ";");
+                out.println();
+            }
+            out.println("/**");
+            out.println(" * Readers of the fields of {@link " + beanName + "}, generated by the {@code ApprovalSerializableProcessor}.");
+            out.println(" */");
+            out.println("@SuppressWarnings(\"rawtypes\")");
+            out.println("public final class " + simpleName + " extends " + GeneratedFields.class.getName() + " {");
+            out.println();
+            out.println("    public " + simpleName + "() {");
+            out.println("        super(" + beanName + ".class);");
+            for (VariableElement field : ElementFilter.fieldsIn(bean.getEnclosedElements())) {
+                if (field.getModifiers().contains(Modifier.STATIC)) {
+                    continue;
+                }
+                if (field.getModifiers().contains(Modifier.PRIVATE)) {
+                    out.println("        addPrivate(\"" + field.getSimpleName() + "\");");
+                    continue;
+                }
+                out.println("        add(\"" + field.getSimpleName() + "\", (" + readerType(field) + ") bean -> ((" + beanName + ") bean)."
+                        + field.getSimpleName() + ");");
+            }
+            out.println("    }");
+            out.println("}");
+        } catch (IOException e) {
+            error(bean, "Could not generate " + className + ": " + e.getMessage());
+            return;
+        }
+        generatedClasses.add(packageName.isEmpty() ? simpleName : className);
+    }
+
+    /**
+     * The name of a nested class is prefixed with the names of the classes enclosing it, to make it unique in the
+     * package.
+     */
+    private static String flatName(TypeElement type) {
+        Element enclosing = type.getEnclosingElement();
+        String simpleName = type.getSimpleName().toString();
+        return enclosing instanceof PackageElement ? simpleName : flatName((TypeElement) enclosing) + "_" + simpleName;
+    }
+
+    private static String readerType(VariableElement field) {
+        String reader = FieldReader.class.getName();
+        switch (field.asType().getKind()) {
+            case INT:
+            case SHORT:
+            case BYTE:
+                return reader + ".OfInt";
+            case LONG:
+                return reader + ".OfLong";
+            case BOOLEAN:
+                return reader + ".OfBoolean";
+            case CHAR:
+                return reader + ".OfChar";
+            default:
+                return reader;
+        }
+    }
+
+    /**
+     * Adds the generated classes to the service file, keeping the classes listed by an earlier, incremental compilation.
+     */
+    private void writeServiceFile() {
+        Set<String> services = new TreeSet<>(generatedClasses);
+        try {
+            FileObject existing = processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Reader reader = existing.openReader(true); BufferedReader lines = new BufferedReader(reader)) {
+                for (String line = lines.readLine(); line != null; line = lines.readLine()) {
+                    if (!line.trim().isEmpty()) {
+                        services.add(line.trim());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            // no service file yet
+        }
+        try {
+            FileObject serviceFile = processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE);
+            try (Writer writer = new OutputStreamWriter(serviceFile.openOutputStream(), UTF_8)) {
+                for (String service : services) {
+                    writer.write(service);
+                    writer.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(ERROR, "Could not write " + SERVICE_FILE + ": " + e.getMessage());
+        }
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(ERROR, message, element);
+    }
+}
@@ -29,6 +29,7 @@ import org.hamcrest.Matchers;
 import org.junit.Test;
 
 import com.github.karsaig.approvalcrest.testdata.cyclic.Element;
+import com.github.karsaig.approvalcrest.testdata.cyclic.FinalNode;
 import com.github.karsaig.approvalcrest.testdata.cyclic.Five;
 import com.github.karsaig.approvalcrest.testdata.cyclic.Four;
 import com.github.karsaig.approvalcrest.testdata.cyclic.One;
@@ -445,4 +446,52 @@ public class CyclicReferenceDetectorTest {
 
         assertThat(returnedClasses, is(empty()));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldReturnTheFinalClassWithCyclicReferenceThroughAFieldOfItsOwnType() {
+        FinalNode first = new FinalNode("first");
+        FinalNode second = new FinalNode("second");
+        first.setNext(second);
+        second.setNext(first);
+        MatcherConfiguration matcherConfig = new MatcherConfiguration().addTypeToIgnore(EMPTY_TYPES_TO_IGNORE).addPatternToIgnore(EMPTY_PATTERNS_TO_IGNORE).addPathToIgnore(EMPTY_PATHS_TO_IGNORE);
+
+        Set<Class<?>> returnedClasses = getClassesWithCircularReferences(first, matcherConfig);
+
+        assertThat(returnedClasses, hasItem(FinalNode.class));
+    }
+
+    @Test
+    public void shouldReturnTheClassWithCyclicReferenceAtTheEndOfAVeryDeepChain() {
+        One first = new One();
+        One last = first;
+        for (int i = 0; i < 100_000; i++) {
+            One next = new One();
+            last.setGenericObject(next);
+            last = next;
+        }
+        Two two = new Two();
+        last.setGenericObject(two);
+        two.setGenericObject(last);
+        MatcherConfiguration matcherConfig = new MatcherConfiguration().addTypeToIgnore(EMPTY_TYPES_TO_IGNORE).addPatternToIgnore(EMPTY_PATTERNS_TO_IGNORE).addPathToIgnore(EMPTY_PATHS_TO_IGNORE);
+
+        Set<Class<?>> returnedClasses = getClassesWithCircularReferences(first, matcherConfig);
+
+        assertThat(returnedClasses, hasItem(One.class));
+    }
+
+    @Test
+    public void shouldReturnEmptyListWhenTheCyclicReferenceIsDeeperThanTheDepthLimit() {
+        One one = new One();
+        Two two = new Two();
+        Three three = new Three();
+        one.setGenericObject(two);
+        two.setGenericObject(three);
+        three.setGenericObject(two);
+        MatcherConfiguration matcherConfig = new MatcherConfiguration().addTypeToIgnore(EMPTY_TYPES_TO_IGNORE).addPatternToIgnore(EMPTY_PATTERNS_TO_IGNORE).addPathToIgnore(EMPTY_PATHS_TO_IGNORE)
+                .setMaxCircularReferenceCheckDepth(2);
+
+        Set<Class<?>> returnedClasses = getClassesWithCircularReferences(one, matcherConfig);
+
+        assertThat(returnedClasses.isEmpty(), is(true));
+    }
+}
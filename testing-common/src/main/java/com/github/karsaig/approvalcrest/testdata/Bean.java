@@ -14,9 +14,12 @@ import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
+import com.github.karsaig.approvalcrest.processor.ApprovalSerializable;
+
 /**
  * Simple bean used for tests
  */
+@ApprovalSerializable
 @SuppressWarnings("unused")
 public class Bean {
 	private String string;
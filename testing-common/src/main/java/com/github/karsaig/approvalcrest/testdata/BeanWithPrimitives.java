@@ -9,9 +9,12 @@
  */
 package com.github.karsaig.approvalcrest.testdata;
 
+import com.github.karsaig.approvalcrest.processor.ApprovalSerializable;
+
 /**
  * Bean with all java primitives, used for tests
  */
+@ApprovalSerializable
 @SuppressWarnings("unused")
 public class BeanWithPrimitives {
 	private int beanInteger;
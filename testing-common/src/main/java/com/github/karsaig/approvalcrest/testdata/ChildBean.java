@@ -9,9 +9,12 @@
  */
 package com.github.karsaig.approvalcrest.testdata;
 
+import com.github.karsaig.approvalcrest.processor.ApprovalSerializable;
+
 /**
  * Child bean of {@link ParentBean}, used for tests
  */
+@ApprovalSerializable
 @SuppressWarnings("unused")
 public class ChildBean {
 	private String childString;
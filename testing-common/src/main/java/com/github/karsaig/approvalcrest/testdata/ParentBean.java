@@ -16,9 +16,12 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.github.karsaig.approvalcrest.processor.ApprovalSerializable;
+
 /**
  * Parent bean of {@link ChildBean}, used for tests
  */
+@ApprovalSerializable
 @SuppressWarnings("unused")
 public class ParentBean {
 	private String parentString;